@@ -0,0 +1,103 @@
+package io.pivotal.rsocketbenchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.messaging.rsocket.RSocketRequester;
+
+import io.pivotal.rsocketcommon.codec.NotificationCodec;
+import io.pivotal.rsocketcommon.data.Notification;
+import io.pivotal.rsocketserver.data.BatchResult;
+import reactor.core.publisher.Flux;
+
+/**
+ * Per-item cost of the request-response-batch route against one request-response exchange per
+ * item, for batches of 1 to 4096 notifications. The primary score counts exchanges; the
+ * {@code items} counter is the number of notifications answered per second, whichever route
+ * carried them.
+ * <ul>
+ * <li>batch: one request-response-batch exchange carrying {@code batchSize} notifications</li>
+ * <li>individual: {@code batchSize} request-response exchanges, all in flight at once</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchRequestResponseBenchmark {
+
+    private static final ParameterizedTypeReference<List<BatchResult>> RESULTS = new ParameterizedTypeReference<List<BatchResult>>() { };
+
+    @Param({"1", "16", "256", "4096"})
+    int batchSize;
+
+    @Param({"on", "off"})
+    String security;
+
+    private BenchmarkServer server;
+    private RSocketRequester requester;
+    private List<Notification> batch;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Items {
+
+        public long items;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            items = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        server = BenchmarkServer.start("tcp", "on".equals(security));
+        requester = server.connect(NotificationCodec.MIME_TYPE);
+        batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            batch.add(new Notification("Client", "Server", "benchmark request " + i, "benchmark"));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        requester.rsocket().dispose();
+        server.dispose();
+    }
+
+    @Benchmark
+    public List<BatchResult> batch(Items items) {
+        List<BatchResult> results = requester.route("request-response-batch").data(batch).retrieveMono(RESULTS).block();
+        items.items += results.size();
+        return results;
+    }
+
+    @Benchmark
+    public Long individual(Items items) {
+        Long answered = Flux.fromIterable(batch)
+                .flatMap(request -> requester.route("request-response").data(request).retrieveMono(Notification.class), batchSize)
+                .count()
+                .block();
+        items.items += answered;
+        return answered;
+    }
+}
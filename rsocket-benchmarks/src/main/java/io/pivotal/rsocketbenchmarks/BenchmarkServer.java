@@ -0,0 +1,229 @@
+package io.pivotal.rsocketbenchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.rsocket.server.RSocketServerCustomizer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.annotation.AnnotationAwareOrderComparator;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.messaging.rsocket.RSocketStrategies;
+import org.springframework.messaging.rsocket.annotation.support.RSocketMessageHandler;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.rsocket.api.PayloadInterceptor;
+import org.springframework.security.rsocket.core.PayloadSocketAcceptorInterceptor;
+import org.springframework.security.rsocket.metadata.SimpleAuthenticationEncoder;
+import org.springframework.security.rsocket.metadata.UsernamePasswordMetadata;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import io.pivotal.rsocketserver.RsocketServerApplication;
+import io.rsocket.SocketAcceptor;
+import io.rsocket.core.RSocketServer;
+import io.rsocket.metadata.WellKnownMimeType;
+import io.rsocket.transport.ClientTransport;
+import io.rsocket.transport.local.LocalClientTransport;
+import io.rsocket.transport.local.LocalServerTransport;
+import io.rsocket.transport.netty.client.TcpClientTransport;
+import io.rsocket.transport.netty.client.WebsocketClientTransport;
+import io.rsocket.transport.netty.server.CloseableChannel;
+import io.rsocket.transport.netty.server.TcpServerTransport;
+import io.rsocket.transport.netty.server.WebsocketServerTransport;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.netty.Connection;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.tcp.TcpClient;
+
+/**
+ * The RSocket Server application booted in-process for benchmarks.
+ * <p>
+ * The Spring context is the real application; the RSocket server is bound here, with the
+ * application's {@link RSocketServerCustomizer}s, so the transport can be chosen (TCP or
+ * WebSocket on an ephemeral port, or the in-JVM local transport) and security can be switched off. With security off, every exchange runs as a fixed, pre-authenticated USER, so
+ * the {@code @PreAuthorize} checks still pass but no credentials are verified.
+ */
+public final class BenchmarkServer implements Disposable {
+
+    // the customizer Spring Boot registers to install the security interceptor
+    private static final String SECURITY_CUSTOMIZER = "springSecurityRSocketSecurity";
+    private static final MimeType SIMPLE_AUTH = MimeTypeUtils.parseMimeType(WellKnownMimeType.MESSAGE_RSOCKET_AUTHENTICATION.getString());
+
+    private final ConfigurableApplicationContext context;
+    private final Disposable server;
+    private final String transport;
+    private final boolean security;
+    private final int port;
+    private final String localName;
+
+    private BenchmarkServer(ConfigurableApplicationContext context, String transport, boolean security) {
+        this.context = context;
+        this.transport = transport;
+        this.security = security;
+
+        RSocketServer rsocketServer = RSocketServer.create(context.getBean(RSocketMessageHandler.class).responder());
+        List<RSocketServerCustomizer> customizers = new ArrayList<>();
+        context.getBeansOfType(RSocketServerCustomizer.class).forEach((name, customizer) -> {
+            if (security || !SECURITY_CUSTOMIZER.equals(name)) {
+                customizers.add(customizer);
+            }
+        });
+        AnnotationAwareOrderComparator.sort(customizers);
+        customizers.forEach(customizer -> customizer.customize(rsocketServer));
+        if (!security) {
+            rsocketServer.interceptors(registry -> registry.forSocketAcceptor(trustedPrincipalInterceptor()));
+        }
+
+        if ("local".equals(transport)) {
+            this.localName = "benchmark-" + UUID.randomUUID();
+            this.port = -1;
+            this.server = rsocketServer.bind(LocalServerTransport.create(localName)).block();
+        } else {
+            CloseableChannel channel = rsocketServer.bind("websocket".equals(transport)
+                    ? WebsocketServerTransport.create("localhost", 0)
+                    : TcpServerTransport.create("localhost", 0)).block();
+            this.localName = null;
+            this.port = channel.address().getPort();
+            this.server = channel;
+        }
+    }
+
+    /**
+     * @param transport "tcp", "websocket" or "local"
+     * @param security  whether to authenticate and authorize with the application's security configuration
+     * @param properties additional application properties, as key=value
+     */
+    public static BenchmarkServer start(String transport, boolean security, String... properties) {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(RsocketServerApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        // the application's own server is not measured
+                        "spring.rsocket.server.port=0",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN",
+                        "logging.level.io.pivotal=WARN")
+                .properties(properties)
+                .run();
+        return new BenchmarkServer(context, transport, security);
+    }
+
+    private static PayloadSocketAcceptorInterceptor trustedPrincipalInterceptor() {
+        UserDetails user = User.withUsername("benchmark").password("n/a").roles("USER").build();
+        Authentication authentication = new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
+        PayloadInterceptor trusted = (exchange, chain) -> chain.next(exchange)
+                .subscriberContext(ReactiveSecurityContextHolder.withAuthentication(authentication));
+        PayloadSocketAcceptorInterceptor interceptor = new PayloadSocketAcceptorInterceptor(Collections.singletonList(trusted));
+        interceptor.setDefaultDataMimeType(MimeTypeUtils.APPLICATION_JSON);
+        interceptor.setDefaultMetadataMimeType(MimeTypeUtils.parseMimeType(WellKnownMimeType.MESSAGE_RSOCKET_COMPOSITE_METADATA.getString()));
+        return interceptor;
+    }
+
+    public ConfigurableApplicationContext getContext() {
+        return context;
+    }
+
+    public ClientTransport clientTransport() {
+        return clientTransport(connection -> { });
+    }
+
+    /**
+     * @param onConnected called with every network connection the transport opens, not with local ones
+     */
+    public ClientTransport clientTransport(Consumer<? super Connection> onConnected) {
+        if ("local".equals(transport)) {
+            return LocalClientTransport.create(localName);
+        }
+        TcpClient client = TcpClient.create().host("localhost").port(port).doOnConnected(onConnected);
+        return "websocket".equals(transport)
+                ? WebsocketClientTransport.create(HttpClient.from(client), "/")
+                : TcpClientTransport.create(client);
+    }
+
+    /**
+     * Connect as a shell client with the application's codecs and, with security on, the 'user' account.
+     */
+    public RSocketRequester connect(MimeType dataMimeType) {
+        return connect(dataMimeType, UUID.randomUUID().toString());
+    }
+
+    /**
+     * Connect as a shell client with the given client id.
+     */
+    public RSocketRequester connect(MimeType dataMimeType, String clientId) {
+        return connect(dataMimeType, clientId, new ClientHandler());
+    }
+
+    /**
+     * Connect as a shell client with the given client id, answering the server's requests with
+     * the given handler.
+     */
+    public RSocketRequester connect(MimeType dataMimeType, String clientId, Object handler) {
+        return connect(dataMimeType, clientId, handler, clientTransport(), builder -> { });
+    }
+
+    /**
+     * Connect as a shell client over the given transport.
+     */
+    public RSocketRequester connect(MimeType dataMimeType, ClientTransport transport) {
+        return connect(dataMimeType, transport, builder -> { });
+    }
+
+    /**
+     * Connect as a shell client over the given transport, with the requester further configured,
+     * such as with more setup metadata or connector interceptors.
+     */
+    public RSocketRequester connect(MimeType dataMimeType, ClientTransport transport, Consumer<RSocketRequester.Builder> configurer) {
+        return connect(dataMimeType, UUID.randomUUID().toString(), new ClientHandler(), transport, configurer);
+    }
+
+    private RSocketRequester connect(MimeType dataMimeType, String clientId, Object handler, ClientTransport transport,
+                                     Consumer<RSocketRequester.Builder> configurer) {
+        RSocketStrategies strategies = context.getBean(RSocketStrategies.class).mutate()
+                .encoder(new SimpleAuthenticationEncoder())
+                .build();
+        SocketAcceptor responder = RSocketMessageHandler.responder(strategies, handler);
+        RSocketRequester.Builder builder = RSocketRequester.builder()
+                .rsocketStrategies(strategies)
+                .dataMimeType(dataMimeType)
+                .setupRoute("shell-client")
+                .setupData(clientId)
+                .rsocketConnector(connector -> connector.acceptor(responder));
+        if (security) {
+            builder = builder.setupMetadata(new UsernamePasswordMetadata("user", "pass"), SIMPLE_AUTH);
+        }
+        configurer.accept(builder);
+        return builder.connect(transport).block();
+    }
+
+    @Override
+    public void dispose() {
+        server.dispose();
+        context.close();
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return server.isDisposed();
+    }
+
+    /**
+     * Answers the server's telemetry request on connect without generating any traffic.
+     */
+    static class ClientHandler {
+
+        @MessageMapping("client-status")
+        public Flux<String> statusUpdate(String status) {
+            return Flux.never();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package io.pivotal.rsocketbenchmarks;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.rsocket.RSocketRequester;
+
+import io.pivotal.rsocketcommon.codec.NotificationCodec;
+import io.pivotal.rsocketcommon.data.Notification;
+import io.pivotal.rsocketserver.cluster.ClusterNode;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+/**
+ * Latency and throughput of delivering notifications to a client connected to another node of
+ * a two node cluster, against delivering them to a client on the node they are sent to.
+ * <p>
+ * A client on node B streams the notifications addressed to it. Each invocation sends
+ * {@code concurrency} fire-and-forget notifications to that client, through node A (crossNode)
+ * or through node B itself (sameNode), and completes when the stream delivered them all, so with
+ * {@code concurrency=1} a sample is the end-to-end latency of one notification. With more in
+ * flight, node A forwards them in batches over its link to node B.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClusterForwardingBenchmark {
+
+    @Param({"64", "4096"})
+    int payloadSize;
+
+    @Param({"1", "64"})
+    int concurrency;
+
+    private BenchmarkServer nodeA;
+    private BenchmarkServer nodeB;
+    private RSocketRequester senderOnA;
+    private RSocketRequester senderOnB;
+    private RSocketRequester receiver;
+    private Notification notification;
+    private Disposable subscription;
+    private final Semaphore delivered = new Semaphore(0);
+
+    @Setup(Level.Trial)
+    public void setup() {
+        int portA = freePort();
+        int portB = freePort();
+        String peers = "localhost:" + portA + ",localhost:" + portB;
+        nodeA = startNode("node-a", portA, peers);
+        nodeB = startNode("node-b", portB, peers);
+        while (!cluster(nodeA).getPeers().contains("node-b") || !cluster(nodeB).getPeers().contains("node-a")) {
+            Thread.yield();
+        }
+
+        String clientId = "benchmark-" + UUID.randomUUID();
+        receiver = nodeB.connect(NotificationCodec.MIME_TYPE, clientId);
+        senderOnA = nodeA.connect(NotificationCodec.MIME_TYPE);
+        senderOnB = nodeB.connect(NotificationCodec.MIME_TYPE);
+        notification = new Notification("Client", clientId, text(payloadSize), "benchmark");
+
+        // the stream listens on the topic named by its request's source
+        subscription = receiver.route("stream")
+                .data(new Notification(clientId, "Server", "subscribe", clientId))
+                .retrieveFlux(byte[].class)
+                .subscribe(bytes -> delivered.release());
+        while (cluster(nodeA).owner(clientId) == null) {
+            Thread.yield();
+        }
+        // wait until the subscription is registered on node B
+        while (!deliverOne()) {
+            Thread.yield();
+        }
+    }
+
+    private static BenchmarkServer startNode(String nodeId, int clusterPort, String peers) {
+        try {
+            return BenchmarkServer.start("tcp", false,
+                    "spring.profiles.active=cluster",
+                    // one MBean server for both nodes of the JVM
+                    "spring.jmx.enabled=false",
+                    "notification.store-and-forward.directory=" + Files.createTempDirectory(nodeId),
+                    "rsocket.cluster.node-id=" + nodeId,
+                    "rsocket.cluster.port=" + clusterPort,
+                    "rsocket.cluster.peers=" + peers);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static ClusterNode cluster(BenchmarkServer node) {
+        return node.getContext().getBean(ClusterNode.class);
+    }
+
+    private static int freePort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean deliverOne() {
+        senderOnA.route("fire-and-forget").data(notification).send().block();
+        try {
+            return delivered.tryAcquire(100, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        subscription.dispose();
+        senderOnA.rsocket().dispose();
+        senderOnB.rsocket().dispose();
+        receiver.rsocket().dispose();
+        nodeA.dispose();
+        nodeB.dispose();
+    }
+
+    @Benchmark
+    public int crossNode() throws InterruptedException {
+        return send(senderOnA);
+    }
+
+    @Benchmark
+    public int sameNode() throws InterruptedException {
+        return send(senderOnB);
+    }
+
+    private int send(RSocketRequester sender) throws InterruptedException {
+        Flux.range(0, concurrency)
+                .flatMap(i -> sender.route("fire-and-forget").data(notification).send(), concurrency)
+                .blockLast();
+        delivered.acquire(concurrency);
+        return concurrency;
+    }
+
+    private static String text(int length) {
+        StringBuilder builder = new StringBuilder(length);
+        while (builder.length() < length) {
+            builder.append("benchmark ");
+        }
+        return builder.substring(0, length);
+    }
+}
@@ -0,0 +1,115 @@
+package io.pivotal.rsocketbenchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.rsocket.RSocketRequester;
+
+import io.pivotal.rsocketcommon.codec.CompressingRSocket;
+import io.pivotal.rsocketcommon.codec.NotificationCodec;
+import io.pivotal.rsocketcommon.codec.PayloadCompression;
+import io.pivotal.rsocketcommon.data.Notification;
+import io.rsocket.plugins.RSocketInterceptor;
+
+/**
+ * Request-response over TCP with and without compression negotiated at setup: the latency and
+ * throughput it costs against the bytes it saves on the wire, counted per request as in
+ * {@link TransportBenchmark}. The text is made of words drawn at random
+ * from a small vocabulary, about as compressible as notification text.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompressionBenchmark {
+
+    private static final String[] WORDS = {"client", "server", "notification", "stream", "channel", "request",
+            "response", "the", "a", "of", "to", "connected", "destination", "source", "sent", "received"};
+    private static final int THRESHOLD = 512;
+
+    @Param({"none", "deflate"})
+    String compression;
+
+    @Param({"256", "4096", "65536"})
+    int textLength;
+
+    private BenchmarkServer server;
+    private RSocketRequester requester;
+    private Notification request;
+    private final TransportBenchmark.WireBytes wire = new TransportBenchmark.WireBytes();
+
+    /**
+     * The bytes on the wire per request of the iteration.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class PerRequest {
+
+        TransportBenchmark.WireBytes wire;
+        long requests;
+
+        @Setup(Level.Iteration)
+        public void reset(CompressionBenchmark benchmark) {
+            wire = benchmark.wire;
+            wire.reset();
+            requests = 0;
+        }
+
+        public double bytesWritten() {
+            return wire.written.sum() / (double) Math.max(1, requests);
+        }
+
+        public double bytesRead() {
+            return wire.read.sum() / (double) Math.max(1, requests);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        server = BenchmarkServer.start("tcp", false, "rsocket.compression.threshold=" + THRESHOLD + "B");
+        requester = server.connect(NotificationCodec.MIME_TYPE,
+                server.clientTransport(connection -> connection.channel().pipeline().addFirst("wire-bytes", wire)),
+                builder -> {
+                    if (PayloadCompression.DEFLATE.equals(compression)) {
+                        builder.setupMetadata(PayloadCompression.DEFLATE, PayloadCompression.MIME_TYPE)
+                                .rsocketConnector(connector -> connector.interceptors(registry -> registry
+                                        .forRequester((RSocketInterceptor) rsocket -> new CompressingRSocket(rsocket, THRESHOLD, false))
+                                        .forResponder((RSocketInterceptor) rsocket -> new CompressingRSocket(rsocket, THRESHOLD, true))));
+                    }
+                });
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder(textLength);
+        while (text.length() < textLength) {
+            text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        request = new Notification("Client", "Server", text.substring(0, textLength), "benchmark");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        requester.rsocket().dispose();
+        server.dispose();
+    }
+
+    @Benchmark
+    public Notification requestResponse(PerRequest perRequest) {
+        perRequest.requests++;
+        return requester.route("request-response").data(request).retrieveMono(Notification.class).block();
+    }
+}
@@ -0,0 +1,154 @@
+package io.pivotal.rsocketbenchmarks;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.rsocket.RSocketRequester;
+
+import io.pivotal.rsocketcommon.codec.NotificationCodec;
+import io.pivotal.rsocketcommon.data.Notification;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Throughput and latency of the four interaction models against the in-process server.
+ * <p>
+ * Each invocation completes {@code concurrency} exchanges, with up to that many in flight at once.
+ * Run with {@code -bm sample} (the default includes it) for latency percentiles; with
+ * {@code concurrency=1} a sample is the latency of a single exchange.
+ * <ul>
+ * <li>requestResponse: round trip of the request-response route</li>
+ * <li>fireAndForget: send of the fire-and-forget route, completing when the frame is written</li>
+ * <li>stream: time from fire-and-forget publish until a subscribed stream delivers the notification</li>
+ * <li>channel: open a channel and push the notifications through it until the server consumed them all</li>
+ * </ul>
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InteractionModelBenchmark {
+
+    @Param({"tcp", "websocket", "local"})
+    String transport;
+
+    @Param({"on", "off"})
+    String security;
+
+    @Param({"64", "4096"})
+    int payloadSize;
+
+    @Param({"1", "64"})
+    int concurrency;
+
+    private BenchmarkServer server;
+    private RSocketRequester requester;
+    private Notification request;
+    private Notification published;
+    private Disposable subscription;
+    private final Semaphore delivered = new Semaphore(0);
+
+    @Setup(Level.Trial)
+    public void setup() {
+        server = BenchmarkServer.start(transport, "on".equals(security));
+        requester = server.connect(NotificationCodec.MIME_TYPE);
+
+        String topic = "benchmark-" + UUID.randomUUID();
+        String text = text(payloadSize);
+        request = new Notification("Client", "Server", text, "benchmark");
+        published = new Notification("Server", topic, text, "benchmark");
+
+        // the stream listens on the topic named by its request's source
+        subscription = requester.route("stream")
+                .data(new Notification(topic, "Server", "subscribe", "benchmark"))
+                .retrieveFlux(byte[].class)
+                .subscribe(bytes -> delivered.release());
+        // wait until the subscription is registered on the server
+        while (!deliverOne()) {
+            Thread.yield();
+        }
+    }
+
+    private boolean deliverOne() {
+        requester.route("fire-and-forget").data(published).send().block();
+        try {
+            return delivered.tryAcquire(100, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        subscription.dispose();
+        requester.rsocket().dispose();
+        server.dispose();
+    }
+
+    @Benchmark
+    public Long requestResponse() {
+        return Flux.range(0, concurrency)
+                .flatMap(i -> requester.route("request-response").data(request).retrieveMono(Notification.class), concurrency)
+                .count()
+                .block();
+    }
+
+    @Benchmark
+    public Long fireAndForget() {
+        return Flux.range(0, concurrency)
+                .flatMap(i -> requester.route("fire-and-forget").data(request).send().thenReturn(i), concurrency)
+                .count()
+                .block();
+    }
+
+    @Benchmark
+    public int stream() throws InterruptedException {
+        Flux.range(0, concurrency)
+                .flatMap(i -> requester.route("fire-and-forget").data(published).send(), concurrency)
+                .blockLast();
+        delivered.acquire(concurrency);
+        return concurrency;
+    }
+
+    @Benchmark
+    public void channel() {
+        Mono.<Void>create(sink -> {
+            Flux<Notification> inbound = Flux.range(0, concurrency)
+                    .map(i -> request)
+                    // completes once the server has requested, and so consumed, every notification
+                    .doOnComplete(sink::success);
+            Disposable channel = requester.route("channel")
+                    .data(inbound)
+                    .retrieveFlux(byte[].class)
+                    .subscribe(bytes -> { }, sink::error);
+            sink.onDispose(channel);
+        }).block(Duration.ofSeconds(30));
+    }
+
+    private static String text(int length) {
+        StringBuilder builder = new StringBuilder(length);
+        while (builder.length() < length) {
+            builder.append("benchmark ");
+        }
+        return builder.substring(0, length);
+    }
+}
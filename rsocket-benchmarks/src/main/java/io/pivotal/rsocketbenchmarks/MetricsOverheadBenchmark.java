@@ -0,0 +1,64 @@
+package io.pivotal.rsocketbenchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.rsocket.RSocketRequester;
+
+import io.pivotal.rsocketcommon.codec.NotificationCodec;
+import io.pivotal.rsocketcommon.data.Notification;
+import reactor.core.publisher.Flux;
+
+/**
+ * Request-response throughput with route metrics and byte counting on and off. The difference
+ * between the two is the instrumentation overhead at full load.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsOverheadBenchmark {
+
+    private static final int IN_FLIGHT = 128;
+
+    @Param({"true", "false"})
+    boolean metrics;
+
+    private BenchmarkServer server;
+    private RSocketRequester requester;
+    private final Notification request = new Notification("Client", "Server", "metrics overhead", "benchmark");
+
+    @Setup(Level.Trial)
+    public void setup() {
+        server = BenchmarkServer.start("local", false, "rsocket.metrics.enabled=" + metrics);
+        requester = server.connect(NotificationCodec.MIME_TYPE);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        requester.rsocket().dispose();
+        server.dispose();
+    }
+
+    @Benchmark
+    public Long requestResponse() {
+        return Flux.range(0, IN_FLIGHT)
+                .flatMap(i -> requester.route("request-response").data(request).retrieveMono(Notification.class), IN_FLIGHT)
+                .count()
+                .block();
+    }
+}
@@ -0,0 +1,134 @@
+package io.pivotal.rsocketbenchmarks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.rsocket.RSocketRequester;
+
+import io.pivotal.rsocketcommon.codec.NotificationCodec;
+import io.pivotal.rsocketcommon.data.Notification;
+import io.pivotal.rsocketserver.ClientRegistry;
+import io.pivotal.rsocketserver.PushDispatcher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Throughput of server-initiated pushes to many connected clients, by client id, through the
+ * {@link PushDispatcher}.
+ * <p>
+ * Each invocation pushes {@code perClient} notifications to every one of {@code clients}
+ * connected clients, up to {@code concurrency} pushes at once, and completes once every client
+ * received all of them: acknowledged with {@code ack=true}, counted by the clients' handlers
+ * otherwise. Divide the throughput by clients * perClient for pushes per second. Connecting
+ * 10 000 clients over TCP needs a file descriptor limit above that.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PushFanOutBenchmark {
+
+    @Param({"local", "tcp"})
+    String transport;
+
+    @Param({"1000", "10000"})
+    int clients;
+
+    @Param({"1", "16"})
+    int perClient;
+
+    @Param({"true", "false"})
+    boolean ack;
+
+    @Param({"1024"})
+    int concurrency;
+
+    private BenchmarkServer server;
+    private PushDispatcher dispatcher;
+    private final List<RSocketRequester> requesters = new ArrayList<>();
+    private final List<String> clientIds = new ArrayList<>();
+    private final Semaphore received = new Semaphore(0);
+    private Notification notification;
+
+    @Setup(Level.Trial)
+    public void setup() throws InterruptedException {
+        server = BenchmarkServer.start(transport, false);
+        dispatcher = server.getContext().getBean(PushDispatcher.class);
+        ClientRegistry registry = server.getContext().getBean(ClientRegistry.class);
+        PushHandler handler = new PushHandler(received);
+        for (int i = 0; i < clients; i++) {
+            clientIds.add("push-benchmark-" + i);
+        }
+        requesters.addAll(Flux.fromIterable(clientIds)
+                .flatMap(clientId -> Mono.fromCallable(() -> server.connect(NotificationCodec.MIME_TYPE, clientId, handler)), 64)
+                .collectList()
+                .block(Duration.ofMinutes(5)));
+        // the server registers a client once it handled its setup
+        while (registry.size() < clients) {
+            Thread.sleep(10);
+        }
+        notification = new Notification("Server", null, "pushed", "benchmark");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        requesters.forEach(requester -> requester.rsocket().dispose());
+        server.dispose();
+    }
+
+    @Benchmark
+    public int push() throws InterruptedException {
+        int pushes = clients * perClient;
+        Flux.range(0, pushes)
+                .flatMap(i -> dispatcher.push(clientIds.get(i % clients), notification, ack), concurrency)
+                .blockLast(Duration.ofMinutes(1));
+        if (!ack) {
+            received.acquire(pushes);
+        } else {
+            received.drainPermits();
+        }
+        return pushes;
+    }
+
+    /**
+     * The client side of every connection: counts what it is pushed.
+     */
+    public static class PushHandler {
+
+        private final Semaphore received;
+
+        PushHandler(Semaphore received) {
+            this.received = received;
+        }
+
+        @MessageMapping("client-status")
+        public Flux<String> statusUpdate(String status) {
+            return Flux.never();
+        }
+
+        @MessageMapping("client-notification")
+        public Mono<Void> pushed(Notification notification) {
+            received.release();
+            return Mono.empty();
+        }
+    }
+}
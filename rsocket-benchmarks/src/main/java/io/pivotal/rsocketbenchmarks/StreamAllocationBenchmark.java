@@ -0,0 +1,107 @@
+package io.pivotal.rsocketbenchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.rsocket.RSocketRequester;
+
+import io.pivotal.rsocketcommon.codec.NotificationCodec;
+import io.pivotal.rsocketcommon.data.Notification;
+import reactor.core.Disposable;
+
+/**
+ * Allocation of the 'stream' route: one notification published by request-response, whose
+ * request is decoded, answered and routed to the streams subscribed to its destination, and
+ * delivered to every one of them. Run with {@code -prof gc}: {@code gc.alloc.rate.norm} is the
+ * bytes allocated per notification, client and server together, over the local transport so no
+ * socket buffers are counted.
+ * <p>
+ * The routing names repeat from one notification to the next, as they do between a client and
+ * its topics, so decoding them allocates nothing once they are in the dictionary; the response
+ * carries the request's text behind its prefix instead of a concatenated copy.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StreamAllocationBenchmark {
+
+    @Param({"1", "16"})
+    int subscribers;
+
+    @Param({"64", "1024"})
+    int textLength;
+
+    private BenchmarkServer server;
+    private RSocketRequester publisher;
+    private final List<RSocketRequester> requesters = new ArrayList<>();
+    private final List<Disposable> subscriptions = new ArrayList<>();
+    private final Semaphore delivered = new Semaphore(0);
+    private Notification published;
+
+    @Setup(Level.Trial)
+    public void setup() throws InterruptedException {
+        server = BenchmarkServer.start("local", false);
+        publisher = server.connect(NotificationCodec.MIME_TYPE);
+        String topic = "benchmark-" + UUID.randomUUID();
+        StringBuilder text = new StringBuilder(textLength);
+        while (text.length() < textLength) {
+            text.append("benchmark ");
+        }
+        published = new Notification("Client", topic, text.substring(0, textLength), "benchmark");
+
+        for (int i = 0; i < subscribers; i++) {
+            RSocketRequester requester = server.connect(NotificationCodec.MIME_TYPE);
+            requesters.add(requester);
+            // the stream listens on the topic named by its request's source
+            subscriptions.add(requester.route("stream")
+                    .data(new Notification(topic, "Server", "subscribe", "benchmark"))
+                    .retrieveFlux(byte[].class)
+                    .subscribe(bytes -> delivered.release()));
+        }
+        // wait until every subscription is registered on the server
+        do {
+            delivered.drainPermits();
+            publish();
+        } while (!delivered.tryAcquire(subscribers, 100, TimeUnit.MILLISECONDS));
+        Thread.sleep(200);
+        delivered.drainPermits();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        subscriptions.forEach(Disposable::dispose);
+        requesters.forEach(requester -> requester.rsocket().dispose());
+        publisher.rsocket().dispose();
+        server.dispose();
+    }
+
+    @Benchmark
+    public int stream() throws InterruptedException {
+        publish();
+        delivered.acquire(subscribers);
+        return subscribers;
+    }
+
+    private void publish() {
+        publisher.route("request-response").data(published).retrieveMono(Notification.class).block();
+    }
+}
@@ -0,0 +1,145 @@
+package io.pivotal.rsocketbenchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.rsocket.RSocketRequester;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.pivotal.rsocketcommon.codec.NotificationCodec;
+import io.pivotal.rsocketcommon.data.Notification;
+
+/**
+ * TCP against WebSocket: the latency of one request-response round trip, the throughput of
+ * fire-and-forget, and the bytes each message costs on the wire.
+ * <p>
+ * The client counts the bytes its connection writes and reads, below any framing, so the
+ * difference between the transports at a given payload size is their per-message overhead: the
+ * RSocket frame length prefix over TCP, the WebSocket frame header (masked, from the client)
+ * over WebSocket. The bytes per request are the {@code bytesWritten} and {@code bytesRead}
+ * counters.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransportBenchmark {
+
+    @Param({"tcp", "websocket"})
+    String transport;
+
+    @Param({"16", "1024", "16384"})
+    int payloadSize;
+
+    private BenchmarkServer server;
+    private RSocketRequester requester;
+    private Notification request;
+    private final WireBytes wire = new WireBytes();
+
+    /**
+     * The bytes on the wire per request of the iteration.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class PerRequest {
+
+        WireBytes wire;
+        long requests;
+
+        @Setup(Level.Iteration)
+        public void reset(TransportBenchmark benchmark) {
+            wire = benchmark.wire;
+            wire.reset();
+            requests = 0;
+        }
+
+        public double bytesWritten() {
+            return wire.written.sum() / (double) Math.max(1, requests);
+        }
+
+        public double bytesRead() {
+            return wire.read.sum() / (double) Math.max(1, requests);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        server = BenchmarkServer.start(transport, false);
+        requester = server.connect(NotificationCodec.MIME_TYPE,
+                server.clientTransport(connection -> connection.channel().pipeline().addFirst("wire-bytes", wire)));
+        StringBuilder text = new StringBuilder(payloadSize);
+        while (text.length() < payloadSize) {
+            text.append('x');
+        }
+        request = new Notification("Client", "Server", text.toString(), "benchmark");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        requester.rsocket().dispose();
+        server.dispose();
+    }
+
+    @Benchmark
+    public Notification requestResponse(PerRequest perRequest) {
+        perRequest.requests++;
+        return requester.route("request-response").data(request).retrieveMono(Notification.class).block();
+    }
+
+    @Benchmark
+    public void fireAndForget(PerRequest perRequest) {
+        perRequest.requests++;
+        requester.route("fire-and-forget").data(request).send().block();
+    }
+
+    /**
+     * Counts the bytes of a connection at the socket, before any decoding and after all encoding.
+     */
+    @ChannelHandler.Sharable
+    static final class WireBytes extends ChannelDuplexHandler {
+
+        final LongAdder written = new LongAdder();
+        final LongAdder read = new LongAdder();
+
+        void reset() {
+            written.reset();
+            read.reset();
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            if (msg instanceof ByteBuf) {
+                read.add(((ByteBuf) msg).readableBytes());
+            }
+            super.channelRead(ctx, msg);
+        }
+
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+            if (msg instanceof ByteBuf) {
+                written.add(((ByteBuf) msg).readableBytes());
+            }
+            super.write(ctx, msg, promise);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package io.pivotal.rsocketclient;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import io.pivotal.rsocketcommon.data.Notification;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Drives a fixed number of concurrent in-flight requests against one route and records the
+ * latency of each into an HdrHistogram {@link Recorder}. The requests are spread over the servers
+ * of a {@link TargetPool}.
+ * <p>
+ * The fire-and-forget route is driven with {@code send()}, so its latency is the time until the
+ * frame is written; every other route is driven as request-response and its reply is read as raw
+ * bytes, so it works regardless of the response type. Requests the server's lease or limits did
+ * not allow are counted as throttled rather than as errors.
+ */
+class LoadGenerator {
+
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final TargetPool targetPool;
+    private final Notification notification;
+
+    LoadGenerator(TargetPool targetPool, Notification notification) {
+        this.targetPool = targetPool;
+        this.notification = notification;
+    }
+
+    /**
+     * Run until {@code count} requests completed or {@code duration} elapsed, whichever comes first.
+     *
+     * @param route       the route to call
+     * @param concurrency the number of requests kept in flight
+     * @param count       the number of requests to send, 0 for no limit
+     * @param duration    how long to run, zero for no limit
+     */
+    Report run(String route, int concurrency, long count, Duration duration) {
+        Recorder recorder = new Recorder(HIGHEST_TRACKABLE_NANOS, 3);
+        AtomicLong errors = new AtomicLong();
+        AtomicLong throttled = new AtomicLong();
+        boolean fireAndForget = "fire-and-forget".equals(route);
+
+        Flux<Long> requests = Flux.generate(() -> 0L, (index, sink) -> {
+            sink.next(index);
+            return index + 1;
+        });
+        if (count > 0) {
+            requests = requests.take(count);
+        }
+
+        long start = System.nanoTime();
+        Flux<Long> load = requests.flatMap(index -> {
+            Mono<?> call = fireAndForget
+                    ? targetPool.request(requester -> requester.route(route).data(notification).send())
+                    : targetPool.request(requester -> requester.route(route).data(notification).retrieveMono(byte[].class));
+            return Mono.defer(() -> {
+                long sent = System.nanoTime();
+                return call
+                        .doOnSuccess(ignored -> recorder.recordValue(Math.min(System.nanoTime() - sent, HIGHEST_TRACKABLE_NANOS)))
+                        .doOnError(error -> (RSocketShellClient.isThrottling(error) ? throttled : errors).incrementAndGet())
+                        .onErrorResume(error -> Mono.empty())
+                        .then(Mono.just(index));
+            });
+        }, concurrency);
+        if (!duration.isZero()) {
+            load = load.take(duration);
+        }
+        load.blockLast();
+
+        return new Report(recorder.getIntervalHistogram(), errors.get(), throttled.get(), System.nanoTime() - start);
+    }
+
+    static final class Report {
+
+        private final Histogram histogram;
+        private final long errors;
+        private final long throttled;
+        private final long elapsedNanos;
+
+        Report(Histogram histogram, long errors, long throttled, long elapsedNanos) {
+            this.histogram = histogram;
+            this.errors = errors;
+            this.throttled = throttled;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        double throughput() {
+            return histogram.getTotalCount() / (elapsedNanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("requests=%d errors=%d throttled=%d elapsed=%.1fs throughput=%.0f req/s%n"
+                            + "latency (us): p50=%.1f p99=%.1f p99.9=%.1f max=%.1f",
+                    histogram.getTotalCount(), errors, throttled, elapsedNanos / 1e9, throughput(),
+                    micros(histogram.getValueAtPercentile(50)),
+                    micros(histogram.getValueAtPercentile(99)),
+                    micros(histogram.getValueAtPercentile(99.9)),
+                    micros(histogram.getMaxValue()));
+        }
+
+        private static double micros(long nanos) {
+            return nanos / 1000.0;
+        }
+    }
+}
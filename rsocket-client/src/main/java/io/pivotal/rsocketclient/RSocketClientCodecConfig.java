@@ -0,0 +1,32 @@
+package io.pivotal.rsocketclient;
+
+import org.springframework.boot.rsocket.messaging.RSocketStrategiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.pivotal.rsocketcommon.codec.NotificationCodec;
+import io.pivotal.rsocketcommon.codec.NotificationDecoder;
+import io.pivotal.rsocketcommon.codec.NotificationEncoder;
+
+/**
+ * Register the binary {@link io.pivotal.rsocketcommon.data.Notification} codec.
+ * The shell client declares {@link NotificationCodec#MIME_TYPE} as its data MIME type at SETUP
+ * unless {@code rsocket.client.binary-codec=false}, in which case it stays on application/json.
+ * Payload types other than Notification on a binary connection fall back to JSON.
+ */
+@Configuration
+public class RSocketClientCodecConfig {
+
+    @Bean
+    RSocketStrategiesCustomizer notificationCodecCustomizer(ObjectMapper objectMapper) {
+        return strategies -> strategies
+                .encoder(new NotificationEncoder())
+                .decoder(new NotificationDecoder())
+                .encoder(new Jackson2JsonEncoder(objectMapper, NotificationCodec.MIME_TYPE))
+                .decoder(new Jackson2JsonDecoder(objectMapper, NotificationCodec.MIME_TYPE));
+    }
+}
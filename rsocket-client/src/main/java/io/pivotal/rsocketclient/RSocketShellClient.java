@@ -1,7 +1,14 @@
 package io.pivotal.rsocketclient;
 
 
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 import javax.annotation.PreDestroy;
@@ -10,6 +17,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.rsocket.RSocketRequester;
 import org.springframework.messaging.rsocket.RSocketStrategies;
@@ -18,13 +29,27 @@ import org.springframework.security.rsocket.metadata.SimpleAuthenticationEncoder
 import org.springframework.security.rsocket.metadata.UsernamePasswordMetadata;
 import org.springframework.shell.standard.ShellComponent;
 import org.springframework.shell.standard.ShellMethod;
+import org.springframework.shell.standard.ShellOption;
 import org.springframework.util.MimeType;
 import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.unit.DataSize;
 
+import io.pivotal.rsocketclient.data.BatchResult;
+import io.pivotal.rsocketclient.data.BodyReceipt;
+import io.pivotal.rsocketclient.data.ChannelStats;
 import io.pivotal.rsocketclient.data.Message;
-import io.pivotal.rsocketclient.data.Notification;
+import io.pivotal.rsocketcommon.Ticker;
+import io.pivotal.rsocketcommon.codec.CompressingRSocket;
+import io.pivotal.rsocketcommon.codec.NotificationCodec;
+import io.pivotal.rsocketcommon.codec.PayloadCompression;
+import io.pivotal.rsocketcommon.data.Notification;
 import io.rsocket.SocketAcceptor;
+import io.rsocket.exceptions.RejectedException;
+import io.rsocket.lease.Lease;
+import io.rsocket.lease.Leases;
+import io.rsocket.lease.MissingLeaseException;
 import io.rsocket.metadata.WellKnownMimeType;
+import io.rsocket.plugins.RSocketInterceptor;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
@@ -39,45 +64,144 @@ public class RSocketShellClient {
     private static final String REQUEST = "Request";
     private static final String FIRE_AND_FORGET = "Fire-And-Forget";
     private static final String STREAM = "Stream";
-    private static final String CLIENT_ID = UUID.randomUUID().toString();
+    // a fixed id lets the server forward what was sent to this client while it was not running
+    private static final String CLIENT_ID = System.getProperty("rsocket.client.id", UUID.randomUUID().toString());
+    // how long the leases this client gives the server last; they are renewed every half of it
+    private static final Duration LEASE_TIME_TO_LIVE = Duration.ofSeconds(10);
     private static final MimeType SIMPLE_AUTH = MimeTypeUtils.parseMimeType(WellKnownMimeType.MESSAGE_RSOCKET_AUTHENTICATION.getString());
     
     
     private static Disposable disposable;
 
-    private RSocketRequester rsocketRequester;
+    private TargetPool targetPool;
     private RSocketRequester.Builder rsocketRequesterBuilder;
     private RSocketStrategies rsocketStrategies;
+    private MimeType dataMimeType;
+    private boolean lease;
+    private String targets;
+    private boolean webSocket;
+    private String webSocketPath;
+    private Duration latencyDecay;
+    private int fragmentationMtu;
+    private int chunkSize;
+    private boolean compression;
+    private int compressionThreshold;
+    private Ticker ticker;
     Logger logger = LoggerFactory.getLogger(RSocketShellClient.class);
     
     @Autowired
     public RSocketShellClient(RSocketRequester.Builder builder,
-                              @Qualifier("rSocketStrategies") RSocketStrategies strategies) {
+                              @Qualifier("rSocketStrategies") RSocketStrategies strategies,
+                              @Value("${rsocket.client.binary-codec:true}") boolean binaryCodec,
+                              @Value("${rsocket.client.lease:false}") boolean lease,
+                              @Value("${rsocket.client.targets:localhost:7000}") String targets,
+                              @Value("${rsocket.client.transport:tcp}") String transport,
+                              @Value("${rsocket.client.websocket-path:/rsocket}") String webSocketPath,
+                              @Value("${rsocket.client.latency-decay:10s}") Duration latencyDecay,
+                              @Value("${rsocket.client.fragmentation-mtu:0}") DataSize fragmentationMtu,
+                              @Value("${rsocket.client.chunk-size:64KB}") DataSize chunkSize,
+                              @Value("${rsocket.client.compression:none}") String compression,
+                              @Value("${rsocket.client.compression-threshold:512B}") DataSize compressionThreshold,
+                              Ticker ticker) {
         this.rsocketRequesterBuilder = builder;
         this.rsocketStrategies = strategies;
-        
+        this.dataMimeType = binaryCodec ? NotificationCodec.MIME_TYPE : MimeTypeUtils.APPLICATION_JSON;
+        this.lease = lease;
+        this.targets = targets;
+        if (!"tcp".equals(transport) && !"websocket".equals(transport)) {
+            throw new IllegalArgumentException("rsocket.client.transport must be tcp or websocket, not '" + transport + "'");
+        }
+        // the servers' WebSocket port goes through HTTP proxies that would not let TCP through
+        this.webSocket = "websocket".equals(transport);
+        this.webSocketPath = webSocketPath;
+        this.latencyDecay = latencyDecay;
+        this.fragmentationMtu = (int) fragmentationMtu.toBytes();
+        this.chunkSize = (int) chunkSize.toBytes();
+        if (!"none".equals(compression) && !PayloadCompression.DEFLATE.equals(compression)) {
+            throw new IllegalArgumentException("rsocket.client.compression must be none or deflate, not '" + compression + "'");
+        }
+        this.compression = PayloadCompression.DEFLATE.equals(compression);
+        this.compressionThreshold = (int) compressionThreshold.toBytes();
+        this.ticker = ticker;
     }
 
     @ShellMethod("Login with your username and password.")
     public void login(String username, String password) {
     	logger.info("Connecting using client ID: {} and username: {}", CLIENT_ID, username);
-        SocketAcceptor responder = RSocketMessageHandler.responder(rsocketStrategies, new ClientHandler());
+        SocketAcceptor responder = RSocketMessageHandler.responder(rsocketStrategies, new ClientHandler(ticker));
         UsernamePasswordMetadata user = new UsernamePasswordMetadata(username, password);
-        this.rsocketRequester = rsocketRequesterBuilder
+        RSocketRequester.Builder builder = rsocketRequesterBuilder
+                .dataMimeType(dataMimeType)
                 .setupRoute("shell-client")
                 .setupData(CLIENT_ID)
                 .setupMetadata(user, SIMPLE_AUTH)
-                .rsocketStrategies(builder ->
-                        builder.encoder(new SimpleAuthenticationEncoder()))
-                .rsocketConnector(connector -> connector.acceptor(responder))
-                .connectTcp("localhost", 7000)
-                .block();
+                .rsocketStrategies(strategies ->
+                        strategies.encoder(new SimpleAuthenticationEncoder()))
+                .rsocketConnector(connector -> {
+                    connector.acceptor(responder);
+                    // frames larger than the MTU are sent in fragments
+                    connector.fragment(fragmentationMtu);
+                    if (compression) {
+                        // payload data both ways, the server's requests and our responses included
+                        connector.interceptors(registry -> registry
+                                .forRequester((RSocketInterceptor) rsocket -> new CompressingRSocket(rsocket, compressionThreshold, false))
+                                .forResponder((RSocketInterceptor) rsocket -> new CompressingRSocket(rsocket, compressionThreshold, true)));
+                    }
+                    if (lease) {
+                        connector.lease(() -> Leases.create()
+                                .sender(stats -> leasesToServer())
+                                .receiver(leases -> leases.subscribe(received -> logger.debug("Lease from the server: {} requests in the next {}ms",
+                                        received.getAllowedRequests(), received.getTimeToLiveMillis()))));
+                    }
+                });
+        if (compression) {
+            // asks the server to compress, it refuses the connection if it cannot
+            builder.setupMetadata(PayloadCompression.DEFLATE, PayloadCompression.MIME_TYPE);
+        }
+        // one connection per server in rsocket.client.targets, each request goes to one of them
+        this.targetPool = new TargetPool(TargetPool.parse(targets),
+                target -> webSocket
+                        ? builder.connectWebSocket(URI.create("ws://" + target + webSocketPath))
+                        : builder.connectTcp(target.getHost(), target.getPort()),
+                latencyDecay, Duration.ofMillis(100), Duration.ofSeconds(5));
+        if (!this.targetPool.awaitAvailable(Duration.ofSeconds(10))) {
+            logger.warn("No server of {} reachable yet, still trying.", targets);
+        }
+    }
+
+    @ShellMethod("Show the servers connected to, with their load.")
+    public void targets() {
+        if (null == this.targetPool) {
+            logger.info("No connection. Did you login?");
+            return;
+        }
+        this.targetPool.members().forEach(member -> logger.info("{}", member));
+    }
+
+    /**
+     * The server's own requests, such as 'client-status', are not limited.
+     */
+    private Flux<Lease> leasesToServer() {
+        return ticker.every(LEASE_TIME_TO_LIVE.dividedBy(2))
+                .startWith(0L)
+                .map(tick -> Lease.create((int) LEASE_TIME_TO_LIVE.toMillis(), Integer.MAX_VALUE));
+    }
+
+    /**
+     * @return whether the server's lease or limits refused the request: the lease known to this
+     * client refuses with a {@link MissingLeaseException}, the server's own check and limits with
+     * a plain {@link RejectedException}, of which the former is one
+     */
+    static boolean isThrottling(Throwable error) {
+        return error instanceof RejectedException;
+    }
 
-        this.rsocketRequester.rsocket()
-                .onClose()
-                .doOnError(error -> logger.warn("Connection CLOSED"))
-                .doFinally(consumer -> logger.info("Client DISCONNECTED"))
-                .subscribe();
+    /**
+     * Report a request the server did not allow, instead of failing the command.
+     */
+    private <T> Mono<T> throttled(Throwable e) {
+        logger.warn("Throttled by the server: {}", e.getMessage());
+        return Mono.empty();
     }
 
     @PreDestroy
@@ -85,16 +209,20 @@ public class RSocketShellClient {
     public void logout() {
         if (userIsLoggedIn()) {
             this.s();
-            this.rsocketRequester.rsocket().dispose();
+            this.targetPool.dispose();
             logger.info("Logged out.");
         }
     }
 
     private boolean userIsLoggedIn() {
-        if (null == this.rsocketRequester || this.rsocketRequester.rsocket().isDisposed()) {
+        if (null == this.targetPool || this.targetPool.isDisposed()) {
         	logger.info("No connection. Did you login?");
             return false;
         }
+        if (this.targetPool.available() == 0) {
+            logger.info("No server available right now, reconnecting to {}.", targets);
+            return false;
+        }
         return true;
     }
 
@@ -102,23 +230,113 @@ public class RSocketShellClient {
     public void requestResponse() throws InterruptedException {
         if (userIsLoggedIn()) {
         	logger.info("\nSending one request. Waiting for one response...");
-            Notification objNotification = this.rsocketRequester
-                    .route("request-response")
-                    .data(new Notification(CLIENT, SERVER, "Test the Request-Response interaction model from client",CLIENT_ID))                
-                    .retrieveMono(Notification.class)
+            Notification objNotification = this.targetPool
+                    .request(requester -> requester
+                            .route("request-response")
+                            .data(new Notification(CLIENT, SERVER, "Test the Request-Response interaction model from client",CLIENT_ID))
+                            .retrieveMono(Notification.class))
+                    .onErrorResume(RSocketShellClient::isThrottling, this::throttled)
+                    .block();
+            if (objNotification != null) {
+                logger.info("\nResponse was: {}", objNotification);
+            }
+        }
+    }
+
+    @ShellMethod("Send a batch of requests in one payload. The responses will be printed.")
+    public void requestResponseBatch(@ShellOption(defaultValue = "16") int size) {
+        if (userIsLoggedIn()) {
+            logger.info("\nSending a batch of {} requests. Waiting for the batch of responses...", size);
+            List<Notification> requests = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                requests.add(new Notification(CLIENT, SERVER, "Test the batched Request-Response interaction model, request " + i, CLIENT_ID));
+            }
+            List<BatchResult> results = this.targetPool
+                    .request(requester -> requester
+                            .route("request-response-batch")
+                            .data(requests)
+                            .retrieveMono(new ParameterizedTypeReference<List<BatchResult>>() { }))
+                    .onErrorResume(RSocketShellClient::isThrottling, this::throttled)
+                    .blockOptional()
+                    .orElse(new ArrayList<>());
+            results.forEach(result -> logger.info("Response was: {}", result.getError() != null ? "error " + result.getError() : result.getResponse()));
+        }
+    }
+
+    @ShellMethod("Send one request. No response will be returned. Streams subscribed to the destination receive it.")
+    public void fireAndForget(@ShellOption(defaultValue = SERVER) String destination) throws InterruptedException {
+        if (userIsLoggedIn()) {
+        	logger.info("\nFire-And-Forget. Sending one request to {}. Expect no response (check server console log)...", destination);
+            this.targetPool
+                    .request(requester -> requester
+                            .route("fire-and-forget")
+                            .data(new Notification(CLIENT, destination, "Test the Fire-And-Forget interaction model",CLIENT_ID))
+                            .send())
+                    .onErrorResume(RSocketShellClient::isThrottling, this::throttled)
+                    .block();
+        }
+    }
+
+    @ShellMethod("Push one notification to another client, by its client id. Completes once that client acknowledged it.")
+    public void push(String clientId, @ShellOption(defaultValue = "Pushed by another client") String text) {
+        if (userIsLoggedIn()) {
+            logger.info("\nPush. Sending one notification to client {}...", clientId);
+            this.targetPool
+                    .request(requester -> requester
+                            .route("push")
+                            .data(new Notification(CLIENT, clientId, text, CLIENT_ID))
+                            .retrieveMono(Void.class))
+                    .doOnSuccess(done -> logger.info("Client {} acknowledged the push.", clientId))
+                    .onErrorResume(MissingLeaseException.class, this::throttled)
+                    .onErrorResume(RejectedException.class, e -> {
+                        // not connected to the server this request went to, too far behind, or throttled
+                        logger.warn("Push to client {} rejected: {}", clientId, e.getMessage());
+                        return Mono.empty();
+                    })
+                    .block();
+        }
+    }
+
+    @ShellMethod("Upload a file as the body of a notification, in chunks. The destination is told the body id to download it by.")
+    public void upload(String file, @ShellOption(defaultValue = SERVER) String destination) {
+        if (userIsLoggedIn()) {
+            Path path = Paths.get(file);
+            if (!Files.isReadable(path)) {
+                logger.info("Cannot read {}.", file);
+                return;
+            }
+            logger.info("\nUpload. Sending {} to {} in chunks of {} bytes...", file, destination, chunkSize);
+            // the file is read a chunk at a time, as the server asks for more
+            Flux<DataBuffer> chunks = DataBufferUtils.read(path, rsocketStrategies.dataBufferFactory(), chunkSize, StandardOpenOption.READ);
+            this.targetPool
+                    .requestMany(requester -> requester
+                            .route("upload." + destination)
+                            .data(chunks, DataBuffer.class)
+                            .retrieveFlux(BodyReceipt.class))
+                    .next()
+                    .doOnNext(receipt -> logger.info("Uploaded body {} of {} bytes.", receipt.getId(), receipt.getSize()))
+                    .onErrorResume(MissingLeaseException.class, this::throttled)
+                    .onErrorResume(RejectedException.class, e -> {
+                        logger.warn("Upload rejected: {}", e.getMessage());
+                        return Mono.empty();
+                    })
                     .block();
-            logger.info("\nResponse was: {}", objNotification);
         }
     }
 
-    @ShellMethod("Send one request. No response will be returned.")
-    public void fireAndForget() throws InterruptedException {
+    @ShellMethod("Download the body of a notification, in chunks, to a file.")
+    public void download(String id, String file) {
         if (userIsLoggedIn()) {
-        	logger.info("\nFire-And-Forget. Sending one request. Expect no response (check server console log)...");
-            this.rsocketRequester
-                    .route("fire-and-forget")
-                    .data(new Notification(CLIENT, SERVER, "Test the Fire-And-Forget interaction model",CLIENT_ID))
-                    .send()
+            logger.info("\nDownload. Receiving body {} to {}...", id, file);
+            // every chunk is written before the next is asked for
+            Flux<DataBuffer> chunks = this.targetPool
+                    .requestMany(requester -> requester
+                            .route("download")
+                            .data(id)
+                            .retrieveFlux(DataBuffer.class));
+            DataBufferUtils.write(chunks, Paths.get(file), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)
+                    .doOnSuccess(done -> logger.info("Downloaded body {} to {}.", id, file))
+                    .onErrorResume(RSocketShellClient::isThrottling, this::throttled)
                     .block();
         }
     }
@@ -127,15 +345,18 @@ public class RSocketShellClient {
     public void stream() {
         if (userIsLoggedIn()) {
         	logger.info("\n\n**** Request-Stream\n**** Send one request.\n**** Log responses.\n**** Type 's' to stop.");
-            disposable = this.rsocketRequester
-                    .route("stream")
-                    .data(new Notification(CLIENT, SERVER, "Test the Request-Stream interaction model",CLIENT_ID))
-                    .retrieveFlux(Notification.class)
+            disposable = this.targetPool
+                    .requestMany(requester -> requester
+                            .route("stream")
+                            // the stream listens on its source: this client's id is where others address it
+                            .data(new Notification(CLIENT_ID, SERVER, "Test the Request-Stream interaction model",CLIENT_ID))
+                            .retrieveFlux(Notification.class))
+                    .onErrorResume(RSocketShellClient::isThrottling, this::throttled)
                     .subscribe(notification -> logger.info("Response: {} \n(Type 's' to stop.)", notification));
         }
     }
 
-    @ShellMethod("Stream some settings to the server. Stream of responses will be printed.")
+    @ShellMethod("Stream some notifications to the server. Windowed statistics of them will be printed.")
     public void channel() {
         if (userIsLoggedIn()) {
         	logger.info("\n\n***** Channel (bi-directional streams)\n***** Asking for a stream of messages.\n***** Type 's' to stop.\n\n");
@@ -155,11 +376,31 @@ public class RSocketShellClient {
             Flux<Notification> notifications = Flux.concat(notification0, notification2, notification5)
                     .doOnNext(d -> logger.info("\n\"Send notification for my-channel\"\n"));
 
-            disposable = this.rsocketRequester
-                    .route("channel")
-                    .data(notifications)
-                    .retrieveFlux(Long.class)
-                    .subscribe(notification -> logger.info("Received: {} \n(Type 's' to stop.)", notification));
+            disposable = this.targetPool
+                    .requestMany(requester -> requester
+                            .route("channel")
+                            .data(notifications)
+                            .retrieveFlux(ChannelStats.class))
+                    .onErrorResume(RSocketShellClient::isThrottling, this::throttled)
+                    .subscribe(stats -> logger.info("Received: {} \n(Type 's' to stop.)", stats));
+        }
+    }
+
+    @ShellMethod("Generate load against a route. Latency percentiles and throughput will be printed.")
+    public void load(@ShellOption(defaultValue = "request-response") String route,
+                     @ShellOption(defaultValue = "64") int concurrency,
+                     @ShellOption(defaultValue = "0", help = "Number of requests, 0 to run for the duration only") long count,
+                     @ShellOption(defaultValue = "10", help = "Duration in seconds, 0 to run until count is reached") int seconds) {
+        if (userIsLoggedIn()) {
+            if (count <= 0 && seconds <= 0) {
+                logger.info("Give a count or a duration.");
+                return;
+            }
+            logger.info("\nLoad: {} requests in flight against '{}' (count={}, duration={}s)...", concurrency, route, count, seconds);
+            LoadGenerator.Report report = new LoadGenerator(this.targetPool,
+                    new Notification(CLIENT, SERVER, "Load test of the " + route + " route", CLIENT_ID))
+                    .run(route, concurrency, count, Duration.ofSeconds(seconds));
+            logger.info("\n{}", report);
         }
     }
 
@@ -177,10 +418,27 @@ public class RSocketShellClient {
 class ClientHandler {
 
 	 Logger logger = LoggerFactory.getLogger(ClientHandler.class);
-	 
+	 private final Ticker ticker;
+
+    ClientHandler(Ticker ticker) {
+        this.ticker = ticker;
+    }
+
     @MessageMapping("client-status")
     public Flux<String> statusUpdate(String status) {
     	logger.info("Connection {}", status);
-        return Flux.interval(Duration.ofSeconds(10)).map(index -> String.valueOf(Runtime.getRuntime().freeMemory()));
+        return ticker.every(Duration.ofSeconds(10)).map(index -> String.valueOf(Runtime.getRuntime().freeMemory()));
+    }
+
+    @MessageMapping("client-notification")
+    public Mono<Void> pushed(Notification notification) {
+        logger.info("Pushed: {}", notification);
+        return Mono.empty();
+    }
+
+    @MessageMapping("client-notifications")
+    public Mono<Void> storedNotifications(List<Notification> notifications) {
+        notifications.forEach(notification -> logger.info("Received while away: {}", notification));
+        return Mono.empty();
     }
 }
@@ -0,0 +1,367 @@
+package io.pivotal.rsocketclient;
+
+import java.nio.channels.ClosedChannelException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.rsocket.RSocketRequester;
+
+import io.rsocket.exceptions.ConnectionCloseException;
+import io.rsocket.exceptions.ConnectionErrorException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+/**
+ * Connections to several servers, with every request sent to one of them.
+ * <p>
+ * The server is picked by the power of two choices: of two connected targets drawn at random,
+ * the one with the lower cost gets the request, the cost being its latency, a peak-sensitive
+ * moving average decaying over {@code decay}, times its outstanding requests plus one. A slow or
+ * busy server therefore gets fewer requests, without every request scanning all targets or all
+ * of them herding to the single best one.
+ * <p>
+ * A target whose connection closes is left out at once and reconnected in the background, with a
+ * backoff from {@code minBackoff} to {@code maxBackoff}; it takes requests again as soon as it is
+ * back. So is a target a request failed on with a connection error, as a connection the server
+ * went away from without closing may never report closing. The latency of a stream is the time
+ * to its first element.
+ */
+class TargetPool implements Disposable {
+
+    // the latency assumed for a target until one of its requests completes
+    private static final long INITIAL_LATENCY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final List<Member> members;
+    private final Function<Target, Mono<RSocketRequester>> connector;
+    private final double decayNanos;
+    private final Duration minBackoff;
+    private final Duration maxBackoff;
+    private volatile boolean disposed;
+    Logger logger = LoggerFactory.getLogger(TargetPool.class);
+
+    /**
+     * @param targets   the servers to connect to
+     * @param connector connects to one target
+     */
+    TargetPool(List<Target> targets, Function<Target, Mono<RSocketRequester>> connector,
+               Duration decay, Duration minBackoff, Duration maxBackoff) {
+        if (targets.isEmpty()) {
+            throw new IllegalArgumentException("No targets");
+        }
+        this.connector = connector;
+        this.decayNanos = decay.toNanos();
+        this.minBackoff = minBackoff;
+        this.maxBackoff = maxBackoff;
+        List<Member> members = new ArrayList<>(targets.size());
+        for (Target target : targets) {
+            members.add(new Member(target));
+        }
+        this.members = Collections.unmodifiableList(members);
+        this.members.forEach(Member::connect);
+    }
+
+    /**
+     * @return the targets of a comma separated list of {@code host:port}
+     */
+    static List<Target> parse(String targets) {
+        List<Target> parsed = new ArrayList<>();
+        for (String target : targets.split(",")) {
+            String trimmed = target.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            int colon = trimmed.lastIndexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("Expected host:port, got '" + trimmed + "'");
+            }
+            parsed.add(new Target(trimmed.substring(0, colon), Integer.parseInt(trimmed.substring(colon + 1))));
+        }
+        return parsed;
+    }
+
+    /**
+     * Wait until at least one target is connected.
+     *
+     * @return false if none was within the timeout
+     */
+    boolean awaitAvailable(Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (available() == 0) {
+            if (disposed || System.nanoTime() > deadline) {
+                return false;
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Send one request to the target picked for it.
+     */
+    <T> Mono<T> request(Function<RSocketRequester, Mono<T>> call) {
+        return Mono.defer(() -> {
+            Member member = select();
+            if (member == null) {
+                return Mono.error(new IllegalStateException("No server available"));
+            }
+            RSocketRequester requester = member.requester;
+            if (requester == null) {
+                return Mono.error(new IllegalStateException("Server " + member.target + " not available"));
+            }
+            long start = member.start();
+            return call.apply(requester)
+                    .doOnSuccess(value -> member.observe(System.nanoTime() - start))
+                    .doOnError(error -> member.failed(requester, error))
+                    .doFinally(signal -> member.finish());
+        });
+    }
+
+    /**
+     * Open one stream on the target picked for it.
+     */
+    <T> Flux<T> requestMany(Function<RSocketRequester, Flux<T>> call) {
+        return Flux.defer(() -> {
+            Member member = select();
+            if (member == null) {
+                return Flux.error(new IllegalStateException("No server available"));
+            }
+            RSocketRequester requester = member.requester;
+            if (requester == null) {
+                return Flux.error(new IllegalStateException("Server " + member.target + " not available"));
+            }
+            long start = member.start();
+            AtomicInteger first = new AtomicInteger();
+            return call.apply(requester)
+                    .doOnNext(value -> {
+                        if (first.compareAndSet(0, 1)) {
+                            member.observe(System.nanoTime() - start);
+                        }
+                    })
+                    .doOnError(error -> member.failed(requester, error))
+                    .doFinally(signal -> member.finish());
+        });
+    }
+
+    Member select() {
+        List<Member> connected = new ArrayList<>(members.size());
+        for (Member member : members) {
+            if (member.requester != null) {
+                connected.add(member);
+            }
+        }
+        int size = connected.size();
+        if (size <= 1) {
+            return size == 0 ? null : connected.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+        Member a = connected.get(first);
+        Member b = connected.get(second);
+        return a.cost() <= b.cost() ? a : b;
+    }
+
+    /**
+     * @return whether a request failed because its connection did, rather than on the server
+     */
+    static boolean isConnectionFailure(Throwable error) {
+        return error instanceof ClosedChannelException
+                || error instanceof ConnectionErrorException
+                || error instanceof ConnectionCloseException;
+    }
+
+    int available() {
+        int available = 0;
+        for (Member member : members) {
+            if (member.requester != null) {
+                available++;
+            }
+        }
+        return available;
+    }
+
+    List<Member> members() {
+        return members;
+    }
+
+    @Override
+    public void dispose() {
+        disposed = true;
+        for (Member member : members) {
+            member.dispose();
+        }
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return disposed;
+    }
+
+    static final class Target {
+
+        private final String host;
+        private final int port;
+
+        Target(String host, int port) {
+            this.host = host;
+            this.port = port;
+        }
+
+        String getHost() {
+            return host;
+        }
+
+        int getPort() {
+            return port;
+        }
+
+        @Override
+        public String toString() {
+            return host + ":" + port;
+        }
+    }
+
+    /**
+     * One target, its connection when there is one, and its load.
+     */
+    final class Member {
+
+        private final Target target;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicLong requests = new AtomicLong();
+        private volatile RSocketRequester requester;
+        private volatile Disposable connection;
+        // written holding the member's lock, read without
+        private volatile double latencyNanos = INITIAL_LATENCY_NANOS;
+        private long observedAt = System.nanoTime();
+
+        Member(Target target) {
+            this.target = target;
+        }
+
+        private void connect() {
+            if (disposed) {
+                return;
+            }
+            connection = Mono.defer(() -> connector.apply(target))
+                    .retryWhen(Retry.backoff(Long.MAX_VALUE, minBackoff).maxBackoff(maxBackoff)
+                            .doBeforeRetry(retry -> logger.debug("Connecting to {} failed: {}", target, retry.failure().toString())))
+                    .subscribe(connected -> {
+                        if (disposed) {
+                            connected.rsocket().dispose();
+                            return;
+                        }
+                        synchronized (this) {
+                            latencyNanos = INITIAL_LATENCY_NANOS;
+                            observedAt = System.nanoTime();
+                        }
+                        requester = connected;
+                        logger.info("Connected to {}", target);
+                        connected.rsocket().onClose()
+                                .doFinally(signal -> {
+                                    requester = null;
+                                    if (!disposed) {
+                                        logger.warn("Connection to {} lost, reconnecting", target);
+                                        connect();
+                                    }
+                                })
+                                .subscribe(null, error -> { });
+                    });
+        }
+
+        /**
+         * Close the connection a request failed on with a connection error, so that the target is
+         * left out and reconnected as if the connection had reported closing.
+         */
+        private void failed(RSocketRequester failedOn, Throwable error) {
+            if (isConnectionFailure(error) && requester == failedOn) {
+                logger.warn("Request to {} failed on its connection: {}", target, error.toString());
+                failedOn.rsocket().dispose();
+            }
+        }
+
+        private long start() {
+            outstanding.incrementAndGet();
+            requests.incrementAndGet();
+            return System.nanoTime();
+        }
+
+        private void finish() {
+            outstanding.decrementAndGet();
+        }
+
+        /**
+         * Move the average toward a latency just observed, at once if it is higher.
+         */
+        private synchronized void observe(long nanos) {
+            long now = System.nanoTime();
+            if (nanos > latencyNanos) {
+                latencyNanos = nanos;
+            } else {
+                double weight = Math.exp(-(now - observedAt) / decayNanos);
+                latencyNanos = latencyNanos * weight + nanos * (1 - weight);
+            }
+            observedAt = now;
+        }
+
+        private double cost() {
+            return latencyNanos * (outstanding.get() + 1);
+        }
+
+        private void dispose() {
+            Disposable pending = connection;
+            if (pending != null) {
+                pending.dispose();
+            }
+            RSocketRequester connected = requester;
+            if (connected != null) {
+                connected.rsocket().dispose();
+            }
+        }
+
+        Target getTarget() {
+            return target;
+        }
+
+        boolean isConnected() {
+            return requester != null;
+        }
+
+        int getOutstanding() {
+            return outstanding.get();
+        }
+
+        long getRequests() {
+            return requests.get();
+        }
+
+        double getLatencyMillis() {
+            return latencyNanos / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s outstanding=%d requests=%d latency=%.2fms", target,
+                    isConnected() ? "UP" : "DOWN", getOutstanding(), getRequests(), getLatencyMillis());
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package io.pivotal.rsocketclient.data;
+
+import io.pivotal.rsocketcommon.data.Notification;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The outcome of one item of a batch: its response, or the reason it failed.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchResult {
+    private Notification response;
+    private String error;
+
+    public static BatchResult success(Notification response) {
+        return new BatchResult(response, null);
+    }
+
+    public static BatchResult failure(String error) {
+        return new BatchResult(null, error);
+    }
+}
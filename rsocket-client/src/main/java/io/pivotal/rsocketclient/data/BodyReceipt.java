@@ -0,0 +1,16 @@
+package io.pivotal.rsocketclient.data;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A body uploaded in chunks and kept by the server: the id to download it by, and its size.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BodyReceipt {
+    private String id;
+    private long size;
+}
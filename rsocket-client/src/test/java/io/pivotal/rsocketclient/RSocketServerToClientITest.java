@@ -1,5 +1,6 @@
 package io.pivotal.rsocketclient;
 
+import io.pivotal.rsocketcommon.Ticker;
 import io.rsocket.SocketAcceptor;
 import io.rsocket.core.RSocketServer;
 import io.rsocket.frame.decoder.PayloadDecoder;
@@ -39,11 +40,14 @@ public class RSocketServerToClientITest {
 
     private static CloseableChannel server;
 
+    private static Ticker ticker;
+
 
     @BeforeAll
     public static void setupOnce() {
         // create a client identity spring for this test suite
         clientId = UUID.randomUUID().toString();
+        ticker = new Ticker(Duration.ofMillis(100));
 
         // create a Spring context for this test suite and obtain some beans
         context = new AnnotationConfigApplicationContext(ServerConfig.class);
@@ -59,6 +63,7 @@ public class RSocketServerToClientITest {
     @AfterAll
     public static void tearDownOnce() {
         server.dispose();
+        ticker.destroy();
     }
 
     /**
@@ -85,7 +90,7 @@ public class RSocketServerToClientITest {
             controller.reset();
 
             // Add our ClientHandler as a responder
-            SocketAcceptor responder = RSocketMessageHandler.responder(strategies, new ClientHandler());
+            SocketAcceptor responder = RSocketMessageHandler.responder(strategies, new ClientHandler(ticker));
 
             // Create an RSocket requester that includes our responder
             requester = RSocketRequester.builder()
@@ -0,0 +1,178 @@
+package io.pivotal.rsocketclient;
+
+import io.rsocket.DuplexConnection;
+import io.rsocket.SocketAcceptor;
+import io.rsocket.core.RSocketServer;
+import io.rsocket.plugins.DuplexConnectionInterceptor;
+import io.rsocket.transport.netty.server.CloseableChannel;
+import io.rsocket.transport.netty.server.TcpServerTransport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.messaging.rsocket.RSocketStrategies;
+import org.springframework.messaging.rsocket.annotation.support.RSocketMessageHandler;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Run three servers in-process on ephemeral ports, one of them slow, and spread requests over
+ * them with a {@link TargetPool}: the slow server gets few requests, a server that goes down is
+ * left out quickly without failing later requests, and it takes requests again once it is back.
+ */
+public class TargetPoolITest {
+
+    private static final Duration SLOW = Duration.ofMillis(100);
+
+    private final RSocketStrategies strategies = RSocketStrategies.create();
+    private final List<Server> servers = new ArrayList<>();
+    private TargetPool pool;
+
+    @BeforeEach
+    public void setup() {
+        servers.add(new Server("fast-1", Duration.ZERO, 0));
+        servers.add(new Server("fast-2", Duration.ZERO, 0));
+        servers.add(new Server("slow", SLOW, 0));
+        List<TargetPool.Target> targets = new ArrayList<>();
+        for (Server server : servers) {
+            targets.add(new TargetPool.Target("localhost", server.port));
+        }
+        pool = new TargetPool(targets,
+                target -> RSocketRequester.builder().rsocketStrategies(strategies).connectTcp(target.getHost(), target.getPort()),
+                Duration.ofSeconds(1), Duration.ofMillis(50), Duration.ofMillis(200));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (pool.available() < servers.size()) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            sleep(10);
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        pool.dispose();
+        servers.forEach(Server::stop);
+    }
+
+    @Test
+    public void testSlowServerGetsFewRequests() {
+        Map<String, Long> served = run(3_000, 32);
+
+        assertThat(served.values().stream().mapToLong(Long::longValue).sum()).isEqualTo(3_000);
+        assertThat(served.getOrDefault("fast-1", 0L)).isGreaterThan(900);
+        assertThat(served.getOrDefault("fast-2", 0L)).isGreaterThan(900);
+        assertThat(served.getOrDefault("slow", 0L)).isLessThan(300);
+    }
+
+    @Test
+    public void testDeadServerIsLeftOutAndAddedBack() {
+        Server failing = servers.get(0);
+        long killed = System.nanoTime();
+        failing.stop();
+        long deadline = killed + TimeUnit.SECONDS.toNanos(5);
+        while (pool.available() == servers.size()) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            sleep(1);
+        }
+        long failover = System.nanoTime() - killed;
+        assertThat(failover).isLessThan(TimeUnit.SECONDS.toNanos(1));
+
+        // nothing goes to the dead server, and nothing fails
+        Map<String, Long> served = run(1_000, 16);
+        assertThat(served).doesNotContainKey(failing.name);
+        assertThat(served.values().stream().mapToLong(Long::longValue).sum()).isEqualTo(1_000);
+
+        Server restarted = new Server(failing.name, Duration.ZERO, failing.port);
+        servers.set(0, restarted);
+        deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (pool.available() < servers.size()) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            sleep(10);
+        }
+        assertThat(run(1_000, 16)).containsKey(restarted.name);
+    }
+
+    private Map<String, Long> run(int requests, int concurrency) {
+        Map<String, AtomicLong> served = new ConcurrentHashMap<>();
+        Flux.range(0, requests)
+                .flatMap(i -> pool.request(requester -> requester.route("name").retrieveMono(String.class)), concurrency)
+                .doOnNext(name -> served.computeIfAbsent(name, n -> new AtomicLong()).incrementAndGet())
+                .blockLast(Duration.ofSeconds(30));
+        Map<String, Long> counts = new ConcurrentHashMap<>();
+        served.forEach((name, count) -> counts.put(name, count.get()));
+        return counts;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A server answering the 'name' route with its name, after a delay. Stopping it closes its
+     * connections as well, as a crash would.
+     */
+    private final class Server {
+
+        private final String name;
+        private final int port;
+        private final CloseableChannel channel;
+        private final List<DuplexConnection> connections = new CopyOnWriteArrayList<>();
+
+        Server(String name, Duration delay, int port) {
+            this.name = name;
+            RSocketMessageHandler handler = new RSocketMessageHandler();
+            handler.setRSocketStrategies(strategies);
+            handler.setHandlers(Collections.singletonList(new NameController(name, delay)));
+            handler.afterPropertiesSet();
+            SocketAcceptor responder = handler.responder();
+            this.channel = RSocketServer.create(responder)
+                    // the transport's connections: disposing the RSocket of one does not close it
+                    .interceptors(registry -> registry.forConnection((type, connection) -> {
+                        if (type == DuplexConnectionInterceptor.Type.SOURCE) {
+                            connections.add(connection);
+                        }
+                        return connection;
+                    }))
+                    .bind(TcpServerTransport.create("localhost", port))
+                    .block();
+            this.port = channel.address().getPort();
+        }
+
+        void stop() {
+            channel.dispose();
+            connections.forEach(DuplexConnection::dispose);
+        }
+    }
+
+    static class NameController {
+
+        private final String name;
+        private final Duration delay;
+
+        NameController(String name, Duration delay) {
+            this.name = name;
+            this.delay = delay;
+        }
+
+        @MessageMapping("name")
+        Mono<String> name() {
+            return delay.isZero() ? Mono.just(name) : Mono.just(name).delayElement(delay);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package io.pivotal.rsocketcommon;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+/**
+ * Periodic ticks for every periodic emission of an application, driven by one hashed-wheel timer.
+ * <p>
+ * All subscribers asking for the same period share one tick source, so a period costs one
+ * timer entry however many connections use it, and the entry only exists while someone is
+ * subscribed. Ticks fire with the granularity of the wheel and are delivered on its thread, so
+ * subscribers must not block. A subscriber that is not ready for a tick misses it rather than
+ * delaying the others; the tick index tells how many ticks the source has fired so far.
+ * <p>
+ * The server and the client each import it as a bean of their own.
+ */
+public class Ticker implements DisposableBean {
+
+    private final HashedWheelTimer timer;
+    private final ConcurrentHashMap<Duration, Flux<Long>> ticks = new ConcurrentHashMap<>();
+
+    public Ticker(@Value("${rsocket.ticker.tick-duration:100ms}") Duration tickDuration) {
+        this.timer = new HashedWheelTimer(new DefaultThreadFactory("ticker", true),
+                tickDuration.toMillis(), TimeUnit.MILLISECONDS, 512);
+    }
+
+    /**
+     * @return ticks every {@code period}, starting one period after the first subscriber of that period subscribed
+     */
+    public Flux<Long> every(Duration period) {
+        return ticks.computeIfAbsent(period, this::tickSource).onBackpressureDrop();
+    }
+
+    private Flux<Long> tickSource(Duration period) {
+        return Flux.<Long>create(sink -> new PeriodicTask(sink, period.toNanos()).schedule())
+                .publish()
+                .refCount();
+    }
+
+    @Override
+    public void destroy() {
+        timer.stop();
+    }
+
+    private final class PeriodicTask implements TimerTask {
+
+        private final FluxSink<Long> sink;
+        private final long periodNanos;
+        private final AtomicLong index = new AtomicLong();
+        private volatile Timeout timeout;
+
+        PeriodicTask(FluxSink<Long> sink, long periodNanos) {
+            this.sink = sink;
+            this.periodNanos = periodNanos;
+            sink.onDispose(() -> {
+                Timeout scheduled = timeout;
+                if (scheduled != null) {
+                    scheduled.cancel();
+                }
+            });
+        }
+
+        void schedule() {
+            timeout = timer.newTimeout(this, periodNanos, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void run(Timeout timeout) {
+            if (sink.isCancelled()) {
+                return;
+            }
+            sink.next(index.getAndIncrement());
+            schedule();
+        }
+    }
+}
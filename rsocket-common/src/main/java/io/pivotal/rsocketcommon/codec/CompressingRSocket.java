@@ -0,0 +1,60 @@
+package io.pivotal.rsocketcommon.codec;
+
+import org.reactivestreams.Publisher;
+
+import io.rsocket.Payload;
+import io.rsocket.RSocket;
+import io.rsocket.util.RSocketProxy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Compress the data of the payloads one side of a connection sends, and decompress the data of
+ * those it receives, in the {@link PayloadCompression} format, for all four interaction models.
+ * <p>
+ * Wrapping a requester compresses its requests and decompresses the responses; wrapping a
+ * responder decompresses the requests it is given and compresses its responses.
+ */
+public final class CompressingRSocket extends RSocketProxy {
+
+    private final int threshold;
+    private final boolean responder;
+
+    /**
+     * @param threshold the size below which data is sent as it is
+     * @param responder whether the wrapped RSocket handles requests rather than sends them
+     */
+    public CompressingRSocket(RSocket source, int threshold, boolean responder) {
+        super(source);
+        this.threshold = threshold;
+        this.responder = responder;
+    }
+
+    @Override
+    public Mono<Void> fireAndForget(Payload payload) {
+        return Mono.defer(() -> super.fireAndForget(request(payload)));
+    }
+
+    @Override
+    public Mono<Payload> requestResponse(Payload payload) {
+        return Mono.defer(() -> super.requestResponse(request(payload))).map(this::response);
+    }
+
+    @Override
+    public Flux<Payload> requestStream(Payload payload) {
+        return Flux.defer(() -> super.requestStream(request(payload))).map(this::response);
+    }
+
+    @Override
+    public Flux<Payload> requestChannel(Publisher<Payload> payloads) {
+        return super.requestChannel(Flux.from(payloads).map(this::request)).map(this::response);
+    }
+
+    private Payload request(Payload payload) {
+        return responder ? PayloadCompression.decompress(payload) : PayloadCompression.compress(payload, threshold);
+    }
+
+    private Payload response(Payload payload) {
+        return responder ? PayloadCompression.compress(payload, threshold) : PayloadCompression.decompress(payload);
+    }
+}
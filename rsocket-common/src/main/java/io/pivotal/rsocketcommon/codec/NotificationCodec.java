@@ -0,0 +1,148 @@
+package io.pivotal.rsocketcommon.codec;
+
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.util.MimeType;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.pivotal.rsocketcommon.data.ComposedText;
+import io.pivotal.rsocketcommon.data.Notification;
+import io.pivotal.rsocketcommon.data.StringDictionary;
+
+/**
+ * Compact binary wire format for {@link Notification}.
+ * <p>
+ * Layout: one version byte followed by source, destination, text and clientid. Each string is a
+ * varint of (UTF-8 length + 1), with 0 meaning null, followed by the UTF-8 bytes. Strings are
+ * written straight into the target {@link ByteBuf} and read straight out of it; a
+ * {@link ComposedText} is written part by part. The source and destination are read through
+ * {@link StringDictionary#ROUTING}, so the names it holds are not decoded again.
+ */
+public final class NotificationCodec {
+
+    public static final MimeType MIME_TYPE = new MimeType("application", "x.notification.v1+binary");
+
+    static final byte VERSION = 1;
+
+    private NotificationCodec() {
+    }
+
+    /**
+     * @return the exact number of bytes {@link #write} will produce for the notification
+     */
+    public static int encodedLength(Notification notification) {
+        return 1
+                + stringLength(notification.getSource())
+                + stringLength(notification.getDestination())
+                + stringLength(notification.textSequence())
+                + stringLength(notification.clientidSequence());
+    }
+
+    public static void write(ByteBuf out, Notification notification) {
+        out.writeByte(VERSION);
+        writeString(out, notification.getSource());
+        writeString(out, notification.getDestination());
+        writeString(out, notification.textSequence());
+        writeString(out, notification.clientidSequence());
+    }
+
+    /**
+     * Read a notification from the buffer's readable bytes. The buffer is not released.
+     *
+     * @throws IllegalArgumentException if the bytes are not a notification of a known version
+     */
+    public static Notification read(ByteBuf in) {
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported notification encoding version " + version);
+        }
+        String source = readString(in, StringDictionary.ROUTING);
+        String destination = readString(in, StringDictionary.ROUTING);
+        String text = readString(in, null);
+        String clientid = readString(in, null);
+        return new Notification(source, destination, text, clientid);
+    }
+
+    private static int stringLength(CharSequence value) {
+        if (value == null) {
+            return 1;
+        }
+        int length = utf8Length(value);
+        return varIntLength(length + 1) + length;
+    }
+
+    private static void writeString(ByteBuf out, CharSequence value) {
+        if (value == null) {
+            out.writeByte(0);
+            return;
+        }
+        int length = utf8Length(value);
+        writeVarInt(out, length + 1);
+        writeUtf8(out, value, length);
+    }
+
+    private static int utf8Length(CharSequence value) {
+        if (value instanceof ComposedText) {
+            ComposedText composed = (ComposedText) value;
+            return ByteBufUtil.utf8Bytes(composed.getPrefix()) + utf8Length(composed.getOriginal());
+        }
+        return ByteBufUtil.utf8Bytes(value);
+    }
+
+    private static void writeUtf8(ByteBuf out, CharSequence value, int length) {
+        if (value instanceof ComposedText) {
+            ComposedText composed = (ComposedText) value;
+            int prefixLength = ByteBufUtil.utf8Bytes(composed.getPrefix());
+            ByteBufUtil.reserveAndWriteUtf8(out, composed.getPrefix(), prefixLength);
+            writeUtf8(out, composed.getOriginal(), length - prefixLength);
+        } else {
+            ByteBufUtil.reserveAndWriteUtf8(out, value, length);
+        }
+    }
+
+    private static String readString(ByteBuf in, StringDictionary dictionary) {
+        int length = readVarInt(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        if (length > in.readableBytes()) {
+            throw new IllegalArgumentException("Truncated notification: string of " + length + " bytes, "
+                    + in.readableBytes() + " readable");
+        }
+        String value = dictionary != null
+                ? dictionary.decode(in, in.readerIndex(), length)
+                : in.toString(in.readerIndex(), length, StandardCharsets.UTF_8);
+        in.skipBytes(length);
+        return value;
+    }
+
+    private static int varIntLength(int value) {
+        int length = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            length++;
+        }
+        return length;
+    }
+
+    private static void writeVarInt(ByteBuf out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(ByteBuf in) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint in notification");
+    }
+}
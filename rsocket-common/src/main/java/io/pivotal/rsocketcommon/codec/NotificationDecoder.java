@@ -0,0 +1,65 @@
+package io.pivotal.rsocketcommon.codec;
+
+import java.util.Map;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.AbstractDecoder;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBuffer;
+import org.springframework.lang.Nullable;
+import org.springframework.util.MimeType;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.pivotal.rsocketcommon.data.Notification;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Decodes a {@link Notification} from the {@link NotificationCodec} binary format. Netty backed
+ * buffers are read in place; every input buffer is released once decoded, also on failure.
+ */
+public class NotificationDecoder extends AbstractDecoder<Notification> {
+
+    public NotificationDecoder() {
+        super(NotificationCodec.MIME_TYPE);
+    }
+
+    @Override
+    public boolean canDecode(ResolvableType elementType, @Nullable MimeType mimeType) {
+        return Notification.class.equals(elementType.toClass()) && super.canDecode(elementType, mimeType);
+    }
+
+    @Override
+    public Flux<Notification> decode(Publisher<DataBuffer> inputStream, ResolvableType elementType,
+            @Nullable MimeType mimeType, @Nullable Map<String, Object> hints) {
+
+        return Flux.from(inputStream).map(buffer -> decode(buffer, elementType, mimeType, hints));
+    }
+
+    @Override
+    public Mono<Notification> decodeToMono(Publisher<DataBuffer> inputStream, ResolvableType elementType,
+            @Nullable MimeType mimeType, @Nullable Map<String, Object> hints) {
+
+        return DataBufferUtils.join(inputStream).map(buffer -> decode(buffer, elementType, mimeType, hints));
+    }
+
+    @Override
+    public Notification decode(DataBuffer buffer, ResolvableType targetType,
+            @Nullable MimeType mimeType, @Nullable Map<String, Object> hints) throws DecodingException {
+
+        try {
+            ByteBuf in = buffer instanceof NettyDataBuffer
+                    ? ((NettyDataBuffer) buffer).getNativeBuffer()
+                    : Unpooled.wrappedBuffer(buffer.asByteBuffer());
+            return NotificationCodec.read(in);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException ex) {
+            throw new DecodingException("Could not decode binary notification", ex);
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+    }
+}
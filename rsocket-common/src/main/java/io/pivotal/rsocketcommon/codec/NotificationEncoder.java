@@ -0,0 +1,63 @@
+package io.pivotal.rsocketcommon.codec;
+
+import java.util.Map;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.AbstractEncoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.lang.Nullable;
+import org.springframework.util.MimeType;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.pivotal.rsocketcommon.data.Notification;
+import reactor.core.publisher.Flux;
+
+/**
+ * Encodes a {@link Notification} in the {@link NotificationCodec} binary format. With a
+ * {@link NettyDataBufferFactory} the notification is written into a single, exactly sized
+ * buffer from the factory's (pooled) allocator.
+ */
+public class NotificationEncoder extends AbstractEncoder<Notification> {
+
+    public NotificationEncoder() {
+        super(NotificationCodec.MIME_TYPE);
+    }
+
+    @Override
+    public boolean canEncode(ResolvableType elementType, @Nullable MimeType mimeType) {
+        return Notification.class.isAssignableFrom(elementType.toClass()) && super.canEncode(elementType, mimeType);
+    }
+
+    @Override
+    public Flux<DataBuffer> encode(Publisher<? extends Notification> inputStream, DataBufferFactory bufferFactory,
+            ResolvableType elementType, @Nullable MimeType mimeType, @Nullable Map<String, Object> hints) {
+
+        return Flux.from(inputStream).map(notification ->
+                encodeValue(notification, bufferFactory, elementType, mimeType, hints));
+    }
+
+    @Override
+    public DataBuffer encodeValue(Notification notification, DataBufferFactory bufferFactory,
+            ResolvableType valueType, @Nullable MimeType mimeType, @Nullable Map<String, Object> hints) {
+
+        int length = NotificationCodec.encodedLength(notification);
+        if (bufferFactory instanceof NettyDataBufferFactory) {
+            NettyDataBufferFactory nettyFactory = (NettyDataBufferFactory) bufferFactory;
+            ByteBuf buffer = nettyFactory.getByteBufAllocator().buffer(length, length);
+            try {
+                NotificationCodec.write(buffer, notification);
+            } catch (RuntimeException ex) {
+                buffer.release();
+                throw ex;
+            }
+            return nettyFactory.wrap(buffer);
+        }
+        ByteBuf buffer = Unpooled.buffer(length, length);
+        NotificationCodec.write(buffer, notification);
+        return bufferFactory.wrap(buffer.nioBuffer());
+    }
+}
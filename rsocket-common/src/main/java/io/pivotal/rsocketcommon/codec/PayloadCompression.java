@@ -0,0 +1,221 @@
+package io.pivotal.rsocketcommon.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.springframework.util.MimeType;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.rsocket.ConnectionSetupPayload;
+import io.rsocket.Payload;
+import io.rsocket.frame.FrameLengthCodec;
+import io.rsocket.metadata.CompositeMetadata;
+import io.rsocket.metadata.WellKnownMimeType;
+import io.rsocket.util.ByteBufPayload;
+
+/**
+ * Wire format of compressed payload data, for the connections that asked for it at setup.
+ * <p>
+ * A client asks by adding a {@link #MIME_TYPE} entry naming the algorithm, {@link #DEFLATE}, to
+ * the composite metadata of its SETUP frame. From then on the data of every payload, in either
+ * direction, starts with a flag byte: {@code 0} for data sent as it is, {@code 1} for data
+ * compressed with Deflate, followed by the length of the data once inflated as an int. Data
+ * below the sender's threshold, or that Deflate would not make smaller, is sent as it is.
+ * Metadata is never compressed, so routing and security read it as usual.
+ * <p>
+ * Each thread has one {@link Deflater} and one {@link Inflater}, reset for every payload, and
+ * compresses from and inflates into the backing arrays of pooled heap buffers, so a payload
+ * costs no allocation beyond its buffer.
+ */
+public final class PayloadCompression {
+
+    public static final MimeType MIME_TYPE = new MimeType("message", "x.rsocket.compression.v0");
+    public static final String DEFLATE = "deflate";
+
+    static final byte NONE = 0;
+    static final byte DEFLATED = 1;
+    // the largest frame RSocket sends, and so the largest data worth inflating
+    static final int MAX_INFLATED_LENGTH = FrameLengthCodec.FRAME_LENGTH_MASK;
+
+    private static final String COMPOSITE_METADATA = WellKnownMimeType.MESSAGE_RSOCKET_COMPOSITE_METADATA.getString();
+    // input arrays of direct buffers larger than this are not kept by the thread
+    private static final int MAX_KEPT_INPUT = 64 * 1024;
+    private static final ThreadLocal<State> STATE = ThreadLocal.withInitial(State::new);
+
+    private PayloadCompression() {
+    }
+
+    /**
+     * @return the algorithm the client asked for in the SETUP frame, or null if it asked for none
+     */
+    public static String requested(ConnectionSetupPayload setup) {
+        if (!setup.hasMetadata() || !COMPOSITE_METADATA.equals(setup.metadataMimeType())) {
+            return null;
+        }
+        for (CompositeMetadata.Entry entry : new CompositeMetadata(setup.sliceMetadata(), false)) {
+            if (MIME_TYPE.toString().equals(entry.getMimeType())) {
+                return entry.getContent().toString(StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Replace the data of a payload with its compressed form. The payload is released.
+     */
+    public static Payload compress(Payload payload, int threshold) {
+        return replaceData(payload, compress(ByteBufAllocator.DEFAULT, payload.sliceData(), threshold));
+    }
+
+    /**
+     * Replace the compressed data of a payload with the data it holds. The payload is released.
+     *
+     * @throws IllegalArgumentException if the data is not in the compressed format
+     */
+    public static Payload decompress(Payload payload) {
+        return replaceData(payload, decompress(ByteBufAllocator.DEFAULT, payload.sliceData()));
+    }
+
+    private static Payload replaceData(Payload payload, ByteBuf data) {
+        try {
+            return ByteBufPayload.create(data, payload.hasMetadata() ? payload.sliceMetadata().retain() : null);
+        } finally {
+            payload.release();
+        }
+    }
+
+    /**
+     * @return the data, compressed if it is at least {@code threshold} bytes and compresses; the
+     * data itself is not released
+     */
+    public static ByteBuf compress(ByteBufAllocator allocator, ByteBuf data, int threshold) {
+        int length = data.readableBytes();
+        if (length >= threshold && length > 0) {
+            State state = STATE.get();
+            Deflater deflater = state.deflater;
+            deflater.reset();
+            setInput(state, deflater, data);
+            // compressed data is only worth sending if it is smaller, flag and length included
+            ByteBuf compressed = allocator.heapBuffer(length);
+            try {
+                compressed.writeByte(DEFLATED).writeInt(length);
+                byte[] out = compressed.array();
+                int offset = compressed.arrayOffset() + compressed.writerIndex();
+                int room = length - compressed.writerIndex();
+                int written = 0;
+                while (!deflater.finished() && written < room) {
+                    written += deflater.deflate(out, offset + written, room - written);
+                }
+                if (deflater.finished()) {
+                    compressed.writerIndex(compressed.writerIndex() + written);
+                    ByteBuf result = compressed;
+                    compressed = null;
+                    return result;
+                }
+            } finally {
+                if (compressed != null) {
+                    compressed.release();
+                }
+            }
+        }
+        return allocator.buffer(1 + length).writeByte(NONE).writeBytes(data, data.readerIndex(), length);
+    }
+
+    /**
+     * @return the data the compressed data holds; the compressed data itself is not released
+     * @throws IllegalArgumentException if the data is not in the compressed format
+     */
+    public static ByteBuf decompress(ByteBufAllocator allocator, ByteBuf data) {
+        if (!data.isReadable()) {
+            throw new IllegalArgumentException("No compression flag");
+        }
+        byte flag = data.getByte(data.readerIndex());
+        if (flag == NONE) {
+            return data.retainedSlice(data.readerIndex() + 1, data.readableBytes() - 1);
+        }
+        if (flag != DEFLATED || data.readableBytes() < 5) {
+            throw new IllegalArgumentException("Unknown compression flag " + flag);
+        }
+        int length = data.getInt(data.readerIndex() + 1);
+        if (length < 0 || length > MAX_INFLATED_LENGTH) {
+            throw new IllegalArgumentException("Inflated length " + length + " out of bounds");
+        }
+        State state = STATE.get();
+        Inflater inflater = state.inflater;
+        inflater.reset();
+        setInput(state, inflater, data.slice(data.readerIndex() + 5, data.readableBytes() - 5));
+        ByteBuf inflated = allocator.heapBuffer(length, length);
+        try {
+            byte[] out = inflated.array();
+            int offset = inflated.arrayOffset();
+            int read = 0;
+            while (read < length && !inflater.finished()) {
+                int n = inflater.inflate(out, offset + read, length - read);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += n;
+            }
+            if (read != length) {
+                throw new IllegalArgumentException("Compressed data does not inflate to " + length + " bytes");
+            }
+            inflated.writerIndex(length);
+            ByteBuf result = inflated;
+            inflated = null;
+            return result;
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt compressed data", e);
+        } finally {
+            if (inflated != null) {
+                inflated.release();
+            }
+        }
+    }
+
+    private static void setInput(State state, Deflater deflater, ByteBuf data) {
+        if (data.hasArray()) {
+            deflater.setInput(data.array(), data.arrayOffset() + data.readerIndex(), data.readableBytes());
+        } else {
+            byte[] input = state.input(data);
+            deflater.setInput(input, 0, data.readableBytes());
+        }
+        deflater.finish();
+    }
+
+    private static void setInput(State state, Inflater inflater, ByteBuf data) {
+        if (data.hasArray()) {
+            inflater.setInput(data.array(), data.arrayOffset() + data.readerIndex(), data.readableBytes());
+        } else {
+            inflater.setInput(state.input(data), 0, data.readableBytes());
+        }
+    }
+
+    /**
+     * The compressor state of one thread.
+     */
+    private static final class State {
+
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private final Inflater inflater = new Inflater();
+        private byte[] input = new byte[4096];
+
+        /**
+         * @return the readable bytes of a buffer without an array, copied into one
+         */
+        private byte[] input(ByteBuf data) {
+            int length = data.readableBytes();
+            byte[] target = input;
+            if (target.length < length) {
+                target = new byte[length];
+                if (length <= MAX_KEPT_INPUT) {
+                    input = target;
+                }
+            }
+            data.getBytes(data.readerIndex(), target, 0, length);
+            return target;
+        }
+    }
+}
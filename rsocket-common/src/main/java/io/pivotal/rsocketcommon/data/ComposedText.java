@@ -0,0 +1,67 @@
+package io.pivotal.rsocketcommon.data;
+
+/**
+ * A prefix followed by another character sequence, without copying either: the text of a
+ * response made of a fixed prefix and the request's text. The String of both together is only
+ * built, once, if {@link #toString()} is called.
+ */
+public final class ComposedText implements CharSequence {
+
+    private final String prefix;
+    private final CharSequence original;
+    // built on first use; a race builds it twice, to equal Strings
+    private String string;
+
+    private ComposedText(String prefix, CharSequence original) {
+        this.prefix = prefix;
+        this.original = original;
+    }
+
+    /**
+     * @param original the text behind the prefix; null stands for "null", as in concatenation
+     */
+    public static ComposedText of(String prefix, CharSequence original) {
+        return new ComposedText(prefix, original != null ? original : "null");
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public CharSequence getOriginal() {
+        return original;
+    }
+
+    @Override
+    public int length() {
+        return prefix.length() + original.length();
+    }
+
+    @Override
+    public char charAt(int index) {
+        int split = prefix.length();
+        return index < split ? prefix.charAt(index) : original.charAt(index - split);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        int split = prefix.length();
+        if (end <= split) {
+            return prefix.subSequence(start, end);
+        }
+        if (start >= split) {
+            return original.subSequence(start - split, end - split);
+        }
+        return toString().subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        String built = string;
+        if (built == null) {
+            built = new StringBuilder(length()).append(prefix).append(original).toString();
+            string = built;
+        }
+        return built;
+    }
+}
@@ -0,0 +1,102 @@
+package io.pivotal.rsocketcommon.data;
+
+import java.util.Objects;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * A notification from a source to a destination. Immutable.
+ * <p>
+ * The source and destination come from a small set of names, so they are taken from
+ * {@link StringDictionary#ROUTING}: every notification between the same two parties shares their
+ * Strings. Client ids are not, as there is no bound on how many the dictionary would keep. The
+ * text and client id are kept as the {@link CharSequence} they were given, so that
+ * a {@link #reply} refers to the request's text behind its prefix, as a {@link ComposedText},
+ * instead of copying it; the binary codec writes it as it is, and it only becomes a String if
+ * {@link #getText()} is called, as by the JSON codec.
+ */
+public final class Notification {
+
+    private final String source;
+    private final String destination;
+    private final CharSequence text;
+    private final CharSequence clientid;
+
+    @JsonCreator
+    public Notification(@JsonProperty("source") String source, @JsonProperty("destination") String destination,
+            @JsonProperty("text") String text, @JsonProperty("clientid") String clientid) {
+        this(source, destination, (CharSequence) text, (CharSequence) clientid);
+    }
+
+    private Notification(String source, String destination, CharSequence text, CharSequence clientid) {
+        this.source = StringDictionary.ROUTING.intern(source);
+        this.destination = StringDictionary.ROUTING.intern(destination);
+        this.text = text;
+        this.clientid = clientid;
+    }
+
+    /**
+     * @return a notification back to this one's source, with this one's text and client id behind
+     * the given prefixes, neither copied
+     */
+    public Notification reply(String textPrefix, String clientidPrefix) {
+        return new Notification(destination, source, ComposedText.of(textPrefix, text), ComposedText.of(clientidPrefix, clientid));
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public String getText() {
+        return text != null ? text.toString() : null;
+    }
+
+    public String getClientid() {
+        return clientid != null ? clientid.toString() : null;
+    }
+
+    /**
+     * @return the text as it was given, without making it a String
+     */
+    public CharSequence textSequence() {
+        return text;
+    }
+
+    /**
+     * @return the client id as it was given, without making it a String
+     */
+    public CharSequence clientidSequence() {
+        return clientid;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof Notification)) {
+            return false;
+        }
+        Notification notification = (Notification) other;
+        return Objects.equals(source, notification.source)
+                && Objects.equals(destination, notification.destination)
+                && Objects.equals(getText(), notification.getText())
+                && Objects.equals(getClientid(), notification.getClientid());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(source, destination, getText(), getClientid());
+    }
+
+    @Override
+    public String toString() {
+        return "Notification [source=" + source + ", destination=" + destination + ", text=" + text + ", clientid="
+                + clientid + "]";
+    }
+}
@@ -0,0 +1,152 @@
+package io.pivotal.rsocketcommon.data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * One shared String for each of a bounded set of short ASCII names, such as the sources and
+ * destinations of notifications, looked up either by a String or straight from the UTF-8 bytes of a buffer: decoding a
+ * name already in the dictionary allocates nothing.
+ * <p>
+ * The names are kept in an open-addressing table at most half full, read without locks and
+ * added to with one compare-and-set. Names are never removed: once the dictionary holds
+ * {@code capacity} names, new ones are decoded as usual but not added, so it is only meant for
+ * names of which there are few, not for ids that keep coming, such as client ids. Names longer than
+ * {@code maxLength} or not ASCII are never added.
+ */
+public final class StringDictionary {
+
+    /**
+     * The dictionary of the source and destination of notifications.
+     */
+    public static final StringDictionary ROUTING = new StringDictionary(8192, 64);
+
+    private final AtomicReferenceArray<Entry> table;
+    private final int mask;
+    private final int capacity;
+    private final int maxLength;
+    private final AtomicInteger size = new AtomicInteger();
+
+    public StringDictionary(int capacity, int maxLength) {
+        int slots = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1;
+        this.table = new AtomicReferenceArray<>(slots);
+        this.mask = slots - 1;
+        this.capacity = capacity;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * @return the String of the dictionary equal to the value, the value itself if there is none
+     * and it cannot be added
+     */
+    public String intern(String value) {
+        if (value == null || value.length() > maxLength) {
+            return value;
+        }
+        int hash = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                return value;
+            }
+            hash = 31 * hash + c;
+        }
+        int slot = spread(hash) & mask;
+        for (;;) {
+            Entry entry = table.get(slot);
+            if (entry == null) {
+                return add(slot, hash, value);
+            }
+            if (entry.hash == hash && entry.value.equals(value)) {
+                return entry.value;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Decode {@code length} bytes of UTF-8 at {@code index}, without moving the reader index.
+     *
+     * @return the String of the dictionary for those bytes, a new one if there is none
+     */
+    public String decode(ByteBuf in, int index, int length) {
+        if (length > maxLength) {
+            return in.toString(index, length, StandardCharsets.UTF_8);
+        }
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            byte b = in.getByte(index + i);
+            if (b < 0) {
+                return in.toString(index, length, StandardCharsets.UTF_8);
+            }
+            hash = 31 * hash + b;
+        }
+        int slot = spread(hash) & mask;
+        for (;;) {
+            Entry entry = table.get(slot);
+            if (entry == null) {
+                return add(slot, hash, in.toString(index, length, StandardCharsets.US_ASCII));
+            }
+            if (entry.hash == hash && matches(entry.value, in, index, length)) {
+                return entry.value;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Add a value at the first free slot from {@code slot}, unless another thread added it first.
+     */
+    private String add(int slot, int hash, String value) {
+        if (size.incrementAndGet() > capacity) {
+            size.decrementAndGet();
+            return value;
+        }
+        Entry added = new Entry(hash, value);
+        for (;;) {
+            if (table.compareAndSet(slot, null, added)) {
+                return value;
+            }
+            Entry entry = table.get(slot);
+            if (entry.hash == hash && entry.value.equals(value)) {
+                size.decrementAndGet();
+                return entry.value;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public int size() {
+        return Math.min(size.get(), capacity);
+    }
+
+    private static boolean matches(String value, ByteBuf in, int index, int length) {
+        if (value.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) != in.getByte(index + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static final class Entry {
+
+        private final int hash;
+        private final String value;
+
+        private Entry(int hash, String value) {
+            this.hash = hash;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package io.pivotal.rsocketcommon;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TickerTest {
+
+    private final Ticker ticker = new Ticker(Duration.ofMillis(10));
+
+    @AfterEach
+    public void stop() {
+        ticker.destroy();
+    }
+
+    @Test
+    public void testSubscribersOfOnePeriodShareTicks() {
+        Flux<Long> first = ticker.every(Duration.ofMillis(50));
+        Flux<Long> second = ticker.every(Duration.ofMillis(50));
+
+        StepVerifier.create(Flux.zip(first, second).take(3))
+                // both see the same ticks of the one shared source
+                .thenConsumeWhile(ticks -> ticks.getT1().equals(ticks.getT2()))
+                .verifyComplete();
+    }
+
+    @Test
+    public void testTickSourceRestartsAfterLastSubscriberLeft() {
+        StepVerifier.create(ticker.every(Duration.ofMillis(20)).take(2))
+                .expectNext(0L, 1L)
+                .verifyComplete();
+
+        StepVerifier.create(ticker.every(Duration.ofMillis(20)).take(1))
+                .expectNext(0L)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testSlowSubscriberMissesTicksWithoutDelayingOthers() {
+        Flux<Long> ticks = ticker.every(Duration.ofMillis(20));
+
+        StepVerifier.create(ticks, 0)
+                .then(() -> assertThat(ticks.take(5).collectList().block(Duration.ofSeconds(5))).hasSize(5))
+                .thenRequest(1)
+                .assertNext(tick -> assertThat(tick).isGreaterThanOrEqualTo(5))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+}
@@ -0,0 +1,88 @@
+package io.pivotal.rsocketcommon.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.pivotal.rsocketcommon.data.Notification;
+import io.pivotal.rsocketcommon.data.StringDictionary;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.NettyDataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class NotificationCodecTest {
+
+    private static final ResolvableType TYPE = ResolvableType.forClass(Notification.class);
+    private static final NettyDataBufferFactory FACTORY = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+
+    @Test
+    public void testRoundTripIncludingNullAndMultiByteFields() {
+        Notification notification = new Notification("Client", "Server", "héllo ☃ " + repeat('x', 300), null);
+
+        DataBuffer encoded = new NotificationEncoder().encodeValue(notification, FACTORY, TYPE, NotificationCodec.MIME_TYPE, Collections.emptyMap());
+        assertThat(encoded.readableByteCount()).isEqualTo(NotificationCodec.encodedLength(notification));
+
+        ByteBuf nativeBuffer = ((NettyDataBuffer) encoded).getNativeBuffer();
+        Notification decoded = new NotificationDecoder().decode(encoded, TYPE, NotificationCodec.MIME_TYPE, Collections.emptyMap());
+
+        assertThat(decoded.getSource()).isEqualTo("Client");
+        assertThat(decoded.getDestination()).isEqualTo("Server");
+        assertThat(decoded.getText()).isEqualTo(notification.getText());
+        assertThat(decoded.getClientid()).isNull();
+        assertThat(nativeBuffer.refCnt()).isZero();
+    }
+
+    @Test
+    public void testTruncatedInputIsRejectedAndReleased() {
+        Notification notification = new Notification("Client", "Server", "text", "id");
+        DataBuffer encoded = new NotificationEncoder().encodeValue(notification, FACTORY, TYPE, NotificationCodec.MIME_TYPE, Collections.emptyMap());
+        ByteBuf nativeBuffer = ((NettyDataBuffer) encoded).getNativeBuffer();
+        nativeBuffer.writerIndex(nativeBuffer.writerIndex() - 3);
+
+        assertThatThrownBy(() -> new NotificationDecoder().decode(encoded, TYPE, NotificationCodec.MIME_TYPE, Collections.emptyMap()))
+                .isInstanceOf(DecodingException.class);
+        assertThat(nativeBuffer.refCnt()).isZero();
+    }
+
+    @Test
+    public void testReplyIsWrittenWithoutBuildingItsTextAndRoutingNamesAreShared() {
+        Notification request = new Notification("Client", "Server", "héllo ☃", "id-1");
+        Notification reply = request.reply("In response to: ", "Client Id:");
+
+        DataBuffer encoded = new NotificationEncoder().encodeValue(reply, FACTORY, TYPE, NotificationCodec.MIME_TYPE, Collections.emptyMap());
+        assertThat(encoded.readableByteCount()).isEqualTo(NotificationCodec.encodedLength(reply));
+        Notification decoded = new NotificationDecoder().decode(encoded, TYPE, NotificationCodec.MIME_TYPE, Collections.emptyMap());
+
+        assertThat(decoded.getText()).isEqualTo("In response to: héllo ☃");
+        assertThat(decoded.getClientid()).isEqualTo("Client Id:id-1");
+        assertThat(decoded).isEqualTo(reply);
+        assertThat(decoded.getSource()).isSameAs(request.getDestination());
+        assertThat(decoded.getDestination()).isSameAs(request.getSource());
+    }
+
+    @Test
+    public void testClientIdsAreDecodedWithoutTheRoutingDictionary() {
+        Notification request = new Notification("Client", "Server", "hello", "id-1");
+        DataBuffer encoded = new NotificationEncoder().encodeValue(request, FACTORY, TYPE, NotificationCodec.MIME_TYPE, Collections.emptyMap());
+        int routingNames = StringDictionary.ROUTING.size();
+
+        Notification decoded = new NotificationDecoder().decode(encoded, TYPE, NotificationCodec.MIME_TYPE, Collections.emptyMap());
+
+        assertThat(decoded.getClientid()).isEqualTo("id-1");
+        assertThat(StringDictionary.ROUTING.size()).isEqualTo(routingNames);
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder builder = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,85 @@
+package io.pivotal.rsocketcommon.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PayloadCompressionTest {
+
+    private static final ByteBufAllocator ALLOCATOR = PooledByteBufAllocator.DEFAULT;
+
+    @Test
+    public void testTextAboveThresholdIsDeflatedAndInflatesBack() {
+        ByteBuf data = text(4096);
+
+        ByteBuf compressed = PayloadCompression.compress(ALLOCATOR, data, 512);
+        assertThat(compressed.getByte(0)).isEqualTo(PayloadCompression.DEFLATED);
+        assertThat(compressed.readableBytes()).isLessThan(data.readableBytes() / 2);
+
+        ByteBuf inflated = PayloadCompression.decompress(ALLOCATOR, compressed);
+        assertThat(inflated).isEqualTo(data);
+        release(data, compressed, inflated);
+    }
+
+    @Test
+    public void testDataBelowThresholdIsSentAsItIs() {
+        ByteBuf data = text(100);
+
+        ByteBuf compressed = PayloadCompression.compress(ALLOCATOR, data, 512);
+        assertThat(compressed.getByte(0)).isEqualTo(PayloadCompression.NONE);
+        assertThat(compressed.readableBytes()).isEqualTo(101);
+
+        ByteBuf inflated = PayloadCompression.decompress(ALLOCATOR, compressed);
+        assertThat(inflated).isEqualTo(data);
+        release(data, compressed, inflated);
+    }
+
+    @Test
+    public void testIncompressibleDataIsSentAsItIs() {
+        byte[] random = new byte[4096];
+        new Random(42).nextBytes(random);
+        // a direct buffer has no array to deflate from
+        ByteBuf data = ALLOCATOR.directBuffer(random.length).writeBytes(random);
+
+        ByteBuf compressed = PayloadCompression.compress(ALLOCATOR, data, 512);
+        assertThat(compressed.getByte(0)).isEqualTo(PayloadCompression.NONE);
+
+        ByteBuf inflated = PayloadCompression.decompress(ALLOCATOR, compressed);
+        assertThat(inflated).isEqualTo(data);
+        release(data, compressed, inflated);
+    }
+
+    @Test
+    public void testCorruptOrUnknownDataIsRejected() {
+        ByteBuf unknownFlag = Unpooled.wrappedBuffer(new byte[] {7, 1, 2, 3});
+        ByteBuf wrongLength = Unpooled.buffer().writeByte(PayloadCompression.DEFLATED).writeInt(-1);
+        ByteBuf corrupt = Unpooled.buffer().writeByte(PayloadCompression.DEFLATED).writeInt(100).writeBytes(new byte[] {1, 2, 3, 4});
+
+        assertThatThrownBy(() -> PayloadCompression.decompress(ALLOCATOR, Unpooled.EMPTY_BUFFER)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> PayloadCompression.decompress(ALLOCATOR, unknownFlag)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> PayloadCompression.decompress(ALLOCATOR, wrongLength)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> PayloadCompression.decompress(ALLOCATOR, corrupt)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static ByteBuf text(int length) {
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; text.length() < length; i++) {
+            text.append("notification ").append(i % 50).append(' ');
+        }
+        return Unpooled.copiedBuffer(text.substring(0, length), StandardCharsets.UTF_8);
+    }
+
+    private static void release(ByteBuf... buffers) {
+        for (ByteBuf buffer : buffers) {
+            buffer.release();
+        }
+    }
+}
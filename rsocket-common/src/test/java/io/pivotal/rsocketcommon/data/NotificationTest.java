@@ -0,0 +1,74 @@
+package io.pivotal.rsocketcommon.data;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NotificationTest {
+
+    @Test
+    public void testReplyComposesTextAsConcatenationWould() {
+        Notification request = new Notification("Client", "Server", "hello", "id-1");
+
+        Notification reply = request.reply("In response to: ", "Client Id:");
+
+        assertThat(reply.getSource()).isEqualTo("Server");
+        assertThat(reply.getDestination()).isEqualTo("Client");
+        assertThat(reply.textSequence()).isInstanceOf(ComposedText.class);
+        assertThat(reply.getText()).isEqualTo("In response to: hello");
+        assertThat(reply.getClientid()).isEqualTo("Client Id:id-1");
+        // built once
+        assertThat(reply.getText()).isSameAs(reply.getText());
+        assertThat(new Notification("Client", "Server", null, null).reply("In response to: ", "Client Id:").getText())
+                .isEqualTo("In response to: null");
+    }
+
+    @Test
+    public void testComposedTextBehavesAsItsString() {
+        ComposedText text = ComposedText.of("In response to: ", "hello");
+        String expected = "In response to: hello";
+
+        assertThat(text.length()).isEqualTo(expected.length());
+        for (int i = 0; i < expected.length(); i++) {
+            assertThat(text.charAt(i)).isEqualTo(expected.charAt(i));
+        }
+        assertThat(text.subSequence(0, 2).toString()).isEqualTo("In");
+        assertThat(text.subSequence(17, 21).toString()).isEqualTo("ello");
+        assertThat(text.subSequence(12, 18).toString()).isEqualTo("to: he");
+        assertThat(text.toString()).isEqualTo(expected);
+    }
+
+    @Test
+    public void testEqualityIsByValueWhateverTheTextIsMadeOf() {
+        Notification reply = new Notification("Client", "Server", "hello", "id-1").reply("In response to: ", "Client Id:");
+        Notification same = new Notification("Server", "Client", "In response to: hello", "Client Id:id-1");
+
+        assertThat(reply).isEqualTo(same);
+        assertThat(reply.hashCode()).isEqualTo(same.hashCode());
+        assertThat(reply).isNotEqualTo(new Notification("Server", "Client", "In response to: hello", "other"));
+    }
+
+    @Test
+    public void testJsonRoundTripInternsRoutingNames() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        Notification reply = new Notification("Client", "Server", "hello", "id-1").reply("In response to: ", "Client Id:");
+
+        String json = mapper.writeValueAsString(reply);
+        Notification read = mapper.readValue(json, Notification.class);
+
+        assertThat(mapper.readTree(json).size()).isEqualTo(4);
+        assertThat(read).isEqualTo(reply);
+        assertThat(read.getSource()).isSameAs(reply.getSource());
+    }
+
+    @Test
+    public void testClientIdsAreNotInterned() {
+        int routingNames = StringDictionary.ROUTING.size();
+        for (int i = 0; i < 100; i++) {
+            assertThat(new Notification("Client", "Server", "hello", "id-" + i).getClientid()).isEqualTo("id-" + i);
+        }
+
+        assertThat(StringDictionary.ROUTING.size()).isEqualTo(routingNames);
+    }
+}
@@ -0,0 +1,49 @@
+package io.pivotal.rsocketcommon.data;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StringDictionaryTest {
+
+    @Test
+    public void testSameNameIsOneString() {
+        StringDictionary dictionary = new StringDictionary(16, 32);
+        String first = dictionary.intern(new String("server-1"));
+
+        assertThat(dictionary.intern(new String("server-1"))).isSameAs(first);
+        ByteBuf bytes = Unpooled.copiedBuffer("xxserver-1", StandardCharsets.UTF_8);
+        assertThat(dictionary.decode(bytes, 2, 8)).isSameAs(first);
+        assertThat(bytes.readerIndex()).isZero();
+        assertThat(dictionary.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void testLongOrNonAsciiNamesAreDecodedButNotAdded() {
+        StringDictionary dictionary = new StringDictionary(16, 8);
+        ByteBuf nonAscii = Unpooled.copiedBuffer("sérveur", StandardCharsets.UTF_8);
+
+        assertThat(dictionary.intern("a-name-longer-than-eight")).isEqualTo("a-name-longer-than-eight");
+        assertThat(dictionary.decode(nonAscii, 0, nonAscii.readableBytes())).isEqualTo("sérveur");
+        assertThat(dictionary.intern("sérveur")).isEqualTo("sérveur");
+        assertThat(dictionary.size()).isZero();
+    }
+
+    @Test
+    public void testNamesBeyondCapacityAreNotAdded() {
+        StringDictionary dictionary = new StringDictionary(4, 32);
+        for (int i = 0; i < 10; i++) {
+            dictionary.intern("server-" + i);
+        }
+
+        assertThat(dictionary.size()).isEqualTo(4);
+        String added = dictionary.intern(new String("server-0"));
+        assertThat(dictionary.intern(new String("server-0"))).isSameAs(added);
+        String notAdded = new String("server-9");
+        assertThat(dictionary.intern(notAdded)).isSameAs(notAdded);
+    }
+}
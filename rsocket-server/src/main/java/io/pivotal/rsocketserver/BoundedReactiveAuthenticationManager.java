@@ -0,0 +1,79 @@
+package io.pivotal.rsocketserver;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.UserDetailsRepositoryReactiveAuthenticationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Verify credentials on a dedicated, fixed-size scheduler instead of the Netty event loop that
+ * received the SETUP frame, so a reconnect storm only delays other logins and never the traffic
+ * of established connections.
+ * <p>
+ * At most {@code threads + queueLimit} verifications are accepted at a time. Beyond that a login
+ * fails immediately with an {@link AuthenticationServiceException}, which the client sees as a
+ * rejected SETUP and can retry, rather than waiting in an ever-growing queue.
+ */
+public class BoundedReactiveAuthenticationManager implements ReactiveAuthenticationManager, DisposableBean {
+
+    private final ReactiveAuthenticationManager delegate;
+    private final Scheduler scheduler;
+    private final int limit;
+    private final AtomicInteger pending = new AtomicInteger();
+    Logger logger = LoggerFactory.getLogger(BoundedReactiveAuthenticationManager.class);
+
+    public BoundedReactiveAuthenticationManager(ReactiveUserDetailsService users, int threads, int queueLimit) {
+        this(Schedulers.newParallel("credential-verification", threads), users, threads + queueLimit);
+    }
+
+    private BoundedReactiveAuthenticationManager(Scheduler scheduler, ReactiveUserDetailsService users, int limit) {
+        this(verifyingOn(scheduler, users), scheduler, limit);
+    }
+
+    BoundedReactiveAuthenticationManager(ReactiveAuthenticationManager delegate, Scheduler scheduler, int limit) {
+        this.delegate = delegate;
+        this.scheduler = scheduler;
+        this.limit = limit;
+    }
+
+    private static ReactiveAuthenticationManager verifyingOn(Scheduler scheduler, ReactiveUserDetailsService users) {
+        UserDetailsRepositoryReactiveAuthenticationManager manager = new UserDetailsRepositoryReactiveAuthenticationManager(users);
+        // the password hash is checked on this scheduler
+        manager.setScheduler(scheduler);
+        return manager;
+    }
+
+    @Override
+    public Mono<Authentication> authenticate(Authentication authentication) {
+        return Mono.defer(() -> {
+            if (pending.incrementAndGet() > limit) {
+                pending.decrementAndGet();
+                logger.warn("Credential verification saturated, rejecting login of '{}'", authentication.getName());
+                return Mono.error(new AuthenticationServiceException("Credential verification saturated, retry later"));
+            }
+            return delegate.authenticate(authentication).doFinally(signal -> pending.decrementAndGet());
+        });
+    }
+
+    /**
+     * @return the number of verifications in progress or queued
+     */
+    public int pending() {
+        return pending.get();
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.dispose();
+    }
+}
@@ -0,0 +1,120 @@
+package io.pivotal.rsocketserver;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.pivotal.rsocketcommon.data.Notification;
+import io.pivotal.rsocketserver.data.ChannelStats;
+
+/**
+ * Incremental window aggregation of the notifications received on one channel: counts per source
+ * and destination, the count of the current tumbling window, the rate over a sliding window made
+ * of the last few tumbling windows, and the time of the last notification.
+ * <p>
+ * Adding a notification updates a few fields and two counters found by hash lookup, and
+ * allocates nothing once its source and destination are known. Closing a window costs in
+ * proportion to the keys seen during it, not to all keys, and yields a {@link ChannelStats}
+ * delta only if something changed: notifications arrived, or the sliding rate moved.
+ * <p>
+ * Beyond {@code maxKeys} distinct sources or destinations, further ones are counted under
+ * {@value #OTHER}.
+ */
+final class ChannelAggregator {
+
+    static final String OTHER = "*";
+
+    private final long windowMillis;
+    private final int maxKeys;
+    private final long[] slidingCounts;
+    private final Map<String, Counter> sources = new HashMap<>();
+    private final Map<String, Counter> destinations = new HashMap<>();
+    // the counters updated during the current window
+    private final List<Counter> changed = new ArrayList<>();
+    private int slot;
+    private int slidingWindows;
+    private long slidingSum;
+    private long windowStart;
+    private long windowCount;
+    private long total;
+    private long lastSeen;
+    private double rate;
+
+    /**
+     * @param windowMillis   the length of a tumbling window
+     * @param slidingWindows the number of tumbling windows the rate is computed over
+     * @param maxKeys        the number of distinct sources, and of destinations, counted separately
+     * @param now            the start of the first window, in epoch millis
+     */
+    ChannelAggregator(long windowMillis, int slidingWindows, int maxKeys, long now) {
+        this.windowMillis = windowMillis;
+        this.slidingCounts = new long[slidingWindows];
+        this.maxKeys = maxKeys;
+        this.windowStart = now;
+    }
+
+    synchronized void add(Notification notification, long now) {
+        windowCount++;
+        total++;
+        lastSeen = now;
+        count(sources, notification.getSource());
+        count(destinations, notification.getDestination());
+    }
+
+    private void count(Map<String, Counter> counters, String key) {
+        Counter counter = counters.get(key != null ? key : OTHER);
+        if (counter == null) {
+            counter = counters.size() < maxKeys ? new Counter(key != null ? key : OTHER) : counters.get(OTHER);
+            if (counter == null) {
+                counter = new Counter(OTHER);
+            }
+            counters.put(counter.key, counter);
+        }
+        if (!counter.changed) {
+            counter.changed = true;
+            changed.add(counter);
+        }
+        counter.total++;
+    }
+
+    /**
+     * Close the current window and start the next one.
+     *
+     * @return what changed during the window, or null if nothing did
+     */
+    synchronized ChannelStats roll(long now) {
+        slidingSum += windowCount - slidingCounts[slot];
+        slidingCounts[slot] = windowCount;
+        slot = (slot + 1) % slidingCounts.length;
+        slidingWindows = Math.min(slidingWindows + 1, slidingCounts.length);
+        double slidingRate = slidingSum * 1000.0 / (slidingWindows * windowMillis);
+
+        ChannelStats delta = null;
+        if (windowCount > 0 || slidingRate != rate) {
+            Map<String, Long> changedSources = new HashMap<>();
+            Map<String, Long> changedDestinations = new HashMap<>();
+            for (Counter counter : changed) {
+                (sources.get(counter.key) == counter ? changedSources : changedDestinations).put(counter.key, counter.total);
+                counter.changed = false;
+            }
+            changed.clear();
+            delta = new ChannelStats(windowStart, now, windowCount, total, slidingRate, lastSeen, changedSources, changedDestinations);
+        }
+        rate = slidingRate;
+        windowStart = now;
+        windowCount = 0;
+        return delta;
+    }
+
+    private static final class Counter {
+
+        private final String key;
+        private long total;
+        private boolean changed;
+
+        private Counter(String key) {
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package io.pivotal.rsocketserver;
+
+import org.springframework.messaging.rsocket.RSocketRequester;
+
+/**
+ * A single connected shell client, as seen by the {@link ClientRegistry}.
+ * Identity fields are fixed at SETUP; only the last-activity timestamp moves.
+ */
+public final class ClientConnection {
+
+    private final String clientId;
+    private final String username;
+    private final RSocketRequester requester;
+    private final long connectedAt;
+    private volatile long lastActivity;
+
+    ClientConnection(String clientId, String username, RSocketRequester requester) {
+        this.clientId = clientId;
+        this.username = username;
+        this.requester = requester;
+        this.connectedAt = System.currentTimeMillis();
+        this.lastActivity = this.connectedAt;
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public RSocketRequester getRequester() {
+        return requester;
+    }
+
+    /**
+     * @return connection time in epoch milliseconds
+     */
+    public long getConnectedAt() {
+        return connectedAt;
+    }
+
+    /**
+     * @return time of the last request seen on this connection, in epoch milliseconds
+     */
+    public long getLastActivity() {
+        return lastActivity;
+    }
+
+    /**
+     * Record activity on this connection. A plain volatile write: concurrent callers
+     * may race, but any of their timestamps is good enough.
+     */
+    void touch() {
+        this.lastActivity = System.currentTimeMillis();
+    }
+
+    @Override
+    public String toString() {
+        return "ClientConnection [clientId=" + clientId + ", username=" + username + ", connectedAt=" + connectedAt
+                + ", lastActivity=" + lastActivity + "]";
+    }
+}
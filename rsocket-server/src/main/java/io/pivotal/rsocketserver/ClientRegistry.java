@@ -0,0 +1,150 @@
+package io.pivotal.rsocketserver;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.stereotype.Component;
+
+/**
+ * Registry of connected shell clients, indexed by the client id sent in the SETUP payload,
+ * by the connection's {@link RSocketRequester} and by authenticated username.
+ * <p>
+ * All indexes are concurrent maps, so connect and disconnect callbacks running on different
+ * Netty event loops never block each other and add/remove/lookup stay O(1).
+ * A client reconnecting with the same id replaces its previous entry; the stale connection's
+ * later removal is a no-op because removal is conditional on the exact entry.
+ * <p>
+ * {@link Listener}s are told about every registration and every removal that took effect, on the
+ * thread making it.
+ */
+@Component
+public class ClientRegistry {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final ConcurrentHashMap<String, ClientConnection> byClientId = new ConcurrentHashMap<>(INITIAL_CAPACITY);
+    private final ConcurrentHashMap<RSocketRequester, ClientConnection> byRequester = new ConcurrentHashMap<>(INITIAL_CAPACITY);
+    private final ConcurrentHashMap<String, Set<ClientConnection>> byUsername = new ConcurrentHashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Register a newly connected client.
+     *
+     * @param clientId  the client id from the SETUP payload
+     * @param username  the authenticated username, may be null
+     * @param requester the requester for calling back into the client
+     * @return the registered connection
+     */
+    public ClientConnection register(String clientId, String username, RSocketRequester requester) {
+        ClientConnection connection = new ClientConnection(clientId, username, requester);
+        byRequester.put(requester, connection);
+        ClientConnection previous = byClientId.put(clientId, connection);
+        if (previous != null) {
+            byRequester.remove(previous.getRequester(), previous);
+            removeFromUser(previous);
+        }
+        if (username != null) {
+            byUsername.compute(username, (user, connections) -> {
+                Set<ClientConnection> set = connections != null ? connections : ConcurrentHashMap.newKeySet();
+                set.add(connection);
+                return set;
+            });
+        }
+        for (Listener listener : listeners) {
+            listener.registered(connection);
+        }
+        return connection;
+    }
+
+    /**
+     * Remove a connection, if it is still the registered one for its client id.
+     *
+     * @param connection the connection to remove
+     * @return true if the connection was removed
+     */
+    public boolean unregister(ClientConnection connection) {
+        byRequester.remove(connection.getRequester(), connection);
+        boolean removed = byClientId.remove(connection.getClientId(), connection);
+        removeFromUser(connection);
+        if (removed) {
+            for (Listener listener : listeners) {
+                listener.unregistered(connection);
+            }
+        }
+        return removed;
+    }
+
+    private void removeFromUser(ClientConnection connection) {
+        if (connection.getUsername() != null) {
+            byUsername.computeIfPresent(connection.getUsername(), (user, connections) -> {
+                connections.remove(connection);
+                return connections.isEmpty() ? null : connections;
+            });
+        }
+    }
+
+    /**
+     * @return the connection for the client id, or null if that client is not connected
+     */
+    public ClientConnection get(String clientId) {
+        return byClientId.get(clientId);
+    }
+
+    /**
+     * @return the connection owning the requester, or null if it is not registered
+     */
+    public ClientConnection get(RSocketRequester requester) {
+        return byRequester.get(requester);
+    }
+
+    /**
+     * @return a live, unmodifiable view of the connections of one user
+     */
+    public Set<ClientConnection> getByUsername(String username) {
+        Set<ClientConnection> connections = byUsername.get(username);
+        return connections != null ? Collections.unmodifiableSet(connections) : Collections.emptySet();
+    }
+
+    /**
+     * Record activity for the connection owning the requester, if any.
+     */
+    public void touch(RSocketRequester requester) {
+        ClientConnection connection = byRequester.get(requester);
+        if (connection != null) {
+            connection.touch();
+        }
+    }
+
+    /**
+     * Visit every connected client without copying the registry. The iteration is weakly
+     * consistent: it never throws on concurrent modification and may or may not see
+     * connections added or removed while it runs.
+     */
+    public void forEach(Consumer<ClientConnection> action) {
+        byClientId.values().forEach(action);
+    }
+
+    public int size() {
+        return byClientId.size();
+    }
+
+    /**
+     * Told about clients coming and going. Callbacks run on the connection's event loop and must
+     * not block.
+     */
+    public interface Listener {
+
+        void registered(ClientConnection connection);
+
+        void unregistered(ClientConnection connection);
+    }
+}
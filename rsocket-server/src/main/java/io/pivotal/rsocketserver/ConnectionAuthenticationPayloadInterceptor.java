@@ -0,0 +1,52 @@
+package io.pivotal.rsocketserver;
+
+import org.springframework.core.Ordered;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.config.annotation.rsocket.PayloadInterceptorOrder;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.rsocket.api.PayloadExchange;
+import org.springframework.security.rsocket.api.PayloadExchangeType;
+import org.springframework.security.rsocket.api.PayloadInterceptor;
+import org.springframework.security.rsocket.api.PayloadInterceptorChain;
+import org.springframework.security.rsocket.authentication.AuthenticationPayloadInterceptor;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Authenticate a connection once, at SETUP, and reuse that principal for every later request.
+ * <p>
+ * Spring Security already carries the security context established at SETUP into each request
+ * of the connection. The stock authentication interceptor nevertheless verifies credentials
+ * again whenever a request carries them, which costs a password hash per payload. This
+ * interceptor only delegates to it for SETUP, and for requests on connections that did not
+ * authenticate at SETUP; requests on an authenticated connection skip authentication entirely,
+ * and {@code @PreAuthorize} and {@code @AuthenticationPrincipal} see the SETUP principal.
+ */
+public class ConnectionAuthenticationPayloadInterceptor implements PayloadInterceptor, Ordered {
+
+    private final AuthenticationPayloadInterceptor delegate;
+
+    public ConnectionAuthenticationPayloadInterceptor(ReactiveAuthenticationManager authenticationManager) {
+        this.delegate = new AuthenticationPayloadInterceptor(authenticationManager);
+        this.delegate.setAuthenticationConverter(new SimpleAuthenticationPayloadExchangeConverter());
+    }
+
+    @Override
+    public Mono<Void> intercept(PayloadExchange exchange, PayloadInterceptorChain chain) {
+        if (exchange.getType() == PayloadExchangeType.SETUP) {
+            return delegate.intercept(exchange, chain);
+        }
+        return ReactiveSecurityContextHolder.getContext()
+                .map(SecurityContext::getAuthentication)
+                .filter(Authentication::isAuthenticated)
+                .hasElement()
+                .flatMap(authenticated -> authenticated ? chain.next(exchange) : delegate.intercept(exchange, chain));
+    }
+
+    @Override
+    public int getOrder() {
+        return PayloadInterceptorOrder.AUTHENTICATION.getOrder();
+    }
+}
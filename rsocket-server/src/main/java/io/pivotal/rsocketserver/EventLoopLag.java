@@ -0,0 +1,67 @@
+package io.pivotal.rsocketserver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.EventExecutor;
+
+/**
+ * Measures how late the event loops of a group run the tasks given to them: every {@link #probe()}
+ * submits a task to each loop that has none pending, and the lag of a loop is the time its last
+ * probe waited to run, or the time the pending one has been waiting so far if that is longer, so
+ * that a loop stuck on one task shows a growing lag instead of the last value it reported.
+ */
+final class EventLoopLag {
+
+    private final Supplier<EventLoopGroup> group;
+    private volatile List<EventExecutor> loops;
+    private volatile AtomicLongArray lags;
+    private volatile AtomicLongArray pendingSince;
+
+    /**
+     * @param group the event loops to probe, looked up on the first probe
+     */
+    EventLoopLag(Supplier<EventLoopGroup> group) {
+        this.group = group;
+    }
+
+    void probe() {
+        if (loops == null) {
+            List<EventExecutor> executors = new ArrayList<>();
+            group.get().forEach(executors::add);
+            lags = new AtomicLongArray(executors.size());
+            pendingSince = new AtomicLongArray(executors.size());
+            loops = executors;
+        }
+        for (int i = 0; i < loops.size(); i++) {
+            long submitted = System.nanoTime();
+            if (pendingSince.compareAndSet(i, 0, submitted)) {
+                int loop = i;
+                loops.get(i).execute(() -> {
+                    lags.set(loop, System.nanoTime() - submitted);
+                    pendingSince.set(loop, 0);
+                });
+            }
+        }
+    }
+
+    /**
+     * @return the largest lag of any loop, in nanoseconds, 0 before the first probe
+     */
+    long nanos() {
+        List<EventExecutor> probed = loops;
+        if (probed == null) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        long max = 0;
+        for (int i = 0; i < probed.size(); i++) {
+            long since = pendingSince.get(i);
+            max = Math.max(max, Math.max(lags.get(i), since != 0 ? now - since : 0));
+        }
+        return max;
+    }
+}
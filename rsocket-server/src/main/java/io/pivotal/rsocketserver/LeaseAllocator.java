@@ -0,0 +1,44 @@
+package io.pivotal.rsocketserver;
+
+/**
+ * Works out how many requests each connection may send during the next lease period, from the
+ * budget of {@code maxRequests} per period for the whole server and the load signals at the time.
+ * <p>
+ * Every signal has a limit, and leaves the whole budget while it is under half of its limit; from
+ * there the budget falls linearly to nothing at the limit. The most loaded signal decides, and
+ * the budget is shared evenly between the connections. While there is any headroom at all, every
+ * connection may send at least one request, so none is starved.
+ */
+final class LeaseAllocator {
+
+    private final int maxRequests;
+    private final int maxInFlight;
+    private final long maxLagNanos;
+
+    /**
+     * @param maxRequests the requests admitted per lease period, all connections together
+     * @param maxInFlight the request-response and fire-and-forget exchanges in progress at which nothing more is admitted
+     * @param maxLagNanos the event-loop lag at which nothing more is admitted
+     */
+    LeaseAllocator(int maxRequests, int maxInFlight, long maxLagNanos) {
+        this.maxRequests = maxRequests;
+        this.maxInFlight = maxInFlight;
+        this.maxLagNanos = maxLagNanos;
+    }
+
+    /**
+     * @return the requests one connection may send during the next period, 0 to give it no lease
+     */
+    int allowance(int connections, int inFlight, long lagNanos, int ingestDepth, int ingestCapacity) {
+        double headroom = Math.min(headroom(inFlight, maxInFlight),
+                Math.min(headroom(lagNanos, maxLagNanos), headroom(ingestDepth, ingestCapacity)));
+        if (headroom <= 0) {
+            return 0;
+        }
+        return (int) Math.max(1, Math.floor(maxRequests * headroom / Math.max(1, connections)));
+    }
+
+    static double headroom(double load, double limit) {
+        return Math.max(0, Math.min(1, 2 * (limit - load) / limit));
+    }
+}
@@ -0,0 +1,167 @@
+package io.pivotal.rsocketserver;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.pivotal.rsocketserver.data.BodyReceipt;
+import io.rsocket.exceptions.RejectedException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Keeps notification bodies too large to send as the text of one {@link io.pivotal.rsocketcommon.data.Notification}.
+ * <p>
+ * A body comes in as a stream of chunks, each its own payload, and is written to a file chunk by
+ * chunk as it arrives, so it is never held whole in memory and the uploader is only asked for
+ * more chunks as fast as the disk takes them. It goes out the same way: the file is read one
+ * chunk of {@code chunkSize} at a time, as the downloader asks for them. Since every chunk is a
+ * frame of its own, the other streams of the connection take turns with a large body instead of
+ * waiting behind it.
+ * <p>
+ * A body is refused once it exceeds {@code maxSize}, and deleted {@code ttl} after it was
+ * stored by a periodic expiry.
+ */
+@Component
+public class NotificationBodyStore implements DisposableBean {
+
+    private final File directory;
+    private final long maxBytes;
+    private final int chunkSize;
+    private final Duration ttl;
+    private final DataBufferFactory bufferFactory = new NettyDataBufferFactory(ByteBufAllocator.DEFAULT);
+    private final Disposable expiry;
+    Logger logger = LoggerFactory.getLogger(NotificationBodyStore.class);
+
+    public NotificationBodyStore(
+            @Value("${notification.body.directory:${java.io.tmpdir}/rsocket-server/bodies}") String directory,
+            @Value("${notification.body.max-size:256MB}") DataSize maxSize,
+            @Value("${notification.body.chunk-size:64KB}") DataSize chunkSize,
+            @Value("${notification.body.ttl:1h}") Duration ttl,
+            @Value("${notification.body.expiry-interval:1m}") Duration expiryInterval) {
+        this.directory = new File(directory);
+        this.maxBytes = maxSize.toBytes();
+        this.chunkSize = (int) chunkSize.toBytes();
+        this.ttl = ttl;
+        try {
+            Files.createDirectories(this.directory.toPath());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create the body directory " + directory, e);
+        }
+        this.expiry = Flux.interval(expiryInterval, expiryInterval, Schedulers.boundedElastic())
+                .subscribe(tick -> expire(), error -> logger.error("Body expiry stopped", error));
+    }
+
+    /**
+     * Store a body, chunk by chunk as they come. Every chunk is released once written.
+     *
+     * @return the receipt of the body once all of it is written; a {@link RejectedException} if
+     * it is larger than the maximum size, in which case what was written is deleted
+     */
+    public Mono<BodyReceipt> store(Flux<DataBuffer> chunks) {
+        return Mono.defer(() -> {
+            String id = UUID.randomUUID().toString();
+            Path file = new File(directory, id).toPath();
+            AtomicLong size = new AtomicLong();
+            Flux<DataBuffer> limited = chunks.handle((chunk, sink) -> {
+                if (size.addAndGet(chunk.readableByteCount()) > maxBytes) {
+                    DataBufferUtils.release(chunk);
+                    sink.error(new RejectedException("Body larger than " + maxBytes + " bytes"));
+                } else {
+                    sink.next(chunk);
+                }
+            });
+            return DataBufferUtils.write(limited, file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)
+                    .then(Mono.fromSupplier(() -> new BodyReceipt(id, size.get())))
+                    .doOnError(error -> delete(file))
+                    .doOnCancel(() -> delete(file));
+        });
+    }
+
+    /**
+     * Read a body, one chunk at a time as they are requested. Every chunk must be released.
+     *
+     * @return the chunks; an {@link IllegalArgumentException} if there is no body by that id
+     */
+    public Flux<DataBuffer> read(String id) {
+        return Flux.defer(() -> {
+            Path file = file(id);
+            if (!Files.isRegularFile(file)) {
+                return Flux.error(new IllegalArgumentException("No body " + id));
+            }
+            return DataBufferUtils.read(file, bufferFactory, chunkSize, StandardOpenOption.READ);
+        });
+    }
+
+    /**
+     * @return the size of a body, or -1 if there is no body by that id
+     */
+    public long size(String id) {
+        File file = file(id).toFile();
+        return file.isFile() ? file.length() : -1;
+    }
+
+    /**
+     * Delete the bodies stored longer ago than the TTL.
+     */
+    void expire() {
+        long expiry = System.currentTimeMillis() - ttl.toMillis();
+        File[] bodies = directory.listFiles(File::isFile);
+        if (bodies == null) {
+            return;
+        }
+        for (File body : bodies) {
+            // a body still being written was modified just now
+            if (body.lastModified() < expiry && body.delete()) {
+                logger.debug("Body {} expired", body.getName());
+            }
+        }
+    }
+
+    private Path file(String id) {
+        // ids are ours, anything else must not name a file outside the directory
+        boolean valid;
+        try {
+            valid = UUID.fromString(id).toString().equals(id);
+        } catch (IllegalArgumentException e) {
+            valid = false;
+        }
+        if (!valid) {
+            throw new IllegalArgumentException("Not a body id: " + id);
+        }
+        return new File(directory, id).toPath();
+    }
+
+    private void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Cannot delete the body {}: {}", file, e.toString());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        expiry.dispose();
+    }
+}
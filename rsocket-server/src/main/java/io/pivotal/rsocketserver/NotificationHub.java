@@ -0,0 +1,159 @@
+package io.pivotal.rsocketserver;
+
+import io.pivotal.rsocketcommon.data.Notification;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Encoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.messaging.rsocket.RSocketStrategies;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.DirectProcessor;
+import reactor.core.publisher.Flux;
+
+/**
+ * Topic based fan-out of notifications to streams.
+ * <p>
+ * A topic is a notification destination. All subscribers of a topic that negotiated the same
+ * data MIME type share one multicast publisher: a published notification is encoded once for
+ * that MIME type, and each subscriber receives a retained duplicate of the same buffer, so the
+ * cost of encoding and allocation does not grow with the number of recipients.
+ * <p>
+ * Delivery happens on the publishing thread, so there is no timer and no polling. Each
+ * subscriber drains through its own bounded buffer, and a slow subscriber loses its oldest
+ * notifications rather than holding up the others.
+ */
+@Component
+public class NotificationHub {
+
+    private static final ResolvableType NOTIFICATION_TYPE = ResolvableType.forClass(Notification.class);
+    private static final Map<String, Object> NO_HINTS = Collections.emptyMap();
+
+    private final ConcurrentHashMap<String, Topic> topics = new ConcurrentHashMap<>();
+    private final RSocketStrategies strategies;
+    private final int bufferSize;
+    Logger logger = LoggerFactory.getLogger(NotificationHub.class);
+
+    public NotificationHub(RSocketStrategies strategies, @Value("${notification.stream.buffer-size:256}") int bufferSize) {
+        this.strategies = strategies;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * @param topic    the topic (destination) to listen on
+     * @param mimeType the data MIME type of the subscriber's connection
+     * @return the encoded notifications published to the topic from now on; each buffer must be released by the consumer
+     */
+    public Flux<DataBuffer> subscribe(String topic, MimeType mimeType) {
+        return Flux.defer(() -> {
+            Multicast multicast = attach(topic, mimeType);
+            return multicast.processor
+                    .map(NotificationHub::retainedDuplicate)
+                    .onBackpressureBuffer(bufferSize,
+                            dropped -> logger.warn("Subscriber to {} too slow, dropped a notification", topic),
+                            BufferOverflowStrategy.DROP_OLDEST)
+                    .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+                    .doFinally(signal -> detach(topic, multicast));
+        });
+    }
+
+    private Multicast attach(String topic, MimeType mimeType) {
+        Multicast[] attached = new Multicast[1];
+        topics.compute(topic, (key, existing) -> {
+            Topic t = existing != null ? existing : new Topic();
+            attached[0] = t.multicasts.computeIfAbsent(mimeType, this::newMulticast);
+            attached[0].subscribers++;
+            return t;
+        });
+        return attached[0];
+    }
+
+    private void detach(String topic, Multicast multicast) {
+        topics.computeIfPresent(topic, (key, existing) -> {
+            if (--multicast.subscribers == 0) {
+                existing.multicasts.remove(multicast.mimeType, multicast);
+            }
+            return existing.multicasts.isEmpty() ? null : existing;
+        });
+    }
+
+    private Multicast newMulticast(MimeType mimeType) {
+        Encoder<Notification> encoder = strategies.encoder(NOTIFICATION_TYPE, mimeType);
+        return new Multicast(mimeType, encoder);
+    }
+
+    /**
+     * Publish a notification to the subscribers of its destination topic.
+     *
+     * @param notification the notification to deliver
+     * @return true if the topic had subscribers
+     */
+    public boolean publish(Notification notification) {
+        Topic topic = topics.get(notification.getDestination());
+        if (topic == null) {
+            return false;
+        }
+        DataBufferFactory bufferFactory = strategies.dataBufferFactory();
+        for (Multicast multicast : topic.multicasts.values()) {
+            DataBuffer encoded = multicast.encoder.encodeValue(notification, bufferFactory, NOTIFICATION_TYPE, multicast.mimeType, NO_HINTS);
+            try {
+                // DirectProcessor is not safe for concurrent onNext; the lock also guarantees every
+                // subscriber took its duplicate before the original reference is released
+                synchronized (multicast) {
+                    multicast.processor.onNext(encoded);
+                }
+            } finally {
+                DataBufferUtils.release(encoded);
+            }
+        }
+        return true;
+    }
+
+    private static DataBuffer retainedDuplicate(DataBuffer buffer) {
+        if (buffer instanceof NettyDataBuffer) {
+            NettyDataBuffer nettyBuffer = (NettyDataBuffer) buffer;
+            NettyDataBufferFactory factory = nettyBuffer.factory();
+            return factory.wrap(nettyBuffer.getNativeBuffer().retainedDuplicate());
+        }
+        // heap buffers are not reference counted, a shared view is enough
+        return buffer.factory().wrap(buffer.asByteBuffer());
+    }
+
+    /**
+     * @return the number of topics with at least one subscriber
+     */
+    public int topicCount() {
+        return topics.size();
+    }
+
+    private static final class Topic {
+
+        final Map<MimeType, Multicast> multicasts = new ConcurrentHashMap<>(2);
+    }
+
+    private static final class Multicast {
+
+        final MimeType mimeType;
+        final Encoder<Notification> encoder;
+        final DirectProcessor<DataBuffer> processor = DirectProcessor.create();
+        // guarded by the bin lock of the topics map
+        int subscribers;
+
+        Multicast(MimeType mimeType, Encoder<Notification> encoder) {
+            this.mimeType = mimeType;
+            this.encoder = encoder;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package io.pivotal.rsocketserver;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import io.pivotal.rsocketcommon.data.Notification;
+import io.pivotal.rsocketserver.cluster.ClusterNode;
+
+/**
+ * Routes a notification to where it is addressed: to the streams listening on its destination,
+ * to its destination client over the client's own connection through the {@link PushDispatcher}
+ * when that client is connected but not streaming, in cluster mode to the {@link ClusterNode}
+ * forwarding it to the node its destination client is connected to or, when it is addressed to a
+ * client that is not connected or a push to it fails, to the {@link StoreAndForwardQueue} until
+ * that client connects again.
+ */
+@Component
+public class NotificationRouter {
+
+    private final ClientRegistry clients;
+    private final NotificationHub hub;
+    private final StoreAndForwardQueue storeAndForward;
+    private final PushDispatcher pushDispatcher;
+    private final ClusterNode cluster;
+    Logger logger = LoggerFactory.getLogger(NotificationRouter.class);
+
+    public NotificationRouter(ClientRegistry clients, NotificationHub hub, StoreAndForwardQueue storeAndForward,
+            PushDispatcher pushDispatcher, ObjectProvider<ClusterNode> cluster) {
+        this.clients = clients;
+        this.hub = hub;
+        this.storeAndForward = storeAndForward;
+        this.pushDispatcher = pushDispatcher;
+        this.cluster = cluster.getIfAvailable();
+    }
+
+    public void deliver(Notification notification) {
+        deliver(notification, cluster);
+    }
+
+    public void deliverAll(List<Notification> notifications) {
+        for (int i = 0; i < notifications.size(); i++) {
+            deliver(notifications.get(i), cluster);
+        }
+    }
+
+    /**
+     * Deliver a notification without forwarding it to another node, as for one another node
+     * forwarded here.
+     */
+    public void deliverLocally(Notification notification) {
+        deliver(notification, null);
+    }
+
+    private void deliver(Notification notification, ClusterNode cluster) {
+        String destination = notification.getDestination();
+        if (hub.publish(notification) || destination == null || RSocketController.SERVER.equals(destination)) {
+            return;
+        }
+        if (clients.get(destination) != null) {
+            // connected but not streaming its own id: pushed instead, and kept if it cannot be
+            pushDispatcher.push(destination, notification, false)
+                    .subscribe(null, error -> {
+                        logger.debug("Push to client {} failed, storing the notification: {}", destination, error.toString());
+                        store(notification);
+                    });
+        } else if (cluster == null || !cluster.forward(notification)) {
+            store(notification);
+        }
+    }
+
+    private void store(Notification notification) {
+        storeAndForward.store(notification)
+                .subscribe(null, error -> logger.warn("Storing a notification for {} failed: {}",
+                        notification.getDestination(), error.toString()));
+    }
+}
@@ -0,0 +1,192 @@
+package io.pivotal.rsocketserver;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.pivotal.rsocketcommon.data.Notification;
+import io.pivotal.rsocketserver.ingest.RingQueue;
+import io.rsocket.exceptions.RejectedException;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+/**
+ * Pushes notifications to one connected client, by client id, over the client's own responder
+ * on the {@code client-notification} route.
+ * <p>
+ * The client is looked up in the {@link ClientRegistry} by id. A push is sent as fire-and-forget,
+ * complete once the frame is handed to the connection, or as request-response, complete once the
+ * client acknowledged it. Pushes to the same client are pipelined: up to
+ * {@code rsocket.push.window} are outstanding at once and up to {@code rsocket.push.queue-capacity}
+ * more wait their turn, beyond which a push is rejected at once rather than queued without bound
+ * behind a slow client.
+ * <p>
+ * Meters: {@code rsocket.push.sent} (tagged with the mode), {@code rsocket.push.rejected} and
+ * {@code rsocket.push.failed}.
+ */
+@Component
+public class PushDispatcher implements ClientRegistry.Listener {
+
+    static final String ROUTE = "client-notification";
+
+    private final ClientRegistry clients;
+    private final int window;
+    private final int queueCapacity;
+    private final ConcurrentHashMap<ClientConnection, Outbound> outbound = new ConcurrentHashMap<>();
+    private final Counter sentWithAck;
+    private final Counter sentWithoutAck;
+    private final Counter rejected;
+    private final Counter failed;
+    Logger logger = LoggerFactory.getLogger(PushDispatcher.class);
+
+    public PushDispatcher(ClientRegistry clients, MeterRegistry registry,
+            @Value("${rsocket.push.window:64}") int window,
+            @Value("${rsocket.push.queue-capacity:1024}") int queueCapacity) {
+        this.clients = clients;
+        this.window = window;
+        this.queueCapacity = queueCapacity;
+        this.sentWithAck = Counter.builder("rsocket.push.sent").tag("mode", "request-response")
+                .description("Notifications pushed to a client").register(registry);
+        this.sentWithoutAck = Counter.builder("rsocket.push.sent").tag("mode", "fire-and-forget")
+                .description("Notifications pushed to a client").register(registry);
+        this.rejected = Counter.builder("rsocket.push.rejected")
+                .description("Pushes rejected because the client was not connected or too far behind").register(registry);
+        this.failed = Counter.builder("rsocket.push.failed").register(registry);
+        clients.addListener(this);
+    }
+
+    /**
+     * Push a notification to a client.
+     *
+     * @param clientId the id of the client
+     * @param ack      whether to wait for the client to acknowledge it
+     * @return completes once the notification was sent or, with {@code ack}, acknowledged; fails
+     * with a {@link RejectedException} if the client is not connected or has too many pushes
+     * waiting
+     */
+    public Mono<Void> push(String clientId, Notification notification, boolean ack) {
+        return Mono.create(sink -> {
+            ClientConnection connection = clientId != null ? clients.get(clientId) : null;
+            if (connection == null) {
+                rejected.increment();
+                sink.error(new RejectedException("Client " + clientId + " is not connected"));
+                return;
+            }
+            Outbound pushes = outbound.computeIfAbsent(connection, Outbound::new);
+            if (clients.get(clientId) != connection && outbound.remove(connection, pushes)) {
+                // disconnected meanwhile, after being told so
+                pushes.close();
+            }
+            pushes.offer(new Push(notification, ack, sink));
+        });
+    }
+
+    @Override
+    public void registered(ClientConnection connection) {
+    }
+
+    @Override
+    public void unregistered(ClientConnection connection) {
+        Outbound removed = outbound.remove(connection);
+        if (removed != null) {
+            removed.close();
+        }
+    }
+
+    private static final class Push {
+
+        final Notification notification;
+        final boolean ack;
+        final MonoSink<Void> sink;
+
+        Push(Notification notification, boolean ack, MonoSink<Void> sink) {
+            this.notification = notification;
+            this.ack = ack;
+            this.sink = sink;
+        }
+    }
+
+    /**
+     * The pushes to one client, sent by whichever thread finds the window open: the one queueing
+     * a push or the one completing an outstanding push.
+     */
+    private final class Outbound {
+
+        private final ClientConnection connection;
+        private final RingQueue<Push> queue = new RingQueue<>(queueCapacity);
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean closed;
+
+        Outbound(ClientConnection connection) {
+            this.connection = connection;
+        }
+
+        void offer(Push push) {
+            if (closed || !queue.offer(push)) {
+                rejected.increment();
+                push.sink.error(new RejectedException("Client " + connection.getClientId()
+                        + (closed ? " disconnected" : " has too many pushes waiting")));
+                return;
+            }
+            drain();
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            for (;;) {
+                Push push;
+                while (outstanding.get() < window && (push = queue.poll()) != null) {
+                    outstanding.incrementAndGet();
+                    send(push);
+                }
+                if (closed) {
+                    while ((push = queue.poll()) != null) {
+                        push.sink.error(new RejectedException("Client " + connection.getClientId() + " disconnected"));
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+
+        private void send(Push push) {
+            RSocketRequester.RetrieveSpec request = connection.getRequester()
+                    .route(ROUTE)
+                    .data(push.notification);
+            (push.ack ? request.retrieveMono(Void.class) : request.send())
+                    .subscribe(null, error -> {
+                        failed.increment();
+                        logger.debug("Push to client {} failed: {}", connection.getClientId(), error.toString());
+                        push.sink.error(error);
+                        done();
+                    }, () -> {
+                        (push.ack ? sentWithAck : sentWithoutAck).increment();
+                        push.sink.success();
+                        done();
+                    });
+        }
+
+        private void done() {
+            outstanding.decrementAndGet();
+            drain();
+        }
+
+        void close() {
+            closed = true;
+            drain();
+        }
+    }
+}
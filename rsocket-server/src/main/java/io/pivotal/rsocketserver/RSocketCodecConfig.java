@@ -0,0 +1,32 @@
+package io.pivotal.rsocketserver;
+
+import org.springframework.boot.rsocket.messaging.RSocketStrategiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.pivotal.rsocketcommon.codec.NotificationCodec;
+import io.pivotal.rsocketcommon.codec.NotificationDecoder;
+import io.pivotal.rsocketcommon.codec.NotificationEncoder;
+
+/**
+ * Register the binary {@link io.pivotal.rsocketcommon.data.Notification} codec.
+ * A client selects it by using {@link NotificationCodec#MIME_TYPE} as the data MIME type in its
+ * SETUP frame; clients that ask for application/json keep using the default Jackson codecs.
+ * Payload types other than Notification on a binary connection fall back to JSON.
+ */
+@Configuration
+public class RSocketCodecConfig {
+
+    @Bean
+    RSocketStrategiesCustomizer notificationCodecCustomizer(ObjectMapper objectMapper) {
+        return strategies -> strategies
+                .encoder(new NotificationEncoder())
+                .decoder(new NotificationDecoder())
+                .encoder(new Jackson2JsonEncoder(objectMapper, NotificationCodec.MIME_TYPE))
+                .decoder(new Jackson2JsonDecoder(objectMapper, NotificationCodec.MIME_TYPE));
+    }
+}
@@ -0,0 +1,49 @@
+package io.pivotal.rsocketserver;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.rsocket.server.RSocketServerCustomizer;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import io.pivotal.rsocketcommon.codec.CompressingRSocket;
+import io.pivotal.rsocketcommon.codec.PayloadCompression;
+import io.rsocket.core.RSocketServer;
+import io.rsocket.exceptions.RejectedSetupException;
+import io.rsocket.plugins.SocketAcceptorInterceptor;
+import reactor.core.publisher.Mono;
+
+
+/**
+ * Compress payload data on the connections whose client asked for it in its SETUP frame, see
+ * {@link PayloadCompression}: both the requests the client sends us and the requests we send the
+ * client, such as 'client-status'. Data under rsocket.compression.threshold is sent as it is.
+ * A client asking for an algorithm we do not know, or for any while rsocket.compression.enabled
+ * is false, is refused at setup rather than sent data it cannot read.
+ */
+@Component
+public class RSocketCompressionConfig implements RSocketServerCustomizer {
+
+    private final boolean enabled;
+    private final int threshold;
+
+    public RSocketCompressionConfig(@Value("${rsocket.compression.enabled:true}") boolean enabled,
+            @Value("${rsocket.compression.threshold:512B}") DataSize threshold) {
+        this.enabled = enabled;
+        this.threshold = (int) threshold.toBytes();
+    }
+
+    @Override
+    public void customize(RSocketServer rSocketServer) {
+        rSocketServer.interceptors(registry -> registry.forSocketAcceptor((SocketAcceptorInterceptor) acceptor -> (setup, sendingSocket) -> {
+            String algorithm = PayloadCompression.requested(setup);
+            if (algorithm == null) {
+                return acceptor.accept(setup, sendingSocket);
+            }
+            if (!enabled || !PayloadCompression.DEFLATE.equals(algorithm)) {
+                return Mono.error(new RejectedSetupException("Compression '" + algorithm + "' not supported"));
+            }
+            return acceptor.accept(setup, new CompressingRSocket(sendingSocket, threshold, false))
+                    .map(responder -> new CompressingRSocket(responder, threshold, true));
+        }));
+    }
+}
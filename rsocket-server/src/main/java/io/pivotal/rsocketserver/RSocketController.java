@@ -4,13 +4,14 @@ package io.pivotal.rsocketserver;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.function.Function;
 
 import javax.annotation.PreDestroy;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.rsocket.RSocketRequester;
@@ -20,7 +21,14 @@ import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Controller;
 
-import io.pivotal.rsocketserver.data.Notification;
+import io.pivotal.rsocketcommon.Ticker;
+import io.pivotal.rsocketcommon.data.Notification;
+import io.pivotal.rsocketserver.data.BatchResult;
+import io.pivotal.rsocketserver.data.BodyReceipt;
+import io.pivotal.rsocketserver.data.ChannelStats;
+import io.pivotal.rsocketserver.ingest.IngestPipeline;
+import io.pivotal.rsocketserver.ratelimit.RateLimits;
+import io.rsocket.exceptions.RejectedException;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -33,37 +41,85 @@ public class RSocketController {
 	static final String RESPONSE = "Response";
 	static final String STREAM = "Stream";
 	static final String CHANNEL = "Channel";
+	// the text of the notification telling a destination about a body uploaded for it, followed by the body id
+	static final String BODY = "body:";
 	
 
-	private final List<RSocketRequester> CLIENTS = new ArrayList<>();
+	private final ClientRegistry clients;
+	private final NotificationHub hub;
+	private final StoreAndForwardQueue storeAndForward;
+	private final NotificationRouter router;
+	private final IngestPipeline ingest;
+	private final PushDispatcher pushDispatcher;
+	private final NotificationBodyStore bodies;
+	private final RateLimits rateLimits;
+	private final Ticker ticker;
+	private final Duration channelWindow;
+	private final int channelSlidingWindows;
+	private final int channelMaxKeys;
+	private final RSocketMetrics.Route requestResponseMetrics;
+	private final RSocketMetrics.Route requestResponseBatchMetrics;
+	private final RSocketMetrics.Route fireAndForgetMetrics;
+	private final RSocketMetrics.Route pushMetrics;
+	private final RSocketMetrics.Route streamMetrics;
+	private final RSocketMetrics.Route channelMetrics;
+	private final RSocketMetrics.Route uploadMetrics;
+	private final RSocketMetrics.Route downloadMetrics;
 	Logger logger = LoggerFactory.getLogger(RSocketController.class);
 
+	public RSocketController(ClientRegistry clients, NotificationHub hub, StoreAndForwardQueue storeAndForward,
+			NotificationRouter router, IngestPipeline ingest, PushDispatcher pushDispatcher, NotificationBodyStore bodies, RateLimits rateLimits, Ticker ticker, RSocketMetrics metrics, @Value("${rsocket.channel.window:1s}") Duration channelWindow,
+			@Value("${rsocket.channel.sliding-windows:10}") int channelSlidingWindows,
+			@Value("${rsocket.channel.max-keys:1024}") int channelMaxKeys) {
+		this.clients = clients;
+		this.hub = hub;
+		this.storeAndForward = storeAndForward;
+		this.router = router;
+		this.ingest = ingest;
+		this.pushDispatcher = pushDispatcher;
+		this.bodies = bodies;
+		this.rateLimits = rateLimits;
+		this.ticker = ticker;
+		this.channelWindow = channelWindow;
+		this.channelSlidingWindows = channelSlidingWindows;
+		this.channelMaxKeys = channelMaxKeys;
+		this.requestResponseMetrics = metrics.route("request-response");
+		this.requestResponseBatchMetrics = metrics.route("request-response-batch");
+		this.fireAndForgetMetrics = metrics.route("fire-and-forget");
+		this.pushMetrics = metrics.route("push");
+		this.streamMetrics = metrics.route("stream");
+		this.channelMetrics = metrics.route("channel");
+		this.uploadMetrics = metrics.route("upload");
+		this.downloadMetrics = metrics.route("download");
+	}
+
 	@PreDestroy
 	void shutdown() {
 
 		logger.info("Detaching all remaining clients...");
-		CLIENTS.stream().forEach(requester -> requester.rsocket().dispose());
+		clients.forEach(connection -> connection.getRequester().rsocket().dispose());
 		logger.info("Shutting down.");
 	}
 
 	@ConnectMapping("shell-client")
 	void connectShellClientAndAskForTelemetry(RSocketRequester requester,
-			@Payload String client) {
+			@Payload String client, @AuthenticationPrincipal UserDetails user) {
+
+		final ClientConnection connection = clients.register(client, user != null ? user.getUsername() : null, requester);
 
 		requester.rsocket()
 		.onClose()
 		.doFirst(() -> {
-			// Add all new clients to a client list
+			// Registration happened above, before any request can arrive on this connection
 			logger.info("Client: {} CONNECTED.", client);
-			CLIENTS.add(requester);
 		})
 		.doOnError(error -> {
 			// Warn when channels are closed by clients
 			logger.warn("Channel to client {} CLOSED", client);
 		})
 		.doFinally(consumer -> {
-			// Remove disconnected clients from the client list
-			CLIENTS.remove(requester);
+			// Remove disconnected clients from the registry
+			clients.unregister(connection);
 			logger.info("Client {} DISCONNECTED", client);
 		})
 		.subscribe();
@@ -73,7 +129,15 @@ public class RSocketController {
 		.data("OPEN")
 		.retrieveFlux(String.class)
 		.doOnNext(s -> logger.info("Client: {} Free Memory: {}.", client, s))
-		.subscribe();
+		.subscribe(null, error -> logger.warn("Status updates from client {} stopped: {}", client, error.toString()));
+
+		// Forward what was addressed to the client while it was away
+		storeAndForward.forward(client, batch -> requester.route("client-notifications").data(batch).retrieveMono(Void.class))
+		.subscribe(count -> {
+			if (count > 0) {
+				logger.info("Forwarded {} stored notifications to client {}", count, client);
+			}
+		}, error -> logger.warn("Forwarding stored notifications to client {} failed: {}", client, error.toString()));
 	}
 
 	/**
@@ -85,38 +149,102 @@ public class RSocketController {
 	 */
 	@PreAuthorize("hasRole('USER')")
 	@MessageMapping("request-response")
-	Mono<Notification> requestResponse(final Notification request, @AuthenticationPrincipal UserDetails user) {
+	Mono<Notification> requestResponse(final Notification request, @AuthenticationPrincipal UserDetails user, RSocketRequester requester) {
+		clients.touch(requester);
 		logger.info("Received request-response request: {}", request.toString());
 		logger.info("Request-response initiated by '{}' in the role '{}'", user.getUsername(), user.getAuthorities());
-		// create a single Message and return it
-		return Mono.just(new Notification(request.getDestination(), request.getSource(), "In response to: " + request.getText(), "Client Id:" + request.getClientid()));
+		// the work happens on subscription, so the route's timer measures it and counts its failures
+		return requestResponseMetrics.timed(rateLimits.admit(requester, user).then(Mono.fromSupplier(() -> respond(request))));
+	}
+
+	/**
+	 * This @MessageMapping is the batched form of "request --> response": one payload carries a list of requests and
+	 * one payload returns the list of their results, in the same order. Every request is handled as by request-response;
+	 * a request that fails gets a result with an error instead of a response, and the others are not affected.
+	 *
+	 * @param requests
+	 * @return
+	 */
+	@PreAuthorize("hasRole('USER')")
+	@MessageMapping("request-response-batch")
+	Mono<List<BatchResult>> requestResponseBatch(final List<Notification> requests, @AuthenticationPrincipal UserDetails user, RSocketRequester requester) {
+		clients.touch(requester);
+		logger.info("Request-response batch of {} initiated by '{}' in the role '{}'", requests.size(), user.getUsername(), user.getAuthorities());
+		return requestResponseBatchMetrics.timed(rateLimits.admit(requester, user).then(Mono.fromSupplier(() -> {
+			List<BatchResult> results = new ArrayList<>(requests.size());
+			for (Notification request : requests) {
+				try {
+					results.add(BatchResult.success(respond(request)));
+				} catch (RuntimeException e) {
+					logger.warn("Request {} of a batch failed: {}", results.size(), e.toString());
+					results.add(BatchResult.failure(e.getClass().getSimpleName() + ": " + e.getMessage()));
+				}
+			}
+			return results;
+		})));
+	}
+
+	private Notification respond(Notification request) {
+		if (request == null) {
+			throw new IllegalArgumentException("No request");
+		}
+		// deliver the request to any stream listening on its destination
+		router.deliver(request);
+		// the response refers to the request's text and client id instead of copying them
+		return request.reply("In response to: ", "Client Id:");
 	}
 
 	/**
 	 * This @MessageMapping is intended to be used "fire --> forget" style.
-	 * When a new CommandRequest is received, nothing is returned (void)
+	 * When a new CommandRequest is received, it is queued for delivery to the streams of its destination and nothing is
+	 * returned (void). A notification for a client that is not connected is stored and forwarded when the client connects.
+	 * Queueing never blocks the connection; when the ingest queue is full the rsocket.ingest.overflow policy applies.
 	 *
 	 * @param request
 	 * @return
 	 */
 	@PreAuthorize("hasRole('USER')")
 	@MessageMapping("fire-and-forget")
-	public Mono<Void> fireAndForget(final Notification notification, @AuthenticationPrincipal UserDetails user) {
-		logger.info("Received fire-and-forget request: {}", notification.toString());
-		logger.info("Fire-And-Forget initiated by '{}' in the role '{}'", user.getUsername(), user.getAuthorities());    	
-		return Mono.empty();
+	public Mono<Void> fireAndForget(final Notification notification, @AuthenticationPrincipal UserDetails user, RSocketRequester requester) {
+		clients.touch(requester);
+		logger.debug("Received fire-and-forget request: {}", notification);
+		logger.debug("Fire-And-Forget initiated by '{}' in the role '{}'", user.getUsername(), user.getAuthorities());
+		return fireAndForgetMetrics.timed(rateLimits.admit(requester, user).then(Mono.defer(() -> ingest.offer(notification)
+				? Mono.<Void>empty()
+				: Mono.error(new RejectedException("Ingest queue full")))));
+	}
+
+	/**
+	 * This @MessageMapping pushes a notification to the client its destination names, over that client's own connection,
+	 * whether or not the client streams anything. The push completes once the client acknowledged it, and fails if the
+	 * client is not connected to this server or has too many pushes waiting.
+	 *
+	 * @param notification
+	 * @return
+	 */
+	@PreAuthorize("hasRole('USER')")
+	@MessageMapping("push")
+	Mono<Void> push(final Notification notification, @AuthenticationPrincipal UserDetails user, RSocketRequester requester) {
+		clients.touch(requester);
+		logger.debug("Push to client {} initiated by '{}'", notification.getDestination(), user.getUsername());
+		return pushMetrics.timed(rateLimits.admit(requester, user)
+				.then(pushDispatcher.push(notification.getDestination(), notification, true)));
 	}
 
 	/**
 	 * This @MessageMapping is intended to be used "subscribe --> stream" style.
-	 * When a new request command is received, a new stream of events is started and returned to the client.
+	 * When a new request command is received, the client is subscribed to its destination: every notification
+	 * published to the request's source by fire-and-forget or request-response is streamed back as soon as it arrives.
+	 * A client streams what is addressed to it by naming its own client id as the source, as the shell client does.
+	 * Notifications are encoded once per topic and data MIME type and shared by all subscribers.
 	 *
 	 * @param request
 	 * @return
 	 */
 	@PreAuthorize("hasRole('USER')")
 	@MessageMapping("stream")
-	Flux<Notification> stream(final Notification notification, @AuthenticationPrincipal UserDetails user) {
+	Flux<DataBuffer> stream(final Notification notification, @AuthenticationPrincipal UserDetails user, RSocketRequester requester) {
+		clients.touch(requester);
 		logger.info("Received stream request: {}", notification.toString());
 		logger.info("Stream initiated by '{}' in the role '{}'", user.getUsername(), user.getAuthorities());
 
@@ -127,22 +255,23 @@ public class RSocketController {
 		//                .map(index -> new Message(SERVER, STREAM, index));
 
 
-		return Flux
-				.interval(Duration.ofSeconds(5))
-				.map(i -> new Notification(notification.getDestination(), notification.getSource(), "In response to: " + notification.getText(), "Client Id:" + notification.getClientid()));
-
+		return streamMetrics.timed(rateLimits.admit(requester, user)
+				.thenMany(rateLimits.limitStreams(requester, user, hub.subscribe(notification.getSource(), requester.dataMimeType()))));
 	}
 
 	/**
 	 * This @MessageMapping is intended to be used "stream <--> stream" style.
-	 * The incoming stream contains the interval settings (in seconds) for the outgoing stream of messages.
+	 * The incoming notifications are aggregated in tumbling windows of rsocket.channel.window: at the end of each window
+	 * in which something changed, a ChannelStats delta with the counts per source and destination, the rate over the
+	 * sliding window and the time of the last notification is returned. The channel completes with the incoming stream.
 	 *
-	 * @param settings
+	 * @param notifications
 	 * @return
 	 */
 	@PreAuthorize("hasRole('USER')")
 	@MessageMapping("channel")
-	Flux<Long> channel(final Flux<Notification> notifications, @AuthenticationPrincipal UserDetails user) {
+	Flux<ChannelStats> channel(final Flux<Notification> notifications, @AuthenticationPrincipal UserDetails user, RSocketRequester requester) {
+		clients.touch(requester);
 		//    	logger.info("Received channel request...");
 		//    	logger.info("Channel initiated by '{}' in the role '{}'", user.getUsername(), user.getAuthorities());
 		//
@@ -152,17 +281,63 @@ public class RSocketController {
 		//                .switchMap(setting -> Flux.interval(setting)
 		//                        .map(index -> new Message(SERVER, CHANNEL, index)));
 
-		final AtomicLong notificationCount = new AtomicLong(0);        
-		return notifications.doOnNext(notification -> {
-			logger.info("Received notification for channel: " + notification.toString());
-			notificationCount.incrementAndGet();
-		})
-				.switchMap(notification -> Flux.interval(Duration.ofSeconds(10)).map(new Object() {
-					private Function<Long, Long> numberOfMessages(AtomicLong notificationCount) {
-						long count = notificationCount.get();
-						logger.info("Return flux with count: " + count);
-						return i -> count;
-					}
-				}.numberOfMessages(notificationCount))).log();
+		return channelMetrics.timed(rateLimits.admit(requester, user).thenMany(rateLimits.limitStreams(requester, user, Flux.defer(() -> {
+			ChannelAggregator aggregator = new ChannelAggregator(channelWindow.toMillis(), channelSlidingWindows,
+					channelMaxKeys, System.currentTimeMillis());
+			Mono<Void> inbound = notifications
+					.doOnNext(notification -> aggregator.add(notification, System.currentTimeMillis()))
+					.then();
+			return ticker.every(channelWindow)
+					.<ChannelStats>handle((tick, sink) -> {
+						ChannelStats delta = aggregator.roll(System.currentTimeMillis());
+						if (delta != null) {
+							sink.next(delta);
+						}
+					})
+					// the channel ends with the inbound stream, after a last delta
+					.takeUntilOther(inbound)
+					.concatWith(Mono.fromCallable(() -> aggregator.roll(System.currentTimeMillis())));
+		}))));
+	}
+
+	/**
+	 * This @MessageMapping is intended to be used "stream <--> stream" style, for a notification body too large to be the text of
+	 * one notification. The body is sent as a stream of chunks and stored as they arrive, without being held whole in memory.
+	 * Once all of it is stored, its receipt is returned and a notification with the text 'body:' and the body id is delivered
+	 * to the destination, which can then download it.
+	 *
+	 * @param chunks
+	 * @param destination
+	 * @return
+	 */
+	@PreAuthorize("hasRole('USER')")
+	@MessageMapping("upload.{destination}")
+	Mono<BodyReceipt> upload(final Flux<DataBuffer> chunks, @DestinationVariable String destination, @AuthenticationPrincipal UserDetails user, RSocketRequester requester) {
+		clients.touch(requester);
+		logger.info("Upload of a body for {} initiated by '{}'", destination, user.getUsername());
+		return uploadMetrics.timed(rateLimits.admit(requester, user)
+				.then(bodies.store(chunks))
+				.doOnNext(receipt -> {
+					ClientConnection connection = clients.get(requester);
+					String source = connection != null ? connection.getClientId() : user.getUsername();
+					logger.info("Stored body {} of {} bytes for {}", receipt.getId(), receipt.getSize(), destination);
+					router.deliver(new Notification(source, destination, BODY + receipt.getId(), source));
+				}));
+	}
+
+	/**
+	 * This @MessageMapping is intended to be used "subscribe --> stream" style: the body of the id requested is streamed back
+	 * in chunks, each read as the client asks for it.
+	 *
+	 * @param id
+	 * @return
+	 */
+	@PreAuthorize("hasRole('USER')")
+	@MessageMapping("download")
+	Flux<DataBuffer> download(final String id, @AuthenticationPrincipal UserDetails user, RSocketRequester requester) {
+		clients.touch(requester);
+		logger.info("Download of body {} initiated by '{}'", id, user.getUsername());
+		return downloadMetrics.timed(rateLimits.admit(requester, user)
+				.thenMany(rateLimits.limitStreams(requester, user, bodies.read(id))));
 	}
 }
@@ -0,0 +1,92 @@
+package io.pivotal.rsocketserver;
+
+import org.reactivestreams.Publisher;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.rsocket.server.RSocketServerCustomizer;
+import org.springframework.stereotype.Component;
+
+import io.rsocket.Payload;
+import io.rsocket.RSocket;
+import io.rsocket.core.RSocketServer;
+import io.rsocket.plugins.RSocketInterceptor;
+import io.rsocket.util.RSocketProxy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+
+/**
+ * Count payload bytes in and out of every connection, for both the requests clients send to us
+ * and the requests we send to clients (such as 'client-status').
+ */
+@ConditionalOnProperty(name = "rsocket.metrics.enabled", matchIfMissing = true)
+@Component
+public class RSocketMetricsConfig implements RSocketServerCustomizer {
+
+    private final RSocketMetrics metrics;
+
+    public RSocketMetricsConfig(RSocketMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void customize(RSocketServer rSocketServer) {
+        rSocketServer.interceptors(registry -> registry
+                .forResponder((RSocketInterceptor) rsocket -> new ByteCountingRSocket(rsocket, metrics, true))
+                .forRequester((RSocketInterceptor) rsocket -> new ByteCountingRSocket(rsocket, metrics, false)));
+    }
+
+    static final class ByteCountingRSocket extends RSocketProxy {
+
+        private final RSocketMetrics metrics;
+        private final boolean responder;
+
+        ByteCountingRSocket(RSocket source, RSocketMetrics metrics, boolean responder) {
+            super(source);
+            this.metrics = metrics;
+            this.responder = responder;
+        }
+
+        @Override
+        public Mono<Void> fireAndForget(Payload payload) {
+            request(payload);
+            return super.fireAndForget(payload);
+        }
+
+        @Override
+        public Mono<Payload> requestResponse(Payload payload) {
+            request(payload);
+            return super.requestResponse(payload).doOnNext(this::response);
+        }
+
+        @Override
+        public Flux<Payload> requestStream(Payload payload) {
+            request(payload);
+            return super.requestStream(payload).doOnNext(this::response);
+        }
+
+        @Override
+        public Flux<Payload> requestChannel(Publisher<Payload> payloads) {
+            return super.requestChannel(Flux.from(payloads).doOnNext(this::request)).doOnNext(this::response);
+        }
+
+        private void request(Payload payload) {
+            if (responder) {
+                metrics.recordBytesIn(size(payload));
+            } else {
+                metrics.recordBytesOut(size(payload));
+            }
+        }
+
+        private void response(Payload payload) {
+            if (responder) {
+                metrics.recordBytesOut(size(payload));
+            } else {
+                metrics.recordBytesIn(size(payload));
+            }
+        }
+
+        private static int size(Payload payload) {
+            return payload.data().readableBytes() + (payload.hasMetadata() ? payload.metadata().readableBytes() : 0);
+        }
+    }
+}
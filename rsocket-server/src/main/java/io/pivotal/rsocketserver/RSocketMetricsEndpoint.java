@@ -0,0 +1,28 @@
+package io.pivotal.rsocketserver;
+
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Actuator endpoint 'rsocket': connected clients, payload bytes and a per-route summary of
+ * requests, errors, cancellations, in-flight exchanges and latency. The underlying meters are
+ * also available through the standard 'metrics' endpoint.
+ */
+@Component
+@Endpoint(id = "rsocket")
+public class RSocketMetricsEndpoint {
+
+    private final RSocketMetrics metrics;
+
+    public RSocketMetricsEndpoint(RSocketMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @ReadOperation
+    public Map<String, Object> rsocket() {
+        return metrics.snapshot();
+    }
+}
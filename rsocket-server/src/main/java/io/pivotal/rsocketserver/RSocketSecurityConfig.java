@@ -1,17 +1,20 @@
 package io.pivotal.rsocketserver;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.rsocket.RSocketStrategies;
 import org.springframework.messaging.rsocket.annotation.support.RSocketMessageHandler;
-import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.method.configuration.EnableReactiveMethodSecurity;
 import org.springframework.security.config.annotation.rsocket.EnableRSocketSecurity;
+import org.springframework.security.config.annotation.rsocket.PayloadInterceptorOrder;
 import org.springframework.security.config.annotation.rsocket.RSocketSecurity;
 import org.springframework.security.core.userdetails.MapReactiveUserDetailsService;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.messaging.handler.invocation.reactive.AuthenticationPrincipalArgumentResolver;
+import org.springframework.security.rsocket.authentication.AuthenticationPayloadInterceptor;
 import org.springframework.security.rsocket.core.PayloadSocketAcceptorInterceptor;
 
 @Configuration
@@ -47,11 +50,31 @@ public class RSocketSecurityConfig {
     }
 
     @Bean
-    PayloadSocketAcceptorInterceptor authorization(RSocketSecurity security) {
+    BoundedReactiveAuthenticationManager rsocketAuthenticationManager(ReactiveUserDetailsService users,
+                                                                      @Value("${rsocket.security.verification-threads:0}") int threads,
+                                                                      @Value("${rsocket.security.verification-queue:1000}") int queueLimit) {
+        // password hashing is CPU bound: by default one thread per core
+        return new BoundedReactiveAuthenticationManager(users,
+                threads > 0 ? threads : Runtime.getRuntime().availableProcessors(), queueLimit);
+    }
+
+    @Bean
+    PayloadSocketAcceptorInterceptor authorization(RSocketSecurity security, BoundedReactiveAuthenticationManager authenticationManager,
+                                                   @Value("${rsocket.security.authenticate-once:true}") boolean authenticateOnce) {
         security.authorizePayload(authorize ->
                 authorize
                         .anyExchange().authenticated() // all connections, exchanges.
-        ).simpleAuthentication(Customizer.withDefaults());
+        );
+        if (authenticateOnce) {
+            // verify credentials at SETUP only, later requests reuse the connection's principal
+            security.addPayloadInterceptor(new ConnectionAuthenticationPayloadInterceptor(authenticationManager));
+        } else {
+            // verify credentials on every payload that carries them
+            AuthenticationPayloadInterceptor authentication = new AuthenticationPayloadInterceptor(authenticationManager);
+            authentication.setAuthenticationConverter(new SimpleAuthenticationPayloadExchangeConverter());
+            authentication.setOrder(PayloadInterceptorOrder.AUTHENTICATION.getOrder());
+            security.addPayloadInterceptor(authentication);
+        }
         return security.build();
     }
 }
@@ -0,0 +1,256 @@
+package io.pivotal.rsocketserver;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.rsocket.server.RSocketServerCustomizer;
+import org.springframework.stereotype.Component;
+
+import io.netty.buffer.ByteBuf;
+import io.rsocket.Payload;
+import io.rsocket.RSocket;
+import io.rsocket.core.RSocketServer;
+import io.rsocket.plugins.RSocketInterceptor;
+import io.rsocket.util.RSocketProxy;
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Operators;
+import reactor.util.context.Context;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+/**
+ * Ask a client for at most rsocket.channel.window payloads of a request-channel ahead of the
+ * ones the handler has consumed, such as the chunks of an 'upload'.
+ * <p>
+ * Spring Security intercepts every payload of a channel with a flatMap, which asks for 256
+ * payloads up front whatever the handler asks for. The client then queues that many chunks on
+ * the connection, and every other request of the connection waits behind them. A payload counts
+ * as consumed once released; payloads inflated by the compression layer are released as soon
+ * as they are inflated, so compressed channels are not held to the window.
+ */
+@Component
+public class RSocketServerChannelWindowConfig implements RSocketServerCustomizer {
+
+    private final int window;
+
+    public RSocketServerChannelWindowConfig(@Value("${rsocket.channel.window:8}") int window) {
+        this.window = window;
+    }
+
+    @Override
+    public void customize(RSocketServer rSocketServer) {
+        if (window > 0) {
+            rSocketServer.interceptors(registry -> registry.forResponder((RSocketInterceptor) rsocket -> new WindowedRSocket(rsocket, window)));
+        }
+    }
+
+    static final class WindowedRSocket extends RSocketProxy {
+
+        private final int window;
+
+        WindowedRSocket(RSocket source, int window) {
+            super(source);
+            this.window = window;
+        }
+
+        @Override
+        public Flux<Payload> requestChannel(Publisher<Payload> payloads) {
+            return super.requestChannel(new PayloadWindow(payloads, window));
+        }
+    }
+
+    static final class PayloadWindow extends Flux<Payload> {
+
+        private final Publisher<Payload> source;
+        private final int window;
+
+        PayloadWindow(Publisher<Payload> source, int window) {
+            this.source = source;
+            this.window = window;
+        }
+
+        @Override
+        public void subscribe(CoreSubscriber<? super Payload> actual) {
+            source.subscribe(new WindowSubscriber(actual, window));
+        }
+    }
+
+    static final class WindowSubscriber implements CoreSubscriber<Payload>, Subscription {
+
+        private final CoreSubscriber<? super Payload> actual;
+        private final int window;
+        private Subscription upstream;
+        // guarded by this: asked for downstream and not delivered yet, asked for upstream and not
+        // received yet, and delivered but not released yet
+        private long demand;
+        private long pending;
+        private long held;
+
+        WindowSubscriber(CoreSubscriber<? super Payload> actual, int window) {
+            this.actual = actual;
+            this.window = window;
+        }
+
+        @Override
+        public Context currentContext() {
+            return actual.currentContext();
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            if (Operators.validate(upstream, subscription)) {
+                upstream = subscription;
+                actual.onSubscribe(this);
+            }
+        }
+
+        @Override
+        public void onNext(Payload payload) {
+            synchronized (this) {
+                demand--;
+                pending--;
+                held++;
+            }
+            actual.onNext(new WindowedPayload(payload, this));
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            actual.onError(error);
+        }
+
+        @Override
+        public void onComplete() {
+            actual.onComplete();
+        }
+
+        @Override
+        public void request(long n) {
+            if (Operators.validate(n)) {
+                synchronized (this) {
+                    demand = Operators.addCap(demand, n);
+                }
+                requestMore();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            upstream.cancel();
+        }
+
+        void released() {
+            synchronized (this) {
+                held--;
+            }
+            requestMore();
+        }
+
+        private void requestMore() {
+            long n;
+            synchronized (this) {
+                n = Math.min(window - held - pending, demand - pending);
+                if (n <= 0) {
+                    return;
+                }
+                pending += n;
+            }
+            upstream.request(n);
+        }
+    }
+
+    /**
+     * A payload that gives its place in the window back the first time it is released.
+     */
+    static final class WindowedPayload implements Payload {
+
+        private final Payload delegate;
+        private final WindowSubscriber window;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        WindowedPayload(Payload delegate, WindowSubscriber window) {
+            this.delegate = delegate;
+            this.window = window;
+        }
+
+        @Override
+        public boolean hasMetadata() {
+            return delegate.hasMetadata();
+        }
+
+        @Override
+        public ByteBuf sliceMetadata() {
+            return delegate.sliceMetadata();
+        }
+
+        @Override
+        public ByteBuf sliceData() {
+            return delegate.sliceData();
+        }
+
+        @Override
+        public ByteBuf data() {
+            return delegate.data();
+        }
+
+        @Override
+        public ByteBuf metadata() {
+            return delegate.metadata();
+        }
+
+        @Override
+        public int refCnt() {
+            return delegate.refCnt();
+        }
+
+        @Override
+        public Payload retain() {
+            delegate.retain();
+            return this;
+        }
+
+        @Override
+        public Payload retain(int increment) {
+            delegate.retain(increment);
+            return this;
+        }
+
+        @Override
+        public Payload touch() {
+            delegate.touch();
+            return this;
+        }
+
+        @Override
+        public Payload touch(Object hint) {
+            delegate.touch(hint);
+            return this;
+        }
+
+        @Override
+        public boolean release() {
+            try {
+                return delegate.release();
+            } finally {
+                consumed();
+            }
+        }
+
+        @Override
+        public boolean release(int decrement) {
+            try {
+                return delegate.release(decrement);
+            } finally {
+                consumed();
+            }
+        }
+
+        private void consumed() {
+            if (released.compareAndSet(false, true)) {
+                window.released();
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package io.pivotal.rsocketserver;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.rsocket.server.RSocketServerCustomizer;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import io.rsocket.core.RSocketServer;
+
+
+/**
+ * Split the frames larger than rsocket.fragmentation.mtu into fragments of at most that size,
+ * and reassemble the fragments received. The fragments of one frame are still sent back to back:
+ * to keep a large body from holding up the other streams of a connection, send it in chunks
+ * instead, as the 'upload' and 'download' routes do.
+ */
+@ConditionalOnProperty(name = "rsocket.fragmentation.mtu")
+@Component
+public class RSocketServerFragmentationConfig implements RSocketServerCustomizer {
+
+    private final int mtu;
+
+    public RSocketServerFragmentationConfig(@Value("${rsocket.fragmentation.mtu}") DataSize mtu) {
+        this.mtu = (int) mtu.toBytes();
+    }
+
+    @Override
+    public void customize(RSocketServer rSocketServer) {
+        rSocketServer.fragment(mtu);
+    }
+
+}
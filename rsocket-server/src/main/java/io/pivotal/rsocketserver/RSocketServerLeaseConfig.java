@@ -0,0 +1,174 @@
+package io.pivotal.rsocketserver;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.rsocket.server.RSocketServerCustomizer;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.client.reactive.ReactorResourceFactory;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.pivotal.rsocketcommon.Ticker;
+import io.pivotal.rsocketserver.ingest.IngestPipeline;
+import io.rsocket.Payload;
+import io.rsocket.RSocket;
+import io.rsocket.core.RSocketServer;
+import io.rsocket.lease.Lease;
+import io.rsocket.lease.LeaseStats;
+import io.rsocket.lease.Leases;
+import io.rsocket.plugins.RSocketInterceptor;
+import io.rsocket.util.RSocketProxy;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.tcp.TcpResources;
+
+
+/**
+ * Admission control with RSocket leases: a connection may only send the requests its current
+ * lease allows, and a client that honors leases does not even send the others.
+ * <p>
+ * Each connection is given a lease that lasts {@code rsocket.lease.time-to-live}, renewed every
+ * half of it, as the shell client does with its own leases, so a new lease always replaces one
+ * that has not expired yet. Every lease is for the connection's share of half of
+ * {@code rsocket.lease.max-requests}, which therefore stays the budget per time to live, cut down
+ * as the server gets loaded, see {@link LeaseAllocator}. The load signals are the request-response and fire-and-forget exchanges
+ * in progress (against {@code rsocket.lease.max-in-flight}), the lag of the event loops (against
+ * {@code rsocket.lease.max-lag}) and the depth of the {@link IngestPipeline} queue (against its
+ * capacity). A connection whose allowance is nothing gets no lease until there is headroom again.
+ * Streams and channels are long-lived and are not counted as in flight.
+ * <p>
+ * Clients must ask for leases in their setup: the shell client does so with
+ * {@code rsocket.client.lease=true}.
+ */
+@Profile("lease")
+@Component
+public class RSocketServerLeaseConfig implements RSocketServerCustomizer, DisposableBean {
+
+    private final IngestPipeline ingest;
+    private final Ticker ticker;
+    private final Duration timeToLive;
+    private final Duration renewal;
+    private final LeaseAllocator allocator;
+    private final EventLoopLag lag;
+    private final Disposable lagProbe;
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger allowance = new AtomicInteger();
+    private final Counter withheld;
+    private final Counter rejected;
+    Logger logger = LoggerFactory.getLogger(RSocketServerLeaseConfig.class);
+
+    public RSocketServerLeaseConfig(IngestPipeline ingest, Ticker ticker, MeterRegistry registry,
+            ObjectProvider<ReactorResourceFactory> resourceFactory,
+            @Value("${rsocket.lease.time-to-live:1s}") Duration timeToLive,
+            @Value("${rsocket.lease.max-requests:10000}") int maxRequests,
+            @Value("${rsocket.lease.max-in-flight:1024}") int maxInFlight,
+            @Value("${rsocket.lease.max-lag:50ms}") Duration maxLag,
+            @Value("${rsocket.lease.lag-probe-interval:100ms}") Duration lagProbeInterval) {
+        this.ingest = ingest;
+        this.ticker = ticker;
+        this.timeToLive = timeToLive;
+        this.renewal = timeToLive.dividedBy(2);
+        // two leases per time to live
+        this.allocator = new LeaseAllocator(Math.max(1, maxRequests / 2), maxInFlight, maxLag.toNanos());
+        // the loops the RSocket server runs on, those of the shared resources unless Boot provides its own
+        this.lag = new EventLoopLag(() -> {
+            ReactorResourceFactory resources = resourceFactory.getIfAvailable();
+            return (resources != null ? resources.getLoopResources() : TcpResources.get()).onServer(true);
+        });
+        this.lagProbe = ticker.every(lagProbeInterval).subscribe(tick -> lag.probe());
+        this.withheld = Counter.builder("rsocket.lease.withheld")
+                .description("Lease periods in which a connection was given no lease").register(registry);
+        this.rejected = Counter.builder("rsocket.lease.rejected")
+                .description("Requests rejected for want of a lease").register(registry);
+        Gauge.builder("rsocket.lease.allowance", allowance, AtomicInteger::get)
+                .description("Requests per connection allowed by the last lease").register(registry);
+        Gauge.builder("rsocket.lease.event-loop.lag", lag, probe -> probe.nanos() / 1e9)
+                .baseUnit("seconds").register(registry);
+    }
+
+    @Override
+    public void customize(RSocketServer rSocketServer) {
+        rSocketServer
+                .lease(() -> Leases.create()
+                        .sender(stats -> leases())
+                        .stats(new RejectionStats()))
+                .interceptors(registry -> registry.forResponder((RSocketInterceptor) rsocket -> new InFlightRSocket(rsocket, inFlight)));
+    }
+
+    private Flux<Lease> leases() {
+        int timeToLiveMillis = (int) timeToLive.toMillis();
+        return Flux.defer(() -> {
+            connections.incrementAndGet();
+            return ticker.every(renewal)
+                    .startWith(0L)
+                    .<Lease>handle((tick, sink) -> {
+                        int requests = allocator.allowance(connections.get(), inFlight.get(), lag.nanos(),
+                                ingest.depth(), ingest.capacity());
+                        allowance.set(requests);
+                        if (requests > 0) {
+                            sink.next(Lease.create(timeToLiveMillis, requests));
+                        } else {
+                            withheld.increment();
+                            logger.debug("No lease this period: in flight {}, event-loop lag {}ms, ingest depth {}",
+                                    inFlight.get(), lag.nanos() / 1_000_000, ingest.depth());
+                        }
+                    })
+                    .doFinally(signal -> connections.decrementAndGet());
+        });
+    }
+
+    @Override
+    public void destroy() {
+        lagProbe.dispose();
+    }
+
+    private final class RejectionStats implements LeaseStats {
+
+        @Override
+        public void onEvent(EventType eventType) {
+            if (eventType == EventType.REJECT) {
+                rejected.increment();
+            }
+        }
+    }
+
+    /**
+     * Counts the request-response and fire-and-forget exchanges in progress.
+     */
+    static final class InFlightRSocket extends RSocketProxy {
+
+        private final AtomicInteger inFlight;
+
+        InFlightRSocket(RSocket source, AtomicInteger inFlight) {
+            super(source);
+            this.inFlight = inFlight;
+        }
+
+        @Override
+        public Mono<Void> fireAndForget(Payload payload) {
+            return counted(super.fireAndForget(payload));
+        }
+
+        @Override
+        public Mono<Payload> requestResponse(Payload payload) {
+            return counted(super.requestResponse(payload));
+        }
+
+        private <T> Mono<T> counted(Mono<T> exchange) {
+            return Mono.defer(() -> {
+                inFlight.incrementAndGet();
+                return exchange.doFinally(signal -> inFlight.decrementAndGet());
+            });
+        }
+    }
+}
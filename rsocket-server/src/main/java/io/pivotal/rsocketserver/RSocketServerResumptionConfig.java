@@ -1,24 +1,63 @@
 package io.pivotal.rsocketserver;
 
+import java.io.File;
+import java.time.Duration;
+
+import io.netty.buffer.ByteBufUtil;
+import io.pivotal.rsocketserver.store.FileResumableFramesStore;
 import io.rsocket.core.RSocketServer;
 import io.rsocket.core.Resume;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.rsocket.server.RSocketServerCustomizer;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
 
 
 /**
  * Make the socket capable of resumption.
  * By default, the Resume Session will have a duration of 120s, a timeout of
  * 10s, and use the In Memory (volatile, non-persistent) session store.
+ * <p>
+ * With {@code rsocket.resume.store.directory} set, the frames of each session are kept in
+ * memory-mapped segment files under that directory instead, see {@link FileResumableFramesStore},
+ * and released as soon as a keep-alive acknowledges them. Frames not acknowledged are dropped,
+ * oldest first, beyond {@code rsocket.resume.store.max-size} per session or after
+ * {@code rsocket.resume.store.max-age}. Every session maps at least one segment of
+ * {@code rsocket.resume.store.segment-size}, 64KB by default. This takes the frames off the heap;
+ * it does not let sessions outlive the server process, so the directory is emptied at startup.
  */
 @Profile("resumption")
 @Component
 public class RSocketServerResumptionConfig implements RSocketServerCustomizer {
 
+    private final String storeDirectory;
+    private final DataSize segmentSize;
+    private final DataSize maxSize;
+    private final Duration maxAge;
+
+    public RSocketServerResumptionConfig(@Value("${rsocket.resume.store.directory:}") String storeDirectory,
+            @Value("${rsocket.resume.store.segment-size:64KB}") DataSize segmentSize,
+            @Value("${rsocket.resume.store.max-size:64MB}") DataSize maxSize,
+            @Value("${rsocket.resume.store.max-age:10m}") Duration maxAge) {
+        this.storeDirectory = storeDirectory;
+        this.segmentSize = segmentSize;
+        this.maxSize = maxSize;
+        this.maxAge = maxAge;
+    }
+
     @Override
     public void customize(RSocketServer rSocketServer) {
-        rSocketServer.resume(new Resume());
+        Resume resume = new Resume();
+        if (StringUtils.hasText(storeDirectory)) {
+            File directory = new File(storeDirectory);
+            FileResumableFramesStore.deleteSessions(directory);
+            resume.cleanupStoreOnKeepAlive()
+                    .storeFactory(token -> new FileResumableFramesStore(new File(directory, ByteBufUtil.hexDump(token)),
+                            (int) segmentSize.toBytes(), maxSize.toBytes(), maxAge));
+        }
+        rSocketServer.resume(resume);
     }
 
 }
@@ -0,0 +1,24 @@
+package io.pivotal.rsocketserver;
+
+import io.rsocket.core.RSocketServer;
+import io.rsocket.frame.decoder.PayloadDecoder;
+import org.springframework.boot.rsocket.server.RSocketServerCustomizer;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+
+/**
+ * Hand payloads to the handlers as retained slices of the received frame instead of copies.
+ * Every decoder then owns the buffer it is given and must release it; the Jackson decoders and
+ * {@link io.pivotal.rsocketcommon.codec.NotificationDecoder} both do, also when decoding fails.
+ */
+@Profile("zero-copy")
+@Component
+public class RSocketServerZeroCopyConfig implements RSocketServerCustomizer {
+
+    @Override
+    public void customize(RSocketServer rSocketServer) {
+        rSocketServer.payloadDecoder(PayloadDecoder.ZERO_COPY);
+    }
+
+}
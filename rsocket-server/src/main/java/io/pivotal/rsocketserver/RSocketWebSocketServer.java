@@ -0,0 +1,92 @@
+package io.pivotal.rsocketserver;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.rsocket.server.RSocketServerCustomizer;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.messaging.rsocket.annotation.support.RSocketMessageHandler;
+import org.springframework.stereotype.Component;
+
+import io.rsocket.core.RSocketServer;
+import io.rsocket.frame.FrameLengthCodec;
+import io.rsocket.transport.netty.server.WebsocketRouteTransport;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.WebsocketServerSpec;
+
+/**
+ * An RSocket server over WebSocket, next to the TCP server Spring Boot starts on
+ * {@code spring.rsocket.server.port}, for clients that can only get through HTTP proxies.
+ * <p>
+ * With {@code rsocket.websocket.enabled=true}, connections upgraded on
+ * {@code rsocket.websocket.path} of {@code rsocket.websocket.port} are handled exactly like the
+ * TCP ones: by the same {@link RSocketMessageHandler}, so the same {@link RSocketController}
+ * routes, and with the same {@link RSocketServerCustomizer}s, so the same security, metrics,
+ * leases and resumption.
+ */
+@ConditionalOnProperty(name = "rsocket.websocket.enabled")
+@Component
+public class RSocketWebSocketServer implements SmartLifecycle {
+
+    private final RSocketMessageHandler messageHandler;
+    private final ObjectProvider<RSocketServerCustomizer> customizers;
+    private final String address;
+    private final int port;
+    private final String path;
+    private volatile DisposableServer server;
+    Logger logger = LoggerFactory.getLogger(RSocketWebSocketServer.class);
+
+    public RSocketWebSocketServer(RSocketMessageHandler messageHandler, ObjectProvider<RSocketServerCustomizer> customizers,
+            @Value("${rsocket.websocket.address:0.0.0.0}") String address,
+            @Value("${rsocket.websocket.port:7080}") int port,
+            @Value("${rsocket.websocket.path:/rsocket}") String path) {
+        this.messageHandler = messageHandler;
+        this.customizers = customizers;
+        this.address = address;
+        this.port = port;
+        this.path = path;
+    }
+
+    @Override
+    public void start() {
+        RSocketServer rsocketServer = RSocketServer.create(messageHandler.responder());
+        customizers.orderedStream().forEach(customizer -> customizer.customize(rsocketServer));
+        this.server = HttpServer.create()
+                .host(address)
+                .port(port)
+                // an RSocket frame may be larger than the default WebSocket frame limit
+                .route(routes -> routes.ws(path, WebsocketRouteTransport.newHandler(rsocketServer.asConnectionAcceptor()),
+                        WebsocketServerSpec.builder().maxFramePayloadLength(FrameLengthCodec.FRAME_LENGTH_MASK).build()))
+                .bindNow();
+        logger.info("RSocket server started on WebSocket ws://{}:{}{}", address, getPort(), path);
+    }
+
+    @Override
+    public void stop() {
+        DisposableServer running = this.server;
+        if (running != null) {
+            running.disposeNow();
+            this.server = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return server != null;
+    }
+
+    /**
+     * @return the port listened on, once started
+     */
+    public int getPort() {
+        DisposableServer running = this.server;
+        return running != null ? running.port() : -1;
+    }
+
+    public String getPath() {
+        return path;
+    }
+}
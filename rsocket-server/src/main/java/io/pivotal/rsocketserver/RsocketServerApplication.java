@@ -2,8 +2,12 @@ package io.pivotal.rsocketserver;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Import;
+
+import io.pivotal.rsocketcommon.Ticker;
 
 @SpringBootApplication
+@Import(Ticker.class)
 public class RsocketServerApplication {
 
     public static void main(String[] args) {
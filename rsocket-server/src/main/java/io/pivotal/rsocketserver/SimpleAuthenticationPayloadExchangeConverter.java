@@ -0,0 +1,66 @@
+package io.pivotal.rsocketserver;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.rsocket.metadata.WellKnownMimeType;
+import io.rsocket.metadata.security.AuthMetadataFlyweight;
+import io.rsocket.metadata.security.WellKnownAuthType;
+import org.springframework.core.codec.ByteArrayDecoder;
+import org.springframework.messaging.rsocket.DefaultMetadataExtractor;
+import org.springframework.messaging.rsocket.MetadataExtractor;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.rsocket.api.PayloadExchange;
+import org.springframework.security.rsocket.authentication.PayloadExchangeAuthenticationConverter;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Read simple (username and password) authentication metadata from a payload.
+ * <p>
+ * Does what Spring Security's {@code AuthenticationPayloadExchangeConverter} does for simple
+ * authentication, except that the stock converter copies the metadata into a pooled buffer it
+ * never releases, leaking one buffer per authenticated payload. Here the metadata is only wrapped.
+ * Other authentication types are left unauthenticated: the server only accepts simple ones.
+ */
+public class SimpleAuthenticationPayloadExchangeConverter implements PayloadExchangeAuthenticationConverter {
+
+    private static final MimeType COMPOSITE_METADATA_MIME_TYPE =
+            MimeTypeUtils.parseMimeType(WellKnownMimeType.MESSAGE_RSOCKET_COMPOSITE_METADATA.getString());
+
+    private static final MimeType AUTHENTICATION_MIME_TYPE =
+            MimeTypeUtils.parseMimeType(WellKnownMimeType.MESSAGE_RSOCKET_AUTHENTICATION.getString());
+
+    private static final String AUTHENTICATION = "authentication";
+
+    private final MetadataExtractor metadataExtractor;
+
+    public SimpleAuthenticationPayloadExchangeConverter() {
+        DefaultMetadataExtractor extractor = new DefaultMetadataExtractor(new ByteArrayDecoder());
+        extractor.metadataToExtract(AUTHENTICATION_MIME_TYPE, byte[].class, AUTHENTICATION);
+        this.metadataExtractor = extractor;
+    }
+
+    @Override
+    public Mono<Authentication> convert(PayloadExchange exchange) {
+        return Mono.fromCallable(() -> metadataExtractor.extract(exchange.getPayload(), COMPOSITE_METADATA_MIME_TYPE))
+                .flatMap(metadata -> Mono.justOrEmpty(authentication((byte[]) metadata.get(AUTHENTICATION))));
+    }
+
+    private static Authentication authentication(byte[] metadata) {
+        if (metadata == null) {
+            return null;
+        }
+        ByteBuf authentication = Unpooled.wrappedBuffer(metadata);
+        if (!AuthMetadataFlyweight.isWellKnownAuthType(authentication)
+                || AuthMetadataFlyweight.decodeWellKnownAuthType(authentication) != WellKnownAuthType.SIMPLE) {
+            return null;
+        }
+        String username = AuthMetadataFlyweight.decodeUsername(authentication).toString(StandardCharsets.UTF_8);
+        String password = AuthMetadataFlyweight.decodePassword(authentication).toString(StandardCharsets.UTF_8);
+        return new UsernamePasswordAuthenticationToken(username, password);
+    }
+}
@@ -0,0 +1,317 @@
+package io.pivotal.rsocketserver;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.pivotal.rsocketcommon.codec.NotificationCodec;
+import io.pivotal.rsocketcommon.data.Notification;
+import io.pivotal.rsocketserver.store.SegmentLog;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Keeps the notifications addressed to clients that are not connected, and forwards them when
+ * the client connects again.
+ * <p>
+ * Every destination has a mailbox: a {@link SegmentLog} of notifications in the binary
+ * {@link NotificationCodec} format, each prefixed with the time it was stored. Forwarding reads
+ * the mailbox in order and hands it over in batches, and a batch is only removed from the
+ * mailbox once the client acknowledged it, so a connection lost halfway forwards the rest on the
+ * next connect.
+ * <p>
+ * Notifications older than the TTL are skipped when forwarding, and a periodic compaction
+ * deletes the segments holding only expired or forwarded notifications, and the mailboxes left
+ * empty. Disk usage is bounded per mailbox, by dropping its oldest notifications, and in total:
+ * once compaction finds the mailboxes over the total size, new notifications are refused until
+ * it finds them under it again.
+ * <p>
+ * Storing, compaction and the start of a forward run on the queue's own thread, in the order they
+ * were asked for, so a caller on an event loop does no disk I/O, and a mailbox is only ever
+ * opened, appended to and deleted by that one thread. Up to {@code queueCapacity} notifications
+ * wait to be written, beyond which they are refused.
+ */
+@Component
+public class StoreAndForwardQueue implements DisposableBean {
+
+    private final File directory;
+    private final int segmentSize;
+    private final long maxBytesPerClient;
+    private final long maxBytes;
+    private final Duration ttl;
+    private final int batchSize;
+    private final int queueCapacity;
+    private final ConcurrentHashMap<String, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private final Scheduler writer = Schedulers.newSingle("store-and-forward");
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Disposable compaction;
+    private volatile boolean full;
+    Logger logger = LoggerFactory.getLogger(StoreAndForwardQueue.class);
+
+    public StoreAndForwardQueue(
+            @Value("${notification.store-and-forward.directory:${java.io.tmpdir}/rsocket-server/store-and-forward}") String directory,
+            @Value("${notification.store-and-forward.segment-size:1MB}") DataSize segmentSize,
+            @Value("${notification.store-and-forward.max-size-per-client:16MB}") DataSize maxSizePerClient,
+            @Value("${notification.store-and-forward.max-size:1GB}") DataSize maxSize,
+            @Value("${notification.store-and-forward.ttl:24h}") Duration ttl,
+            @Value("${notification.store-and-forward.batch-size:64}") int batchSize,
+            @Value("${notification.store-and-forward.queue-capacity:65536}") int queueCapacity,
+            @Value("${notification.store-and-forward.compaction-interval:1m}") Duration compactionInterval) {
+        this.directory = new File(directory);
+        this.segmentSize = (int) segmentSize.toBytes();
+        this.maxBytesPerClient = maxSizePerClient.toBytes();
+        this.maxBytes = maxSize.toBytes();
+        this.ttl = ttl;
+        this.batchSize = batchSize;
+        this.queueCapacity = queueCapacity;
+
+        // mailboxes left by a previous process are opened now, so that they are compacted and counted
+        File[] existing = this.directory.listFiles(File::isDirectory);
+        if (existing != null) {
+            for (File mailbox : existing) {
+                String destination = new String(ByteBufUtil.decodeHexDump(mailbox.getName()), StandardCharsets.UTF_8);
+                mailboxes.put(destination, open(destination));
+            }
+        }
+        this.compaction = Flux.interval(compactionInterval, compactionInterval, writer)
+                .subscribe(tick -> compact(), error -> logger.error("Store-and-forward compaction stopped", error));
+    }
+
+    /**
+     * Keep a notification until its destination connects. It is written on the queue's own thread,
+     * after the notifications stored before it.
+     *
+     * @return true once written; false if refused because the total size is exceeded or too many
+     * notifications wait to be written
+     */
+    public Mono<Boolean> store(Notification notification) {
+        return Mono.defer(() -> {
+            if (queued.incrementAndGet() > queueCapacity) {
+                queued.decrementAndGet();
+                logger.warn("Store-and-forward has too many notifications waiting, dropped one for {}", notification.getDestination());
+                return Mono.just(false);
+            }
+            return Mono.fromCallable(() -> {
+                try {
+                    return write(notification);
+                } finally {
+                    queued.decrementAndGet();
+                }
+            }).subscribeOn(writer);
+        });
+    }
+
+    // on the writer thread only
+    private boolean write(Notification notification) {
+        String destination = notification.getDestination();
+        if (full) {
+            logger.warn("Store-and-forward is full, dropped a notification for {}", destination);
+            return false;
+        }
+        ByteBuf record = ByteBufAllocator.DEFAULT.buffer(Long.BYTES + NotificationCodec.encodedLength(notification));
+        try {
+            record.writeLong(System.currentTimeMillis());
+            NotificationCodec.write(record, notification);
+            Mailbox mailbox = mailboxes.get(destination);
+            if (mailbox == null) {
+                // only this thread adds mailboxes, and only compaction on this thread removes them
+                mailbox = open(destination);
+                mailboxes.put(destination, mailbox);
+            }
+            mailbox.log.append(record);
+            return true;
+        } finally {
+            record.release();
+        }
+    }
+
+    /**
+     * Forward the notifications kept for a destination, in the order they were stored. The
+     * notifications stored before the forward was subscribed to are part of it.
+     *
+     * @param destination the client id
+     * @param sender      sends one batch to the client, completing once the client acknowledged it
+     * @return the number of notifications forwarded; 0 if a forward to the same destination is already in progress
+     */
+    public Mono<Long> forward(String destination, Function<List<Notification>, Mono<Void>> sender) {
+        return Mono.defer(() -> {
+            Mailbox mailbox = mailboxes.get(destination);
+            // compaction does not delete a mailbox being forwarded, nor forward one it deleted
+            if (mailbox == null || !mailbox.startForwarding()) {
+                return Mono.just(0L);
+            }
+            AtomicLong forwarded = new AtomicLong();
+            return Flux.defer(() -> batches(mailbox))
+                    .concatMap(batch -> (batch.notifications.isEmpty() ? Mono.<Void>empty() : sender.apply(batch.notifications))
+                            .then(Mono.fromRunnable(() -> {
+                                mailbox.log.truncate(batch.end);
+                                forwarded.addAndGet(batch.notifications.size());
+                            })), 1)
+                    // notifications stored while the first pass was forwarded
+                    .repeat(mailbox::pending)
+                    .then(Mono.fromSupplier(forwarded::get))
+                    // released before the count is emitted, so a compaction right after can delete the mailbox
+                    .doOnSuccess(count -> mailbox.stopForwarding())
+                    .doOnError(error -> mailbox.stopForwarding())
+                    .doOnCancel(mailbox::stopForwarding);
+        }).subscribeOn(writer);
+    }
+
+    private Flux<Batch> batches(Mailbox mailbox) {
+        long expiry = System.currentTimeMillis() - ttl.toMillis();
+        return Flux.generate(() -> mailbox.log.cursor(mailbox.log.head()), (cursor, sink) -> {
+            List<Notification> notifications = new ArrayList<>(batchSize);
+            int read = 0;
+            ByteBuf record;
+            while (read < batchSize && (record = cursor.next(ByteBufAllocator.DEFAULT)) != null) {
+                read++;
+                try {
+                    if (record.readLong() >= expiry) {
+                        notifications.add(NotificationCodec.read(record));
+                    }
+                } finally {
+                    record.release();
+                }
+            }
+            if (read == 0) {
+                sink.complete();
+            } else {
+                sink.next(new Batch(notifications, cursor.position()));
+            }
+            return cursor;
+        });
+    }
+
+    /**
+     * Apply the TTL and size retention, delete the empty mailboxes and check the total size. Runs
+     * on the queue's own thread.
+     */
+    void compact() {
+        long total = 0;
+        for (Mailbox mailbox : mailboxes.values()) {
+            mailbox.log.compact();
+            if (mailbox.close()) {
+                mailboxes.remove(mailbox.destination, mailbox);
+                mailbox.log.close();
+                FileSystemUtils.deleteRecursively(mailbox.log.getDirectory());
+            } else {
+                total += mailbox.log.size();
+            }
+        }
+        if (full != total > maxBytes) {
+            logger.warn("Store-and-forward holds {} bytes, {} new notifications", total, total > maxBytes ? "refusing" : "accepting");
+        }
+        full = total > maxBytes;
+    }
+
+    /**
+     * @return the number of notifications kept for a destination
+     */
+    public long pending(String destination) {
+        Mailbox mailbox = mailboxes.get(destination);
+        if (mailbox == null) {
+            return 0;
+        }
+        long pending = 0;
+        SegmentLog.Cursor cursor = mailbox.log.cursor(mailbox.log.head());
+        ByteBuf record;
+        while ((record = cursor.next(ByteBufAllocator.DEFAULT)) != null) {
+            record.release();
+            pending++;
+        }
+        return pending;
+    }
+
+    private Mailbox open(String destination) {
+        File mailbox = new File(directory, ByteBufUtil.hexDump(destination.getBytes(StandardCharsets.UTF_8)));
+        try {
+            return new Mailbox(destination, new SegmentLog(mailbox, segmentSize, maxBytesPerClient, ttl));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open the mailbox of " + destination, e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        compaction.dispose();
+        // after the notifications still waiting to be written
+        Mono.fromRunnable(() -> mailboxes.values().forEach(mailbox -> mailbox.log.close()))
+                .subscribeOn(writer)
+                .block();
+        writer.dispose();
+    }
+
+    private static final class Mailbox {
+
+        private final String destination;
+        private final SegmentLog log;
+        // guarded by this
+        private boolean forwarding;
+        private boolean closed;
+
+        private Mailbox(String destination, SegmentLog log) {
+            this.destination = destination;
+            this.log = log;
+        }
+
+        private synchronized boolean startForwarding() {
+            if (forwarding || closed) {
+                return false;
+            }
+            forwarding = true;
+            return true;
+        }
+
+        private synchronized void stopForwarding() {
+            forwarding = false;
+        }
+
+        /**
+         * @return whether the mailbox was closed, which it is once it is empty and not being forwarded
+         */
+        private synchronized boolean close() {
+            if (!forwarding && !pending()) {
+                closed = true;
+            }
+            return closed;
+        }
+
+        private boolean pending() {
+            return log.head() < log.end();
+        }
+    }
+
+    private static final class Batch {
+
+        private final List<Notification> notifications;
+        // the position after the last notification of the batch
+        private final long end;
+
+        private Batch(List<Notification> notifications, long end) {
+            this.notifications = notifications;
+            this.end = end;
+        }
+    }
+}
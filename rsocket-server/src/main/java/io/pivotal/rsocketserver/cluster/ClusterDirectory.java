@@ -0,0 +1,60 @@
+package io.pivotal.rsocketserver.cluster;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Which node each client connected to another node of the cluster is connected to.
+ * <p>
+ * Every node keeps a full replica: a node tells its peers when one of its own clients joins or
+ * leaves, and sends a peer all of its clients when the link to it comes up. The replicas are
+ * eventually consistent; a client that moves from one node to another is briefly listed for both,
+ * which is harmless because a leave only removes the entry if it still names the node leaving.
+ * A node's own clients are looked up in the {@link io.pivotal.rsocketserver.ClientRegistry}, not
+ * here.
+ */
+public final class ClusterDirectory {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final ConcurrentHashMap<String, String> owners = new ConcurrentHashMap<>(INITIAL_CAPACITY);
+
+    /**
+     * @return the id of the node the client is connected to, or null if it is not connected to any peer
+     */
+    public String owner(String clientId) {
+        return clientId != null ? owners.get(clientId) : null;
+    }
+
+    public void join(String clientId, String nodeId) {
+        owners.put(clientId, nodeId);
+    }
+
+    /**
+     * Remove the client, if it is still listed for the node.
+     */
+    public void leave(String clientId, String nodeId) {
+        owners.remove(clientId, nodeId);
+    }
+
+    /**
+     * Remove every client of a node, when the link to it is lost.
+     *
+     * @return the number of clients removed
+     */
+    public int removeNode(String nodeId) {
+        int removed = 0;
+        for (Iterator<Map.Entry<String, String>> entries = owners.entrySet().iterator(); entries.hasNext(); ) {
+            if (nodeId.equals(entries.next().getValue())) {
+                entries.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    public int size() {
+        return owners.size();
+    }
+}
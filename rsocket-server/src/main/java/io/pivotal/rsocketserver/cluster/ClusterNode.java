@@ -0,0 +1,336 @@
+package io.pivotal.rsocketserver.cluster;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.pivotal.rsocketcommon.data.Notification;
+import io.pivotal.rsocketserver.ClientConnection;
+import io.pivotal.rsocketserver.ClientRegistry;
+import io.pivotal.rsocketserver.NotificationRouter;
+import io.rsocket.ConnectionSetupPayload;
+import io.rsocket.Payload;
+import io.rsocket.RSocket;
+import io.rsocket.SocketAcceptor;
+import io.rsocket.core.RSocketConnector;
+import io.rsocket.core.RSocketServer;
+import io.rsocket.transport.netty.client.TcpClientTransport;
+import io.rsocket.transport.netty.server.CloseableChannel;
+import io.rsocket.transport.netty.server.TcpServerTransport;
+import io.rsocket.util.ByteBufPayload;
+import io.rsocket.util.DefaultPayload;
+import io.rsocket.util.EmptyPayload;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuples;
+import reactor.util.retry.Retry;
+
+/**
+ * One node of a cluster of servers, so a notification reaches its destination client whichever
+ * node the client is connected to.
+ * <p>
+ * Nodes talk to each other over a separate, unauthenticated RSocket port,
+ * {@code rsocket.cluster.port}, and form a full mesh with one connection per pair of nodes: of
+ * the addresses in {@code rsocket.cluster.peers}, a node opens the connections to those that sort
+ * after its own {@code host:port} and accepts the others, so every node must list the peers the
+ * way they name themselves. Both directions of a connection are used, and a lost connection is
+ * opened again with a backoff from {@code rsocket.cluster.reconnect.min-backoff} to
+ * {@code rsocket.cluster.reconnect.max-backoff}.
+ * <p>
+ * Every node keeps a {@link ClusterDirectory} of the clients connected to the others. A
+ * notification for a client that is not connected here but is in the directory is forwarded to
+ * its node over the {@link PeerLink}, batched, and that node delivers it locally. A notification
+ * that cannot be forwarded is delivered locally instead, which stores it for the client.
+ * <p>
+ * Meters: {@code rsocket.cluster.peers}, {@code rsocket.cluster.directory.size},
+ * {@code rsocket.cluster.forwarded}, {@code rsocket.cluster.forward.failed},
+ * {@code rsocket.cluster.received} and the {@code rsocket.cluster.batch} size distribution.
+ */
+@Profile("cluster")
+// binds the cluster port at startup rather than when a notification is first routed
+@Lazy(false)
+@Component
+public class ClusterNode implements ClientRegistry.Listener, DisposableBean {
+
+    private static final int SNAPSHOT_CHUNK = 1024;
+
+    private final String nodeId;
+    private final String address;
+    private final ClientRegistry clients;
+    private final ObjectProvider<NotificationRouter> router;
+    private final int queueCapacity;
+    private final int batchSize;
+    private final int maxBatchesInFlight;
+    private final Duration minBackoff;
+    private final Duration maxBackoff;
+    private final ClusterDirectory directory = new ClusterDirectory();
+    private final ConcurrentHashMap<String, PeerLink> links = new ConcurrentHashMap<>();
+    private final RSocket responder = new Responder();
+    private final CloseableChannel server;
+    private final List<Disposable.Swap> dialers = new ArrayList<>();
+    private final Counter forwarded;
+    private final Counter failed;
+    private final Counter received;
+    private final DistributionSummary batches;
+    private volatile boolean disposed;
+    Logger logger = LoggerFactory.getLogger(ClusterNode.class);
+
+    public ClusterNode(ClientRegistry clients, ObjectProvider<NotificationRouter> router, MeterRegistry registry,
+            @Value("${rsocket.cluster.node-id:${random.uuid}}") String nodeId,
+            @Value("${rsocket.cluster.host:localhost}") String host,
+            @Value("${rsocket.cluster.port:7100}") int port,
+            @Value("${rsocket.cluster.peers:}") String peers,
+            @Value("${rsocket.cluster.queue-capacity:16384}") int queueCapacity,
+            @Value("${rsocket.cluster.batch-size:256}") int batchSize,
+            @Value("${rsocket.cluster.max-batches-in-flight:8}") int maxBatchesInFlight,
+            @Value("${rsocket.cluster.reconnect.min-backoff:100ms}") Duration minBackoff,
+            @Value("${rsocket.cluster.reconnect.max-backoff:5s}") Duration maxBackoff) {
+        this.nodeId = nodeId;
+        this.clients = clients;
+        this.router = router;
+        this.queueCapacity = queueCapacity;
+        this.batchSize = batchSize;
+        this.maxBatchesInFlight = maxBatchesInFlight;
+        this.minBackoff = minBackoff;
+        this.maxBackoff = maxBackoff;
+        this.forwarded = Counter.builder("rsocket.cluster.forwarded")
+                .description("Notifications forwarded to the node of their destination").register(registry);
+        this.failed = Counter.builder("rsocket.cluster.forward.failed")
+                .description("Notifications that could not be forwarded and were delivered locally").register(registry);
+        this.received = Counter.builder("rsocket.cluster.received")
+                .description("Notifications forwarded here by other nodes").register(registry);
+        this.batches = DistributionSummary.builder("rsocket.cluster.batch").description("Notifications per forwarded batch")
+                .register(registry);
+        Gauge.builder("rsocket.cluster.peers", links, Map::size).description("Nodes linked to").register(registry);
+        Gauge.builder("rsocket.cluster.directory.size", directory, ClusterDirectory::size)
+                .description("Clients connected to other nodes").register(registry);
+
+        this.server = RSocketServer.create(this::accept).bind(TcpServerTransport.create(host, port)).block();
+        this.address = host + ":" + server.address().getPort();
+        clients.addListener(this);
+        for (String peer : peers.split(",")) {
+            String trimmed = peer.trim();
+            if (!trimmed.isEmpty() && trimmed.compareTo(address) > 0) {
+                Disposable.Swap dialer = Disposables.swap();
+                dialers.add(dialer);
+                dial(trimmed, dialer);
+            }
+        }
+        logger.info("Cluster node {} listening on {}", nodeId, address);
+    }
+
+    /**
+     * Forward a notification to the node its destination client is connected to.
+     *
+     * @return false if the destination is not connected to another node, or cannot be reached now
+     */
+    public boolean forward(Notification notification) {
+        String owner = directory.owner(notification.getDestination());
+        if (owner == null) {
+            return false;
+        }
+        PeerLink link = links.get(owner);
+        return link != null && link.offer(notification);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * @return the host:port other nodes reach this one on
+     */
+    public String getAddress() {
+        return address;
+    }
+
+    /**
+     * @return the ids of the nodes linked to now
+     */
+    public Set<String> getPeers() {
+        return Collections.unmodifiableSet(links.keySet());
+    }
+
+    /**
+     * @return the id of the other node the client is connected to, or null
+     */
+    public String owner(String clientId) {
+        return directory.owner(clientId);
+    }
+
+    @Override
+    public void registered(ClientConnection connection) {
+        List<String> clientId = Collections.singletonList(connection.getClientId());
+        links.values().forEach(link -> link.sendDirectory(nodeId, ClusterProtocol.JOIN, clientId));
+    }
+
+    @Override
+    public void unregistered(ClientConnection connection) {
+        List<String> clientId = Collections.singletonList(connection.getClientId());
+        links.values().forEach(link -> link.sendDirectory(nodeId, ClusterProtocol.LEAVE, clientId));
+    }
+
+    private Mono<RSocket> accept(ConnectionSetupPayload setup, RSocket sendingSocket) {
+        linked(setup.getDataUtf8(), sendingSocket);
+        return Mono.just(responder);
+    }
+
+    private void dial(String peer, Disposable.Swap dialer) {
+        int colon = peer.lastIndexOf(':');
+        String host = peer.substring(0, colon);
+        int port = Integer.parseInt(peer.substring(colon + 1));
+        dialer.update(RSocketConnector.create()
+                // on the heap: a dial that never connects never releases its setup payload
+                .setupPayload(DefaultPayload.create(nodeId))
+                .acceptor(SocketAcceptor.with(responder))
+                .connect(TcpClientTransport.create(host, port))
+                .flatMap(rsocket -> rsocket
+                        .requestResponse(ClusterProtocol.payload(ByteBufAllocator.DEFAULT, ClusterProtocol.HELLO, Unpooled.EMPTY_BUFFER))
+                        .map(hello -> {
+                            try {
+                                return Tuples.of(hello.getDataUtf8(), rsocket);
+                            } finally {
+                                hello.release();
+                            }
+                        })
+                        .doOnError(error -> rsocket.dispose()))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, minBackoff).maxBackoff(maxBackoff)
+                        .doBeforeRetry(retry -> logger.debug("Connecting to node {} failed: {}", peer, retry.failure().toString())))
+                .subscribe(linked -> {
+                    RSocket rsocket = linked.getT2();
+                    if (disposed) {
+                        rsocket.dispose();
+                        return;
+                    }
+                    linked(linked.getT1(), rsocket);
+                    rsocket.onClose()
+                            .doFinally(signal -> {
+                                if (!disposed) {
+                                    dial(peer, dialer);
+                                }
+                            })
+                            .subscribe(null, error -> { });
+                }));
+    }
+
+    private void linked(String peerId, RSocket rsocket) {
+        if (nodeId.equals(peerId)) {
+            logger.warn("Node {} is listed as its own peer", nodeId);
+            rsocket.dispose();
+            return;
+        }
+        PeerLink link = new PeerLink(peerId, rsocket, queueCapacity, batchSize, maxBatchesInFlight, this::deliverLocally,
+                forwarded, failed, batches);
+        PeerLink previous = links.put(peerId, link);
+        if (previous != null) {
+            previous.close();
+        }
+        rsocket.onClose()
+                .doFinally(signal -> unlinked(link))
+                .subscribe(null, error -> { });
+        logger.info("Node {} linked to node {}", nodeId, peerId);
+
+        // tell the peer about every client connected here; the link holds back the joins and
+        // leaves seen meanwhile until the snapshot is sent, so none is overtaken by a stale chunk
+        List<String> clientIds = new ArrayList<>(SNAPSHOT_CHUNK);
+        clients.forEach(connection -> {
+            clientIds.add(connection.getClientId());
+            if (clientIds.size() == SNAPSHOT_CHUNK) {
+                link.sendSnapshot(nodeId, clientIds);
+                clientIds.clear();
+            }
+        });
+        if (!clientIds.isEmpty()) {
+            link.sendSnapshot(nodeId, clientIds);
+        }
+        link.snapshotSent();
+    }
+
+    private void unlinked(PeerLink link) {
+        // a link replaced by a newer one to the same node leaves that node's clients in place
+        if (links.remove(link.nodeId(), link)) {
+            int removed = directory.removeNode(link.nodeId());
+            logger.warn("Node {} lost its link to node {}, {} clients of that node are now unknown", nodeId, link.nodeId(), removed);
+        }
+        link.close();
+    }
+
+    private void deliverLocally(List<Notification> notifications) {
+        NotificationRouter local = router.getObject();
+        for (int i = 0; i < notifications.size(); i++) {
+            local.deliverLocally(notifications.get(i));
+        }
+    }
+
+    @Override
+    public void destroy() {
+        disposed = true;
+        dialers.forEach(Disposable::dispose);
+        server.dispose();
+        links.values().forEach(PeerLink::close);
+    }
+
+    /**
+     * Answers the peers, over links either side opened.
+     */
+    private final class Responder implements RSocket {
+
+        @Override
+        public Mono<Void> fireAndForget(Payload payload) {
+            try {
+                String route = ClusterProtocol.route(payload);
+                if (ClusterProtocol.DIRECTORY.equals(route)) {
+                    ClusterProtocol.readDirectory(payload.data(), directory);
+                } else {
+                    logger.warn("No cluster route '{}' for fire-and-forget", route);
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Malformed directory update: {}", e.toString());
+            } finally {
+                payload.release();
+            }
+            return Mono.empty();
+        }
+
+        @Override
+        public Mono<Payload> requestResponse(Payload payload) {
+            try {
+                String route = ClusterProtocol.route(payload);
+                if (ClusterProtocol.FORWARD.equals(route)) {
+                    List<Notification> batch = ClusterProtocol.readNotifications(payload.data());
+                    received.increment(batch.size());
+                    deliverLocally(batch);
+                    return Mono.just(EmptyPayload.INSTANCE);
+                }
+                if (ClusterProtocol.HELLO.equals(route)) {
+                    return Mono.just(ByteBufPayload.create(nodeId));
+                }
+                return Mono.error(new IllegalArgumentException("No cluster route '" + route + "'"));
+            } catch (RuntimeException e) {
+                return Mono.error(e);
+            } finally {
+                payload.release();
+            }
+        }
+    }
+}
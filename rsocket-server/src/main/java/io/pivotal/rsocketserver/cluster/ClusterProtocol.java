@@ -0,0 +1,127 @@
+package io.pivotal.rsocketserver.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.pivotal.rsocketcommon.codec.NotificationCodec;
+import io.pivotal.rsocketcommon.data.Notification;
+import io.rsocket.Payload;
+import io.rsocket.util.ByteBufPayload;
+
+/**
+ * The frames exchanged over a link between two nodes. The route is the UTF-8 metadata of the
+ * payload:
+ * <ul>
+ * <li>{@value #HELLO}, request-response: answered with the node id, so the node that opened the
+ * link learns whom it reached</li>
+ * <li>{@value #DIRECTORY}, fire-and-forget: the sending node's id, then entries of one op byte,
+ * {@link #JOIN} or {@link #LEAVE}, and a client id</li>
+ * <li>{@value #FORWARD}, request-response: a batch of notifications, back to back in the
+ * {@link NotificationCodec} format, answered once the receiving node delivered them</li>
+ * </ul>
+ * Strings are an unsigned short UTF-8 length followed by the bytes.
+ */
+final class ClusterProtocol {
+
+    static final String HELLO = "cluster-hello";
+    static final String DIRECTORY = "cluster-directory";
+    static final String FORWARD = "cluster-forward";
+
+    static final byte JOIN = 1;
+    static final byte LEAVE = 2;
+
+    private ClusterProtocol() {
+    }
+
+    static Payload payload(ByteBufAllocator allocator, String route, ByteBuf data) {
+        return ByteBufPayload.create(data, ByteBufUtil.writeUtf8(allocator, route));
+    }
+
+    static String route(Payload payload) {
+        return payload.hasMetadata() ? payload.getMetadataUtf8() : "";
+    }
+
+    static ByteBuf directory(ByteBufAllocator allocator, String nodeId, byte op, Collection<String> clientIds) {
+        int length = stringLength(nodeId);
+        for (String clientId : clientIds) {
+            length += 1 + stringLength(clientId);
+        }
+        ByteBuf out = allocator.buffer(length);
+        writeString(out, nodeId);
+        for (String clientId : clientIds) {
+            out.writeByte(op);
+            writeString(out, clientId);
+        }
+        return out;
+    }
+
+    /**
+     * Apply the entries of a directory frame.
+     *
+     * @return the id of the node that sent it
+     */
+    static String readDirectory(ByteBuf in, ClusterDirectory directory) {
+        String nodeId = readString(in);
+        while (in.isReadable()) {
+            byte op = in.readByte();
+            String clientId = readString(in);
+            if (op == JOIN) {
+                directory.join(clientId, nodeId);
+            } else if (op == LEAVE) {
+                directory.leave(clientId, nodeId);
+            } else {
+                throw new IllegalArgumentException("Unknown directory op " + op);
+            }
+        }
+        return nodeId;
+    }
+
+    static ByteBuf notifications(ByteBufAllocator allocator, List<Notification> batch) {
+        int length = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            length += NotificationCodec.encodedLength(batch.get(i));
+        }
+        ByteBuf out = allocator.buffer(length);
+        for (int i = 0; i < batch.size(); i++) {
+            NotificationCodec.write(out, batch.get(i));
+        }
+        return out;
+    }
+
+    static List<Notification> readNotifications(ByteBuf in) {
+        List<Notification> batch = new ArrayList<>();
+        while (in.isReadable()) {
+            batch.add(NotificationCodec.read(in));
+        }
+        return batch;
+    }
+
+    private static int stringLength(String value) {
+        return 2 + ByteBufUtil.utf8Bytes(value);
+    }
+
+    private static void writeString(ByteBuf out, String value) {
+        int length = ByteBufUtil.utf8Bytes(value);
+        if (length > 0xFFFF) {
+            throw new IllegalArgumentException("String of " + length + " bytes is too long for a cluster frame");
+        }
+        out.writeShort(length);
+        ByteBufUtil.reserveAndWriteUtf8(out, value, length);
+    }
+
+    private static String readString(ByteBuf in) {
+        int length = in.readUnsignedShort();
+        if (length > in.readableBytes()) {
+            throw new IllegalArgumentException("Truncated cluster frame: string of " + length + " bytes, "
+                    + in.readableBytes() + " readable");
+        }
+        String value = in.toString(in.readerIndex(), length, StandardCharsets.UTF_8);
+        in.skipBytes(length);
+        return value;
+    }
+}
@@ -0,0 +1,217 @@
+package io.pivotal.rsocketserver.cluster;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.netty.buffer.ByteBufAllocator;
+import io.pivotal.rsocketcommon.data.Notification;
+import io.pivotal.rsocketserver.ingest.RingQueue;
+import io.rsocket.Payload;
+import io.rsocket.RSocket;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * The one connection to a peer node, and the notifications waiting to be forwarded over it.
+ * <p>
+ * Forwarding never blocks: a notification is put in a bounded {@link RingQueue} and, if no drain
+ * is pending, a drain is scheduled. The drain sends whatever has queued up by then in batches of
+ * up to {@code batchSize}, so notifications go out one by one when traffic is light and in large
+ * batches when it is heavy, without a timer. At most {@code maxBatchesInFlight} batches wait for
+ * the peer's acknowledgement; beyond that notifications stay queued, and once the queue is full
+ * they are refused. A batch the peer does not acknowledge, and what is still queued when the link
+ * closes, is handed back as undelivered.
+ * <p>
+ * Directory updates go out in the order they are sent. Until the snapshot of the clients
+ * connected here has been sent, the updates of clients that come and go meanwhile are held back,
+ * so a client that leaves while the snapshot is being sent is not left behind in the peer's
+ * directory by a later chunk of the snapshot.
+ */
+final class PeerLink {
+
+    private final String nodeId;
+    private final RSocket rsocket;
+    private final RingQueue<Notification> queue;
+    private final int batchSize;
+    private final int maxBatchesInFlight;
+    private final Consumer<List<Notification>> undelivered;
+    private final Counter forwarded;
+    private final Counter failed;
+    private final DistributionSummary batches;
+    private final Scheduler.Worker worker = Schedulers.parallel().createWorker();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // directory updates sent before the snapshot is complete, null once it is
+    private List<DirectoryUpdate> held = new ArrayList<>();
+    private volatile boolean closed;
+    Logger logger = LoggerFactory.getLogger(PeerLink.class);
+
+    PeerLink(String nodeId, RSocket rsocket, int queueCapacity, int batchSize, int maxBatchesInFlight,
+            Consumer<List<Notification>> undelivered, Counter forwarded, Counter failed, DistributionSummary batches) {
+        this.nodeId = nodeId;
+        this.rsocket = rsocket;
+        this.queue = new RingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.maxBatchesInFlight = maxBatchesInFlight;
+        this.undelivered = undelivered;
+        this.forwarded = forwarded;
+        this.failed = failed;
+        this.batches = batches;
+    }
+
+    String nodeId() {
+        return nodeId;
+    }
+
+    RSocket rsocket() {
+        return rsocket;
+    }
+
+    /**
+     * Queue a notification for the peer, without blocking.
+     *
+     * @return false if the queue is full or the link closed
+     */
+    boolean offer(Notification notification) {
+        if (closed || !queue.offer(notification)) {
+            failed.increment();
+            return false;
+        }
+        if (closed) {
+            // closed while offering: the close may have handed back the queue before this one was in it
+            handBack();
+        } else {
+            scheduleDrain();
+        }
+        return true;
+    }
+
+    /**
+     * Send a directory update, or hold it back until the snapshot is complete.
+     */
+    synchronized void sendDirectory(String ownerId, byte op, Collection<String> clientIds) {
+        if (held != null) {
+            held.add(new DirectoryUpdate(ownerId, op, new ArrayList<>(clientIds)));
+        } else {
+            send(ownerId, op, clientIds);
+        }
+    }
+
+    /**
+     * Send one chunk of the snapshot, ahead of the updates held back.
+     */
+    synchronized void sendSnapshot(String ownerId, Collection<String> clientIds) {
+        send(ownerId, ClusterProtocol.JOIN, clientIds);
+    }
+
+    /**
+     * Send the updates held back while the snapshot was being sent, and any later ones as they come.
+     */
+    synchronized void snapshotSent() {
+        for (DirectoryUpdate update : held) {
+            send(update.ownerId, update.op, update.clientIds);
+        }
+        held = null;
+    }
+
+    private void send(String ownerId, byte op, Collection<String> clientIds) {
+        rsocket.fireAndForget(ClusterProtocol.payload(ByteBufAllocator.DEFAULT, ClusterProtocol.DIRECTORY,
+                ClusterProtocol.directory(ByteBufAllocator.DEFAULT, ownerId, op, clientIds)))
+                .subscribe(null, error -> logger.debug("Directory update to node {} failed: {}", nodeId, error.toString()));
+    }
+
+    private void scheduleDrain() {
+        if (!closed && draining.compareAndSet(false, true)) {
+            worker.schedule(this::drain);
+        }
+    }
+
+    private void drain() {
+        for (;;) {
+            while (inFlight.get() < maxBatchesInFlight) {
+                List<Notification> batch = poll();
+                if (batch.isEmpty()) {
+                    break;
+                }
+                inFlight.incrementAndGet();
+                send(batch);
+            }
+            draining.set(false);
+            // a notification queued, or a batch acknowledged, since the last poll may have seen the drain still running
+            if (queue.isEmpty() || inFlight.get() >= maxBatchesInFlight || !draining.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+
+    private List<Notification> poll() {
+        List<Notification> batch = new ArrayList<>(Math.min(batchSize, queue.size()));
+        Notification notification;
+        while (batch.size() < batchSize && (notification = queue.poll()) != null) {
+            batch.add(notification);
+        }
+        return batch;
+    }
+
+    private void send(List<Notification> batch) {
+        batches.record(batch.size());
+        rsocket.requestResponse(ClusterProtocol.payload(ByteBufAllocator.DEFAULT, ClusterProtocol.FORWARD,
+                ClusterProtocol.notifications(ByteBufAllocator.DEFAULT, batch)))
+                .doOnNext(Payload::release)
+                .subscribe(null, error -> {
+                    failed.increment(batch.size());
+                    logger.warn("Forwarding {} notifications to node {} failed: {}", batch.size(), nodeId, error.toString());
+                    undelivered.accept(batch);
+                    acknowledged();
+                }, () -> {
+                    forwarded.increment(batch.size());
+                    acknowledged();
+                });
+    }
+
+    private void acknowledged() {
+        inFlight.decrementAndGet();
+        if (!queue.isEmpty()) {
+            scheduleDrain();
+        }
+    }
+
+    /**
+     * Close the connection and hand back what is still queued.
+     */
+    void close() {
+        closed = true;
+        worker.dispose();
+        rsocket.dispose();
+        handBack();
+    }
+
+    private void handBack() {
+        List<Notification> remaining;
+        while (!(remaining = poll()).isEmpty()) {
+            undelivered.accept(remaining);
+        }
+    }
+
+    private static final class DirectoryUpdate {
+
+        private final String ownerId;
+        private final byte op;
+        private final List<String> clientIds;
+
+        DirectoryUpdate(String ownerId, byte op, List<String> clientIds) {
+            this.ownerId = ownerId;
+            this.op = op;
+            this.clientIds = clientIds;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package io.pivotal.rsocketserver.data;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * What changed on a channel during one tumbling window. Only the sources and destinations seen
+ * during the window are listed, each with its running total, so applying the deltas in order
+ * rebuilds the full picture.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ChannelStats {
+    // epoch millis
+    private long windowStart;
+    private long windowEnd;
+    // notifications received in this window
+    private long count;
+    // notifications received since the channel opened
+    private long total;
+    // notifications per second over the sliding window
+    private double rate;
+    // epoch millis of the last notification, 0 if none yet
+    private long lastSeen;
+    private Map<String, Long> sources;
+    private Map<String, Long> destinations;
+}
@@ -0,0 +1,154 @@
+package io.pivotal.rsocketserver.ingest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.pivotal.rsocketcommon.data.Notification;
+import io.pivotal.rsocketserver.NotificationRouter;
+
+/**
+ * The asynchronous path of fire-and-forget notifications: producers, typically on an event loop,
+ * put them in a bounded {@link RingQueue} and return at once, and a dedicated drain thread takes
+ * them out in batches of up to {@code rsocket.ingest.batch-size} and hands each batch to the
+ * {@link NotificationRouter} for fan-out and store-and-forward.
+ * <p>
+ * Offering never blocks and never takes a lock. When the queue is full the
+ * {@code rsocket.ingest.overflow} policy applies: evict the oldest notification, drop the new
+ * one, or refuse it so the request can be rejected. The drain thread parks when the queue is
+ * empty and producers only unpark it if it is parked.
+ * <p>
+ * Meters: {@code rsocket.ingest.depth}, {@code rsocket.ingest.dropped} (tagged with the policy
+ * that dropped), {@code rsocket.ingest.processed}, {@code rsocket.ingest.failed} and the
+ * {@code rsocket.ingest.batch} size distribution.
+ */
+@Component
+public class IngestPipeline implements DisposableBean {
+
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final RingQueue<Notification> queue;
+    private final OverflowPolicy overflowPolicy;
+    private final int batchSize;
+    private final Consumer<List<Notification>> consumer;
+    private final Counter dropped;
+    private final Counter processed;
+    private final Counter failed;
+    private final DistributionSummary batches;
+    private final Thread drainer;
+    private volatile boolean running = true;
+    private volatile boolean parked;
+    Logger logger = LoggerFactory.getLogger(IngestPipeline.class);
+
+    @Autowired
+    public IngestPipeline(NotificationRouter router, MeterRegistry registry,
+            @Value("${rsocket.ingest.capacity:65536}") int capacity,
+            @Value("${rsocket.ingest.overflow:drop-newest}") OverflowPolicy overflowPolicy,
+            @Value("${rsocket.ingest.batch-size:256}") int batchSize) {
+        this(router::deliverAll, registry, capacity, overflowPolicy, batchSize);
+    }
+
+    IngestPipeline(Consumer<List<Notification>> consumer, MeterRegistry registry, int capacity,
+            OverflowPolicy overflowPolicy, int batchSize) {
+        this.queue = new RingQueue<>(capacity);
+        this.overflowPolicy = overflowPolicy;
+        this.batchSize = batchSize;
+        this.consumer = consumer;
+        Gauge.builder("rsocket.ingest.depth", queue, RingQueue::size)
+                .description("Notifications waiting in the ingest queue").register(registry);
+        this.dropped = Counter.builder("rsocket.ingest.dropped").tag("policy", overflowPolicy.name().toLowerCase(Locale.ROOT))
+                .description("Notifications dropped or refused because the ingest queue was full").register(registry);
+        this.processed = Counter.builder("rsocket.ingest.processed").register(registry);
+        this.failed = Counter.builder("rsocket.ingest.failed").register(registry);
+        this.batches = DistributionSummary.builder("rsocket.ingest.batch").description("Notifications per drained batch")
+                .register(registry);
+        this.drainer = new Thread(this::drain, "ingest-drain");
+        this.drainer.setDaemon(true);
+        this.drainer.start();
+    }
+
+    /**
+     * Queue a notification, without blocking.
+     *
+     * @return false if the queue is full and the policy is {@link OverflowPolicy#REJECT}; the
+     * drop policies count what they drop but do not tell the caller
+     */
+    public boolean offer(Notification notification) {
+        while (!queue.offer(notification)) {
+            if (overflowPolicy != OverflowPolicy.DROP_OLDEST) {
+                dropped.increment();
+                return overflowPolicy != OverflowPolicy.REJECT;
+            }
+            if (queue.poll() != null) {
+                dropped.increment();
+            }
+        }
+        if (parked) {
+            LockSupport.unpark(drainer);
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of notifications waiting
+     */
+    public int depth() {
+        return queue.size();
+    }
+
+    public int capacity() {
+        return queue.capacity();
+    }
+
+    private void drain() {
+        List<Notification> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            Notification notification;
+            while (batch.size() < batchSize && (notification = queue.poll()) != null) {
+                batch.add(notification);
+            }
+            if (batch.isEmpty()) {
+                parked = true;
+                // a producer that did not see the flag set has made the queue non-empty by now
+                if (running && queue.isEmpty()) {
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                }
+                parked = false;
+                continue;
+            }
+            try {
+                consumer.accept(batch);
+                processed.increment(batch.size());
+            } catch (RuntimeException e) {
+                failed.increment(batch.size());
+                logger.error("Processing a batch of {} notifications failed", batch.size(), e);
+            }
+            batches.record(batch.size());
+            batch.clear();
+        }
+    }
+
+    /**
+     * Stop taking notifications in and process those still queued.
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(drainer);
+        drainer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+}
@@ -0,0 +1,22 @@
+package io.pivotal.rsocketserver.ingest;
+
+/**
+ * What the ingest pipeline does with a notification that arrives while its queue is full.
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Evict the oldest queued notification to make room for the new one.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Drop the new notification and keep the queue as it is.
+     */
+    DROP_NEWEST,
+
+    /**
+     * Refuse the new notification, so the caller can reject the request.
+     */
+    REJECT
+}
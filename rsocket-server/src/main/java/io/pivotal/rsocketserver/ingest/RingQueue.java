@@ -0,0 +1,104 @@
+package io.pivotal.rsocketserver.ingest;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free queue over a ring of slots, after Dmitry Vyukov's bounded MPMC queue.
+ * <p>
+ * Every slot carries a sequence number telling whether it is ready to be written or read at a
+ * given position. A producer claims a position with one compare-and-set on the tail and then
+ * publishes the element by advancing the slot's sequence; a consumer does the same on the head.
+ * Neither ever waits for another thread: {@link #offer(Object)} fails at once when the ring is
+ * full, and {@link #poll()} returns null at once when it is empty.
+ * <p>
+ * Any number of threads may offer and poll. In the ingest pipeline there is one regular
+ * consumer, the drain thread, and producers poll only to evict the oldest element on overflow.
+ */
+public final class RingQueue<E> {
+
+    private final int mask;
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * @param capacity the number of elements held, rounded up to a power of two
+     */
+    public RingQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.mask = size - 1;
+        this.elements = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * @return false, without waiting, if the queue is full
+     */
+    public boolean offer(E element) {
+        long position = tail.get();
+        for (;;) {
+            int slot = (int) position & mask;
+            long difference = sequences.get(slot) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements.lazySet(slot, element);
+                    // publishes the element to the consumer reading this sequence
+                    sequences.lazySet(slot, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * @return the oldest element, or null, without waiting, if the queue is empty
+     */
+    public E poll() {
+        long position = head.get();
+        for (;;) {
+            int slot = (int) position & mask;
+            long difference = sequences.get(slot) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    E element = elements.get(slot);
+                    elements.lazySet(slot, null);
+                    // frees the slot for the producer one lap ahead
+                    sequences.lazySet(slot, position + mask + 1);
+                    return element;
+                }
+                position = head.get();
+            } else if (difference < 0) {
+                return null;
+            } else {
+                position = head.get();
+            }
+        }
+    }
+
+    /**
+     * @return the number of elements, exact only while no other thread offers or polls
+     */
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
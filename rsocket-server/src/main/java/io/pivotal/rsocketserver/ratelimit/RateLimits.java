@@ -0,0 +1,202 @@
+package io.pivotal.rsocketserver.ratelimit;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.pivotal.rsocketcommon.Ticker;
+import io.pivotal.rsocketserver.ClientConnection;
+import io.pivotal.rsocketserver.ClientRegistry;
+import io.rsocket.exceptions.RejectedException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Request rate limits per client, keyed by the client id of the SETUP payload, and per user,
+ * keyed by the authenticated username, together with limits on the streams and channels each
+ * may keep open.
+ * <p>
+ * Each client and each user has a {@link TokenBucket}, found by one map lookup and drawn from
+ * with one compare-and-set in the common case. A request over a limit is rejected at once with
+ * a new {@link RejectedException} naming the limit, never a shared one that every rejected
+ * request would add its suppressed exceptions and stack to.
+ * Buckets that are full again are dropped every {@code rsocket.rate-limit.idle-check}, and the
+ * count of open streams of a key as soon as its last stream closes, so clients and users that
+ * went quiet cost nothing.
+ * <p>
+ * Limits of 0, the default, are off:
+ * <ul>
+ * <li>{@code rsocket.rate-limit.client.requests-per-second} and {@code .burst}</li>
+ * <li>{@code rsocket.rate-limit.user.requests-per-second} and {@code .burst}</li>
+ * <li>{@code rsocket.rate-limit.client.max-streams} and {@code rsocket.rate-limit.user.max-streams}</li>
+ * </ul>
+ * {@code rsocket.rate-limit.stripes} sets the stripes of every bucket, by default one per processor.
+ */
+@Component
+public class RateLimits implements DisposableBean {
+
+    private final ClientRegistry clients;
+    private final Limit clientLimit;
+    private final Limit userLimit;
+    private final Disposable idleCheck;
+
+    public RateLimits(ClientRegistry clients, Ticker ticker, MeterRegistry registry,
+            @Value("${rsocket.rate-limit.client.requests-per-second:0}") double clientRate,
+            @Value("${rsocket.rate-limit.client.burst:0}") int clientBurst,
+            @Value("${rsocket.rate-limit.client.max-streams:0}") int clientMaxStreams,
+            @Value("${rsocket.rate-limit.user.requests-per-second:0}") double userRate,
+            @Value("${rsocket.rate-limit.user.burst:0}") int userBurst,
+            @Value("${rsocket.rate-limit.user.max-streams:0}") int userMaxStreams,
+            @Value("${rsocket.rate-limit.stripes:0}") int stripes,
+            @Value("${rsocket.rate-limit.idle-check:1m}") Duration idleCheck) {
+        this.clients = clients;
+        int stripeCount = stripes > 0 ? stripes : Runtime.getRuntime().availableProcessors();
+        this.clientLimit = new Limit("client", clientRate, clientBurst, clientMaxStreams, stripeCount, registry);
+        this.userLimit = new Limit("user", userRate, userBurst, userMaxStreams, stripeCount, registry);
+        this.idleCheck = ticker.every(idleCheck).subscribe(tick -> {
+            clientLimit.dropIdle();
+            userLimit.dropIdle();
+        });
+    }
+
+    /**
+     * @return empty if the client of the requester and the user may make one more request, else a {@link RejectedException}
+     */
+    public Mono<Void> admit(RSocketRequester requester, UserDetails user) {
+        RejectedException rejected = tryAcquire(clientId(requester), user != null ? user.getUsername() : null);
+        return rejected == null ? Mono.empty() : Mono.error(rejected);
+    }
+
+    /**
+     * Take a permit from the client's bucket, then from the user's.
+     *
+     * @return null if both had one, else the error of the limit hit
+     */
+    public RejectedException tryAcquire(String clientId, String username) {
+        RejectedException rejected = clientLimit.tryAcquire(clientId);
+        return rejected != null ? rejected : userLimit.tryAcquire(username);
+    }
+
+    /**
+     * Count the stream among those open for the client of the requester and for the user, or
+     * reject it when one of them has all the streams it may have.
+     */
+    public <T> Flux<T> limitStreams(RSocketRequester requester, UserDetails user, Flux<T> stream) {
+        if (clientLimit.maxStreams <= 0 && userLimit.maxStreams <= 0) {
+            return stream;
+        }
+        String clientId = clientId(requester);
+        String username = user != null ? user.getUsername() : null;
+        return Flux.defer(() -> {
+            RejectedException rejected = clientLimit.openStream(clientId);
+            if (rejected == null) {
+                rejected = userLimit.openStream(username);
+                if (rejected != null) {
+                    clientLimit.closeStream(clientId);
+                }
+            }
+            if (rejected != null) {
+                return Flux.error(rejected);
+            }
+            return stream.doFinally(signal -> {
+                clientLimit.closeStream(clientId);
+                userLimit.closeStream(username);
+            });
+        });
+    }
+
+    private String clientId(RSocketRequester requester) {
+        ClientConnection connection = clients.get(requester);
+        return connection != null ? connection.getClientId() : null;
+    }
+
+    /**
+     * @return the number of clients and users with open streams
+     */
+    int streamKeys() {
+        return clientLimit.streams.size() + userLimit.streams.size();
+    }
+
+    @Override
+    public void destroy() {
+        idleCheck.dispose();
+    }
+
+    /**
+     * The buckets and open stream counts of one kind of key.
+     */
+    private static final class Limit {
+
+        private final String kind;
+        private final double rate;
+        private final int burst;
+        private final int maxStreams;
+        private final int stripes;
+        private final Counter rejections;
+        private final ConcurrentHashMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+        // only keys with open streams have a count
+        private final ConcurrentHashMap<String, Integer> streams = new ConcurrentHashMap<>();
+
+        Limit(String kind, double rate, int burst, int maxStreams, int stripes, MeterRegistry registry) {
+            this.kind = kind;
+            this.rate = rate;
+            this.burst = burst > 0 ? burst : (int) Math.max(1, Math.ceil(rate));
+            this.maxStreams = maxStreams;
+            this.stripes = stripes;
+            this.rejections = Counter.builder("rsocket.rate-limit.rejected").tag("key", kind)
+                    .description("Requests and streams rejected by a rate limit").register(registry);
+        }
+
+        RejectedException tryAcquire(String key) {
+            if (rate <= 0 || key == null) {
+                return null;
+            }
+            TokenBucket bucket = buckets.get(key);
+            if (bucket == null) {
+                bucket = buckets.computeIfAbsent(key, k -> new TokenBucket(rate, burst, stripes));
+            }
+            if (bucket.tryAcquire()) {
+                return null;
+            }
+            rejections.increment();
+            return new RejectedException("Rate limit of " + rate + " requests per second exceeded for " + kind + " '" + key + "'");
+        }
+
+        RejectedException openStream(String key) {
+            if (maxStreams <= 0 || key == null) {
+                return null;
+            }
+            boolean[] opened = new boolean[1];
+            streams.compute(key, (k, open) -> {
+                if (open != null && open >= maxStreams) {
+                    return open;
+                }
+                opened[0] = true;
+                return open != null ? open + 1 : 1;
+            });
+            if (opened[0]) {
+                return null;
+            }
+            rejections.increment();
+            return new RejectedException("Limit of " + maxStreams + " open streams reached for " + kind + " '" + key + "'");
+        }
+
+        void closeStream(String key) {
+            if (maxStreams > 0 && key != null) {
+                streams.computeIfPresent(key, (k, open) -> open > 1 ? open - 1 : null);
+            }
+        }
+
+        void dropIdle() {
+            buckets.values().removeIf(TokenBucket::isIdle);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package io.pivotal.rsocketserver.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free token bucket, kept as the generic cell rate algorithm: instead of a token count
+ * refilled over time, a stripe holds one number, the theoretical arrival time of the next
+ * request, and taking a token is one compare-and-set that moves it one emission interval later.
+ * A request is refused when that would put it more than the burst ahead of now.
+ * <p>
+ * The bucket is split in stripes, each with an equal share of the rate and of the burst, so that
+ * threads mostly update different stripes: a thread takes from the stripe its id selects and,
+ * only if that one is empty, from the others in turn. All the stripes together allow the whole
+ * rate; a refusal costs one attempt per stripe. Stripes sit a cache line apart.
+ */
+public final class TokenBucket {
+
+    // longs per cache line, so that stripes do not share one
+    private static final int PADDING = 8;
+
+    private final int mask;
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final AtomicLongArray arrivals;
+    private final long origin = System.nanoTime();
+
+    /**
+     * @param permitsPerSecond the sustained rate
+     * @param burst            the permits that may be taken at once after a quiet period
+     * @param stripes          the number of stripes, rounded up to a power of two, but no more than the burst
+     */
+    public TokenBucket(double permitsPerSecond, int burst, int stripes) {
+        int count = Math.min(Integer.highestOneBit(Math.max(1, stripes) * 2 - 1), Integer.highestOneBit(Math.max(1, burst)));
+        this.mask = count - 1;
+        this.intervalNanos = (long) (count * 1e9 / permitsPerSecond);
+        this.burstNanos = (Math.max(1, burst) / count) * intervalNanos;
+        this.arrivals = new AtomicLongArray(count * PADDING);
+    }
+
+    /**
+     * @return true if a permit was taken, false at once if there is none
+     */
+    public boolean tryAcquire() {
+        return tryAcquire(System.nanoTime() - origin);
+    }
+
+    boolean tryAcquire(long now) {
+        int home = (int) Thread.currentThread().getId() & mask;
+        if (tryAcquire(home, now)) {
+            return true;
+        }
+        for (int i = 1; i <= mask; i++) {
+            if (tryAcquire((home + i) & mask, now)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean tryAcquire(int stripe, long now) {
+        int index = stripe * PADDING;
+        for (;;) {
+            long arrival = arrivals.get(index);
+            long next = Math.max(arrival, now) + intervalNanos;
+            if (next - now > burstNanos) {
+                return false;
+            }
+            if (arrivals.compareAndSet(index, arrival, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return true if the bucket is full, so that replacing it by a new one would change nothing
+     */
+    public boolean isIdle() {
+        long now = System.nanoTime() - origin;
+        for (int i = 0; i <= mask; i++) {
+            if (arrivals.get(i * PADDING) > now) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int stripes() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,53 @@
+package io.pivotal.rsocketserver.store;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import io.netty.util.internal.PlatformDependent;
+
+/**
+ * A single {@code long} kept in a memory-mapped file, so a value written by one process is read
+ * back by the next one. Writes reach the page cache immediately and survive the process being
+ * killed; they are not forced to the device.
+ */
+final class Checkpoint implements Closeable {
+
+    private final MappedByteBuffer buffer;
+
+    Checkpoint(File file) throws IOException {
+        this.buffer = map(file, Long.BYTES);
+    }
+
+    long get() {
+        return buffer.getLong(0);
+    }
+
+    void set(long value) {
+        buffer.putLong(0, value);
+    }
+
+    @Override
+    public void close() {
+        unmap(buffer);
+    }
+
+    /**
+     * Map the first {@code size} bytes of a file for reading and writing, extending it with zeros if needed.
+     */
+    static MappedByteBuffer map(File file, long size) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    /**
+     * Release a mapping now rather than when the buffer is garbage collected. The buffer must not be used afterwards.
+     */
+    static void unmap(MappedByteBuffer buffer) {
+        PlatformDependent.freeDirectBuffer(buffer);
+    }
+}
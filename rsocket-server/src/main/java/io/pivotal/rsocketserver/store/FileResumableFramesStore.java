@@ -0,0 +1,135 @@
+package io.pivotal.rsocketserver.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.FileSystemUtils;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.rsocket.resume.ResumableFramesStore;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+/**
+ * A {@link ResumableFramesStore} that keeps the frames sent to the peer, until it acknowledges
+ * them, in a {@link SegmentLog} rather than on the heap, so a session that waits for its client
+ * to come back holds no frames in memory however many it has to replay. It is bounded: frames
+ * not acknowledged are dropped, oldest first, beyond {@code maxBytes} or after {@code maxAge}.
+ * <p>
+ * It is not persistent. rsocket-java keeps its resume sessions in memory, so a session can only
+ * be resumed by the server process that started it, and a store always starts empty: whatever a
+ * previous process left in its directory is deleted.
+ * <p>
+ * Every resume session gets a directory of its own, deleted when the store is closed, that is
+ * when the session ends. Those a killed process left behind are removed by
+ * {@link #deleteSessions(File)} at startup.
+ */
+public class FileResumableFramesStore implements ResumableFramesStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileResumableFramesStore.class);
+
+    private final File directory;
+    private final SegmentLog frames;
+    private final MonoProcessor<Void> onClose = MonoProcessor.create();
+    private volatile long impliedPosition;
+
+    /**
+     * @param directory   the directory of this session's store, created if needed and emptied if not
+     * @param segmentSize the size of a segment file
+     * @param maxBytes    the size of the frames kept for the peer above which the oldest are dropped
+     * @param maxAge      the age after which frames not acknowledged by the peer are dropped
+     */
+    public FileResumableFramesStore(File directory, int segmentSize, long maxBytes, Duration maxAge) {
+        this.directory = directory;
+        FileSystemUtils.deleteRecursively(directory);
+        try {
+            this.frames = new SegmentLog(directory, segmentSize, maxBytes, maxAge);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open the resume store in " + directory, e);
+        }
+    }
+
+    @Override
+    public Mono<Void> saveFrames(Flux<ByteBuf> frames) {
+        // the frames are copied to the log; the caller keeps ownership of the buffers
+        return frames.filter(frame -> !isDisposed())
+                .doOnNext(this.frames::append)
+                .then();
+    }
+
+    @Override
+    public void releaseFrames(long remoteImpliedPos) {
+        frames.truncate(remoteImpliedPos);
+    }
+
+    @Override
+    public Flux<ByteBuf> resumeStream() {
+        return Flux.generate(() -> frames.cursor(frames.head()), (cursor, sink) -> {
+            ByteBuf frame = cursor.next(ByteBufAllocator.DEFAULT);
+            if (frame == null) {
+                sink.complete();
+            } else {
+                sink.next(frame);
+            }
+            return cursor;
+        });
+    }
+
+    @Override
+    public long framePosition() {
+        return frames.head();
+    }
+
+    @Override
+    public long frameImpliedPosition() {
+        return impliedPosition;
+    }
+
+    @Override
+    public void resumableFrameReceived(ByteBuf frame) {
+        // frames are received on a single thread
+        impliedPosition += frame.readableBytes();
+    }
+
+    @Override
+    public Mono<Void> onClose() {
+        return onClose;
+    }
+
+    @Override
+    public synchronized void dispose() {
+        if (isDisposed()) {
+            return;
+        }
+        frames.close();
+        // no other process can resume the session
+        FileSystemUtils.deleteRecursively(directory);
+        onClose.onComplete();
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return onClose.isTerminated();
+    }
+
+    /**
+     * Delete the session directories under {@code parent}, those left behind by a previous server
+     * process, which cannot be resumed.
+     */
+    public static void deleteSessions(File parent) {
+        File[] sessions = parent.listFiles(File::isDirectory);
+        if (sessions == null) {
+            return;
+        }
+        for (File session : sessions) {
+            logger.info("Deleting the resume store {} of a previous process", session);
+            FileSystemUtils.deleteRecursively(session);
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package io.pivotal.rsocketserver.store;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+
+/**
+ * An append-only log of binary records kept in memory-mapped segment files.
+ * <p>
+ * Records are addressed by their logical position: the total length of the records appended
+ * before them, which for RSocket frames is exactly the resume position. A segment file is named
+ * after the position of its first record and holds each record as a 4 byte length followed by
+ * the record bytes. The length is written last, so a record only becomes visible once complete,
+ * and the zero-filled remainder of a segment marks its end. Opening a log on an existing
+ * directory recovers every complete record left by the previous process.
+ * <p>
+ * Records before the head have been consumed. Segments wholly before the head are deleted, and
+ * the head itself is kept in a {@link Checkpoint}. Retention deletes the oldest segments beyond
+ * a total size or age, consumed or not, and moves the head past them; it runs whenever a new
+ * segment is started, and on {@link #compact()}.
+ * <p>
+ * Instances are thread-safe. The records live off-heap, in the page cache, so however many are
+ * retained they add nothing to the work of the garbage collector.
+ */
+public class SegmentLog implements Closeable {
+
+    private static final String SEGMENT_SUFFIX = ".segment";
+    private static final String HEAD_FILE = "head";
+    private static final int LENGTH_BYTES = 4;
+
+    private final File directory;
+    private final int segmentSize;
+    private final long maxBytes;
+    private final long maxAgeMillis;
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final Checkpoint headCheckpoint;
+    private long head;
+    private long end;
+    private boolean closed;
+    Logger logger = LoggerFactory.getLogger(SegmentLog.class);
+
+    /**
+     * Open the log in a directory, creating it if needed.
+     *
+     * @param directory   the directory holding the segments of this log and nothing else
+     * @param segmentSize the size of a segment file; a larger record gets a segment of its own
+     * @param maxBytes    the total size of the segment files above which the oldest are deleted
+     * @param maxAge      the time since its last append after which a segment is deleted
+     */
+    public SegmentLog(File directory, int segmentSize, long maxBytes, Duration maxAge) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxBytes = maxBytes;
+        this.maxAgeMillis = maxAge.toMillis();
+        this.headCheckpoint = new Checkpoint(new File(directory, HEAD_FILE));
+
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SEGMENT_SUFFIX));
+        if (files == null) {
+            throw new IOException("Cannot list " + directory);
+        }
+        for (File file : files) {
+            String name = file.getName();
+            long base = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+            segments.put(base, Segment.recover(file, base));
+        }
+        this.head = headCheckpoint.get();
+        this.end = segments.isEmpty() ? head : segments.lastEntry().getValue().end;
+        if (!segments.isEmpty()) {
+            this.head = Math.min(Math.max(head, segments.firstKey()), end);
+        }
+        logger.debug("Opened {} with records {} to {}", directory, head, end);
+    }
+
+    /**
+     * @param record the record to append; its bytes are copied and its reader index is left unchanged
+     * @return the position after the record
+     */
+    public synchronized long append(ByteBuf record) {
+        checkOpen();
+        int length = record.readableBytes();
+        if (length == 0) {
+            throw new IllegalArgumentException("Records must not be empty");
+        }
+        Segment active = segments.isEmpty() ? null : segments.lastEntry().getValue();
+        if (active == null || !active.fits(length)) {
+            active = roll(length);
+        }
+        active.append(record, length);
+        end += length;
+        return end;
+    }
+
+    private Segment roll(int length) {
+        File file = new File(directory, String.format("%020d%s", end, SEGMENT_SUFFIX));
+        try {
+            Segment segment = Segment.create(file, end, Math.max(segmentSize, LENGTH_BYTES + length));
+            segments.put(end, segment);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create " + file, e);
+        }
+        enforceRetention();
+        return segments.lastEntry().getValue();
+    }
+
+    /**
+     * Mark the records before a position as consumed.
+     *
+     * @param position a position between the head and the end of the log
+     */
+    public synchronized void truncate(long position) {
+        checkOpen();
+        if (position > end) {
+            throw new IllegalStateException(String.format("Cannot truncate %s to %d, beyond its end %d", directory, position, end));
+        }
+        if (position > head) {
+            moveHead(position);
+            enforceRetention();
+        }
+    }
+
+    /**
+     * Apply retention now, rather than waiting for the next segment to be started.
+     */
+    public synchronized void compact() {
+        checkOpen();
+        enforceRetention();
+    }
+
+    private void enforceRetention() {
+        long now = System.currentTimeMillis();
+        long total = size();
+        // the newest segment is kept, as the one to append to
+        while (segments.size() > 1) {
+            Segment oldest = segments.firstEntry().getValue();
+            boolean consumed = oldest.end <= head;
+            if (!consumed && total <= maxBytes && now - oldest.lastModified <= maxAgeMillis) {
+                break;
+            }
+            if (!consumed) {
+                logger.warn("Retention dropped unconsumed records {} to {} of {}", head, oldest.end, directory);
+            }
+            segments.remove(oldest.base);
+            total -= oldest.capacity();
+            oldest.delete();
+            moveHead(Math.max(head, segments.firstKey()));
+        }
+        if (head < end && now - segments.lastEntry().getValue().lastModified > maxAgeMillis) {
+            logger.warn("Retention dropped unconsumed records {} to {} of {}", head, end, directory);
+            moveHead(end);
+        }
+    }
+
+    private void moveHead(long position) {
+        head = position;
+        headCheckpoint.set(position);
+    }
+
+    /**
+     * @param position where to start reading, between the head and the end of the log
+     * @return a cursor over the records from that position to the current end of the log
+     */
+    public synchronized Cursor cursor(long position) {
+        checkOpen();
+        if (position < head || position > end) {
+            throw new IllegalStateException(String.format("Position %d is outside of %s, holding %d to %d", position, directory, head, end));
+        }
+        return new Cursor(position, end);
+    }
+
+    /**
+     * @return the position of the first record not consumed
+     */
+    public synchronized long head() {
+        return head;
+    }
+
+    /**
+     * @return the position after the last record
+     */
+    public synchronized long end() {
+        return end;
+    }
+
+    /**
+     * @return the size of the segment files on disk
+     */
+    public synchronized long size() {
+        long size = 0;
+        for (Segment segment : segments.values()) {
+            size += segment.capacity();
+        }
+        return size;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException(directory + " is closed");
+        }
+    }
+
+    /**
+     * Unmap the files, leaving them for the next process to open.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        segments.values().forEach(Segment::close);
+        segments.clear();
+        headCheckpoint.close();
+    }
+
+    /**
+     * Reads records in order, each into a new buffer. Reading fails once retention dropped the
+     * next record.
+     */
+    public final class Cursor {
+
+        private final long limit;
+        private long position;
+        private Segment segment;
+        private int offset;
+
+        private Cursor(long position, long limit) {
+            this.position = position;
+            this.limit = limit;
+        }
+
+        /**
+         * @return the next record, to be released by the caller, or null at the end
+         */
+        public ByteBuf next(ByteBufAllocator allocator) {
+            synchronized (SegmentLog.this) {
+                checkOpen();
+                if (position >= limit) {
+                    return null;
+                }
+                if (position < head) {
+                    throw new IllegalStateException(String.format("Records of %s from %d are no longer retained", directory, position));
+                }
+                if (segment == null || segment.closed || position >= segment.end) {
+                    Map.Entry<Long, Segment> entry = segments.floorEntry(position);
+                    segment = entry.getValue();
+                    offset = segment.offsetOf(position);
+                }
+                ByteBuf record = segment.read(offset, allocator);
+                offset += LENGTH_BYTES + record.readableBytes();
+                position += record.readableBytes();
+                return record;
+            }
+        }
+
+        public long position() {
+            return position;
+        }
+    }
+
+    private static final class Segment {
+
+        private final File file;
+        private final long base;
+        private final MappedByteBuffer buffer;
+        // absolute reads and writes of the mapped bytes
+        private final ByteBuf bytes;
+        private int writeOffset;
+        private long end;
+        private long lastModified;
+        private boolean closed;
+
+        private Segment(File file, long base, MappedByteBuffer buffer, long lastModified) {
+            this.file = file;
+            this.base = base;
+            this.buffer = buffer;
+            this.bytes = Unpooled.wrappedBuffer(buffer);
+            this.end = base;
+            this.lastModified = lastModified;
+        }
+
+        static Segment create(File file, long base, int size) throws IOException {
+            return new Segment(file, base, Checkpoint.map(file, size), System.currentTimeMillis());
+        }
+
+        static Segment recover(File file, long base) throws IOException {
+            Segment segment = new Segment(file, base, Checkpoint.map(file, file.length()), file.lastModified());
+            // a zero length, or one running past the end of the file, marks the end of the records
+            int capacity = segment.capacity();
+            while (segment.writeOffset + LENGTH_BYTES <= capacity) {
+                int length = segment.bytes.getInt(segment.writeOffset);
+                if (length <= 0 || segment.writeOffset + LENGTH_BYTES + length > capacity) {
+                    break;
+                }
+                segment.writeOffset += LENGTH_BYTES + length;
+                segment.end += length;
+            }
+            return segment;
+        }
+
+        int capacity() {
+            return buffer.capacity();
+        }
+
+        boolean fits(int length) {
+            return writeOffset + LENGTH_BYTES + length <= capacity();
+        }
+
+        void append(ByteBuf record, int length) {
+            bytes.setBytes(writeOffset + LENGTH_BYTES, record, record.readerIndex(), length);
+            bytes.setInt(writeOffset, length);
+            writeOffset += LENGTH_BYTES + length;
+            end += length;
+            lastModified = System.currentTimeMillis();
+        }
+
+        int offsetOf(long position) {
+            int offset = 0;
+            long at = base;
+            while (at < position) {
+                int length = bytes.getInt(offset);
+                offset += LENGTH_BYTES + length;
+                at += length;
+            }
+            if (at != position) {
+                throw new IllegalStateException("Position " + position + " is not the start of a record in " + file);
+            }
+            return offset;
+        }
+
+        ByteBuf read(int offset, ByteBufAllocator allocator) {
+            int length = bytes.getInt(offset);
+            return allocator.buffer(length).writeBytes(bytes, offset + LENGTH_BYTES, length);
+        }
+
+        void close() {
+            if (!closed) {
+                closed = true;
+                Checkpoint.unmap(buffer);
+            }
+        }
+
+        void delete() {
+            close();
+            if (!file.delete()) {
+                LoggerFactory.getLogger(SegmentLog.class).warn("Cannot delete {}", file);
+            }
+        }
+    }
+}
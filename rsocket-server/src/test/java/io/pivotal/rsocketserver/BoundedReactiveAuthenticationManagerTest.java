@@ -0,0 +1,54 @@
+package io.pivotal.rsocketserver;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.MapReactiveUserDetailsService;
+import org.springframework.security.core.userdetails.User;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BoundedReactiveAuthenticationManagerTest {
+
+    private static final Authentication CREDENTIALS = new UsernamePasswordAuthenticationToken("user", "pass");
+
+    @Test
+    public void testSaturatedVerificationIsRejectedImmediately() {
+        BoundedReactiveAuthenticationManager manager =
+                new BoundedReactiveAuthenticationManager(authentication -> Mono.never(), Schedulers.immediate(), 2);
+
+        Disposable first = manager.authenticate(CREDENTIALS).subscribe();
+        Disposable second = manager.authenticate(CREDENTIALS).subscribe();
+
+        StepVerifier.create(manager.authenticate(CREDENTIALS))
+                .expectError(AuthenticationServiceException.class)
+                .verify(Duration.ofMillis(100));
+
+        // a cancelled verification frees its slot
+        first.dispose();
+        assertThat(manager.pending()).isEqualTo(1);
+        second.dispose();
+        assertThat(manager.pending()).isZero();
+    }
+
+    @Test
+    public void testPasswordIsVerifiedOffTheCallingThread() {
+        MapReactiveUserDetailsService users = new MapReactiveUserDetailsService(User.withUsername("user")
+                .password("{noop}pass").roles("USER").build());
+        BoundedReactiveAuthenticationManager manager = new BoundedReactiveAuthenticationManager(users, 1, 10);
+        try {
+            StepVerifier.create(manager.authenticate(CREDENTIALS).map(authentication -> Thread.currentThread().getName()))
+                    .assertNext(thread -> assertThat(thread).startsWith("credential-verification"))
+                    .verifyComplete();
+        } finally {
+            manager.destroy();
+        }
+    }
+}
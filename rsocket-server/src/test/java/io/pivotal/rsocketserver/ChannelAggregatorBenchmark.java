@@ -0,0 +1,62 @@
+package io.pivotal.rsocketserver;
+
+import io.pivotal.rsocketcommon.data.Notification;
+import io.pivotal.rsocketserver.data.ChannelStats;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of aggregating one channel notification, to be compared with the 10 us budget of
+ * 100k notifications per second. Run with {@code -prof gc}: {@code add} should allocate nothing,
+ * and {@code roll}, one window of 1000 notifications, in proportion to the keys seen.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ChannelAggregatorBenchmark {
+
+    @Param({"4", "256"})
+    int keys;
+
+    private Notification[] notifications;
+    private ChannelAggregator aggregator;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        notifications = new Notification[1024];
+        for (int i = 0; i < notifications.length; i++) {
+            // decoded notifications carry their own String instances
+            notifications[i] = new Notification(new String("source-" + i % keys), new String("destination-" + i % keys), "text", "client-1");
+        }
+        aggregator = new ChannelAggregator(1000, 10, 1024, System.currentTimeMillis());
+    }
+
+    @Benchmark
+    public void add() {
+        aggregator.add(notifications[next++ & 1023], System.currentTimeMillis());
+    }
+
+    @Benchmark
+    public ChannelStats roll() {
+        for (int i = 0; i < 1000; i++) {
+            aggregator.add(notifications[next++ & 1023], System.currentTimeMillis());
+        }
+        return aggregator.roll(System.currentTimeMillis());
+    }
+}
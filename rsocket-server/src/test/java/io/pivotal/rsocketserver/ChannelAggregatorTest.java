@@ -0,0 +1,64 @@
+package io.pivotal.rsocketserver;
+
+import io.pivotal.rsocketcommon.data.Notification;
+import io.pivotal.rsocketserver.data.ChannelStats;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class ChannelAggregatorTest {
+
+    @Test
+    public void testDeltaListsOnlyWhatChangedInTheWindow() {
+        ChannelAggregator aggregator = new ChannelAggregator(1000, 2, 16, 0);
+        aggregator.add(new Notification("a", "x", "1", "client-1"), 100);
+        aggregator.add(new Notification("a", "y", "2", "client-1"), 200);
+        aggregator.add(new Notification("b", "x", "3", "client-1"), 300);
+
+        ChannelStats first = aggregator.roll(1000);
+        assertThat(first.getWindowStart()).isZero();
+        assertThat(first.getWindowEnd()).isEqualTo(1000);
+        assertThat(first.getCount()).isEqualTo(3);
+        assertThat(first.getTotal()).isEqualTo(3);
+        assertThat(first.getRate()).isEqualTo(3.0);
+        assertThat(first.getLastSeen()).isEqualTo(300);
+        assertThat(first.getSources()).containsOnly(entry("a", 2L), entry("b", 1L));
+        assertThat(first.getDestinations()).containsOnly(entry("x", 2L), entry("y", 1L));
+
+        aggregator.add(new Notification("b", "x", "4", "client-1"), 1500);
+        ChannelStats second = aggregator.roll(2000);
+        assertThat(second.getCount()).isEqualTo(1);
+        assertThat(second.getTotal()).isEqualTo(4);
+        // 4 notifications over the 2 windows of the sliding window
+        assertThat(second.getRate()).isEqualTo(2.0);
+        assertThat(second.getSources()).containsOnly(entry("b", 2L));
+        assertThat(second.getDestinations()).containsOnly(entry("x", 3L));
+    }
+
+    @Test
+    public void testQuietWindowsEmitUntilTheRateSettles() {
+        ChannelAggregator aggregator = new ChannelAggregator(1000, 2, 16, 0);
+        aggregator.add(new Notification("a", "x", "1", "client-1"), 100);
+        aggregator.roll(1000);
+
+        ChannelStats decaying = aggregator.roll(2000);
+        assertThat(decaying.getCount()).isZero();
+        assertThat(decaying.getRate()).isEqualTo(0.5);
+        assertThat(decaying.getSources()).isEmpty();
+
+        assertThat(aggregator.roll(3000)).isNotNull().extracting(ChannelStats::getRate).isEqualTo(0.0);
+        assertThat(aggregator.roll(4000)).isNull();
+    }
+
+    @Test
+    public void testKeysBeyondTheLimitAreCountedTogether() {
+        ChannelAggregator aggregator = new ChannelAggregator(1000, 1, 2, 0);
+        for (int i = 0; i < 5; i++) {
+            aggregator.add(new Notification("source-" + i, "x", "text", "client-1"), 100);
+        }
+
+        assertThat(aggregator.roll(1000).getSources())
+                .containsOnly(entry("source-0", 1L), entry("source-1", 1L), entry(ChannelAggregator.OTHER, 3L));
+    }
+}
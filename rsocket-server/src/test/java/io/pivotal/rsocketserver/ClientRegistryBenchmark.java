@@ -0,0 +1,97 @@
+package io.pivotal.rsocketserver;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.rsocket.RSocketRequester;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Contention benchmark for {@link ClientRegistry}: many threads connecting and disconnecting
+ * clients while a steady population of clients stays registered and is looked up.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+public class ClientRegistryBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Registry {
+
+        @Param({"1000", "50000"})
+        int population;
+
+        ClientRegistry registry;
+        String[] residentIds;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            registry = new ClientRegistry();
+            residentIds = new String[population];
+            for (int i = 0; i < population; i++) {
+                residentIds[i] = UUID.randomUUID().toString();
+                registry.register(residentIds[i], "user-" + (i % 16), mock(RSocketRequester.class));
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Churner {
+
+        private static final AtomicInteger THREADS = new AtomicInteger();
+        private static final int POOL = 256;
+
+        String[] ids = new String[POOL];
+        RSocketRequester[] requesters = new RSocketRequester[POOL];
+        String username;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            int thread = THREADS.getAndIncrement();
+            username = "user-" + (thread % 16);
+            for (int i = 0; i < POOL; i++) {
+                ids[i] = "churn-" + thread + "-" + i;
+                requesters[i] = mock(RSocketRequester.class);
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean connectDisconnect(Registry state, Churner churner) {
+        int i = churner.next++ & (Churner.POOL - 1);
+        ClientConnection connection = state.registry.register(churner.ids[i], churner.username, churner.requesters[i]);
+        return state.registry.unregister(connection);
+    }
+
+    @Benchmark
+    public ClientConnection lookup(Registry state, Churner churner) {
+        int i = churner.next++;
+        return state.registry.get(state.residentIds[(i & Integer.MAX_VALUE) % state.population]);
+    }
+
+    @Benchmark
+    public int iterate(Registry state) {
+        int[] count = new int[1];
+        state.registry.forEach(connection -> count[0]++);
+        return count[0];
+    }
+}
@@ -0,0 +1,82 @@
+package io.pivotal.rsocketserver;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.rsocket.RSocketRequester;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class ClientRegistryTest {
+
+    @Test
+    public void testRegisterLookupAndUnregister() {
+        ClientRegistry registry = new ClientRegistry();
+        RSocketRequester requester = mock(RSocketRequester.class);
+
+        ClientConnection connection = registry.register("client-1", "user", requester);
+
+        assertThat(registry.get("client-1")).isSameAs(connection);
+        assertThat(registry.get(requester)).isSameAs(connection);
+        assertThat(registry.getByUsername("user")).containsExactly(connection);
+        assertThat(registry.size()).isEqualTo(1);
+
+        assertThat(registry.unregister(connection)).isTrue();
+        assertThat(registry.get("client-1")).isNull();
+        assertThat(registry.get(requester)).isNull();
+        assertThat(registry.getByUsername("user")).isEmpty();
+        assertThat(registry.size()).isZero();
+    }
+
+    @Test
+    public void testStaleDisconnectDoesNotRemoveReconnectedClient() {
+        ClientRegistry registry = new ClientRegistry();
+
+        ClientConnection first = registry.register("client-1", "user", mock(RSocketRequester.class));
+        ClientConnection second = registry.register("client-1", "user", mock(RSocketRequester.class));
+
+        // The first connection's close callback fires after the client already reconnected
+        assertThat(registry.unregister(first)).isFalse();
+        assertThat(registry.get("client-1")).isSameAs(second);
+        assertThat(registry.getByUsername("user")).containsExactly(second);
+    }
+
+    @Test
+    public void testConcurrentChurnLeavesRegistryEmpty() throws InterruptedException {
+        ClientRegistry registry = new ClientRegistry();
+        int threads = 8;
+        int connectionsPerThread = 5_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger failures = new AtomicInteger();
+
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            executor.execute(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < connectionsPerThread; i++) {
+                        ClientConnection connection = registry.register(thread + "-" + i, "user-" + (i % 4), mock(RSocketRequester.class));
+                        if (registry.get(connection.getClientId()) != connection || !registry.unregister(connection)) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(1, TimeUnit.MINUTES)).isTrue();
+
+        assertThat(failures.get()).isZero();
+        assertThat(registry.size()).isZero();
+        assertThat(registry.getByUsername("user-0")).isEmpty();
+    }
+}
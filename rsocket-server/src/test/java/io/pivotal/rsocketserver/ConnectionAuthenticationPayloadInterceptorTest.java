@@ -0,0 +1,83 @@
+package io.pivotal.rsocketserver;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.rsocket.Payload;
+import io.rsocket.metadata.AuthMetadataCodec;
+import io.rsocket.metadata.CompositeMetadataCodec;
+import io.rsocket.metadata.WellKnownMimeType;
+import io.rsocket.util.ByteBufPayload;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.rsocket.api.PayloadExchange;
+import org.springframework.security.rsocket.api.PayloadExchangeType;
+import org.springframework.security.rsocket.api.PayloadInterceptorChain;
+import org.springframework.security.rsocket.core.DefaultPayloadExchange;
+import org.springframework.util.MimeTypeUtils;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ConnectionAuthenticationPayloadInterceptorTest {
+
+    private final AtomicInteger verifications = new AtomicInteger();
+
+    private final ReactiveAuthenticationManager manager = authentication -> {
+        verifications.incrementAndGet();
+        return Mono.just(new UsernamePasswordAuthenticationToken(authentication.getPrincipal(), null,
+                AuthorityUtils.createAuthorityList("ROLE_USER")));
+    };
+
+    private final PayloadInterceptorChain chain = exchange -> Mono.empty();
+
+    @Test
+    public void testSetupIsAuthenticated() {
+        ConnectionAuthenticationPayloadInterceptor interceptor = new ConnectionAuthenticationPayloadInterceptor(manager);
+
+        StepVerifier.create(interceptor.intercept(exchange(PayloadExchangeType.SETUP), chain)).verifyComplete();
+
+        assertThat(verifications.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testRequestOnAuthenticatedConnectionSkipsVerification() {
+        ConnectionAuthenticationPayloadInterceptor interceptor = new ConnectionAuthenticationPayloadInterceptor(manager);
+        Authentication connectionPrincipal = new UsernamePasswordAuthenticationToken("user", null,
+                AuthorityUtils.createAuthorityList("ROLE_USER"));
+
+        Mono<Void> request = interceptor.intercept(exchange(PayloadExchangeType.REQUEST_RESPONSE), chain)
+                .subscriberContext(ReactiveSecurityContextHolder.withAuthentication(connectionPrincipal));
+        StepVerifier.create(request).verifyComplete();
+
+        assertThat(verifications.get()).isZero();
+    }
+
+    @Test
+    public void testRequestWithoutConnectionPrincipalIsAuthenticated() {
+        ConnectionAuthenticationPayloadInterceptor interceptor = new ConnectionAuthenticationPayloadInterceptor(manager);
+
+        StepVerifier.create(interceptor.intercept(exchange(PayloadExchangeType.REQUEST_RESPONSE), chain)).verifyComplete();
+
+        assertThat(verifications.get()).isEqualTo(1);
+    }
+
+    private static PayloadExchange exchange(PayloadExchangeType type) {
+        ByteBufAllocator allocator = ByteBufAllocator.DEFAULT;
+        CompositeByteBuf metadata = allocator.compositeBuffer();
+        ByteBuf credentials = AuthMetadataCodec.encodeSimpleMetadata(allocator, "user".toCharArray(), "pass".toCharArray());
+        CompositeMetadataCodec.encodeAndAddMetadata(metadata, allocator, WellKnownMimeType.MESSAGE_RSOCKET_AUTHENTICATION, credentials);
+        Payload payload = ByteBufPayload.create(Unpooled.EMPTY_BUFFER, metadata);
+        return new DefaultPayloadExchange(type, payload,
+                MimeTypeUtils.parseMimeType(WellKnownMimeType.MESSAGE_RSOCKET_COMPOSITE_METADATA.getString()),
+                MimeTypeUtils.APPLICATION_JSON);
+    }
+}
@@ -0,0 +1,84 @@
+package io.pivotal.rsocketserver;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.UserDetailsRepositoryReactiveAuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.userdetails.MapReactiveUserDetailsService;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.crypto.factory.PasswordEncoderFactories;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reconnect storm: a burst of logins arrives on a single-threaded "event loop", then a probe task
+ * representing traffic of an established connection is queued behind them. The score is how long
+ * the probe waits. With inline verification it waits for every password hash of the burst; with
+ * the bounded verification pool it should stay flat regardless of the burst size.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CredentialVerificationBenchmark {
+
+    @Param({"inline", "bounded"})
+    String verification;
+
+    @Param({"4", "16"})
+    int burst;
+
+    private Scheduler eventLoop;
+    private ReactiveAuthenticationManager manager;
+    private final UsernamePasswordAuthenticationToken credentials = new UsernamePasswordAuthenticationToken("user", "pass");
+
+    @Setup(Level.Trial)
+    public void setup() {
+        eventLoop = Schedulers.newSingle("event-loop");
+        MapReactiveUserDetailsService users = new MapReactiveUserDetailsService(User.withUsername("user")
+                .password(PasswordEncoderFactories.createDelegatingPasswordEncoder().encode("pass")).roles("USER").build());
+        if ("inline".equals(verification)) {
+            UserDetailsRepositoryReactiveAuthenticationManager inline = new UserDetailsRepositoryReactiveAuthenticationManager(users);
+            inline.setScheduler(Schedulers.immediate());
+            manager = inline;
+        } else {
+            manager = new BoundedReactiveAuthenticationManager(users, Runtime.getRuntime().availableProcessors(), 10_000);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        eventLoop.dispose();
+        if (manager instanceof BoundedReactiveAuthenticationManager) {
+            ((BoundedReactiveAuthenticationManager) manager).destroy();
+        }
+    }
+
+    @Benchmark
+    public long eventLoopLatencyDuringStorm() throws Exception {
+        for (int i = 0; i < burst; i++) {
+            eventLoop.schedule(() -> manager.authenticate(credentials).subscribe());
+        }
+        long queued = System.nanoTime();
+        CompletableFuture<Long> probe = new CompletableFuture<>();
+        eventLoop.schedule(() -> probe.complete(System.nanoTime() - queued));
+        return probe.get();
+    }
+}
@@ -0,0 +1,47 @@
+package io.pivotal.rsocketserver;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LeaseAllocatorTest {
+
+    private static final long MAX_LAG = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final LeaseAllocator allocator = new LeaseAllocator(1000, 100, MAX_LAG);
+
+    @Test
+    public void testIdleServerSharesWholeBudget() {
+        assertThat(allocator.allowance(1, 0, 0, 0, 1024)).isEqualTo(1000);
+        assertThat(allocator.allowance(4, 0, 0, 0, 1024)).isEqualTo(250);
+    }
+
+    @Test
+    public void testBudgetIsKeptUpToHalfOfEveryLimit() {
+        assertThat(allocator.allowance(1, 50, MAX_LAG / 2, 512, 1024)).isEqualTo(1000);
+    }
+
+    @Test
+    public void testMostLoadedSignalCutsBudget() {
+        // three quarters of the in-flight limit leaves half the budget
+        assertThat(allocator.allowance(1, 75, 0, 0, 1024)).isEqualTo(500);
+        // and so do three quarters of the lag limit, or of the ingest queue
+        assertThat(allocator.allowance(1, 0, MAX_LAG * 3 / 4, 0, 1024)).isEqualTo(500);
+        assertThat(allocator.allowance(1, 0, 0, 768, 1024)).isEqualTo(500);
+        assertThat(allocator.allowance(1, 75, MAX_LAG * 9 / 10, 0, 1024)).isEqualTo(200);
+    }
+
+    @Test
+    public void testNothingIsAdmittedAtAnyLimit() {
+        assertThat(allocator.allowance(1, 100, 0, 0, 1024)).isZero();
+        assertThat(allocator.allowance(1, 0, MAX_LAG * 2, 0, 1024)).isZero();
+        assertThat(allocator.allowance(1, 0, 0, 1024, 1024)).isZero();
+    }
+
+    @Test
+    public void testEveryConnectionGetsAtLeastOneRequestWhileThereIsHeadroom() {
+        assertThat(allocator.allowance(5000, 99, 0, 0, 1024)).isEqualTo(1);
+    }
+}
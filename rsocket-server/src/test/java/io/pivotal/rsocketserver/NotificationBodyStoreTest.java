@@ -0,0 +1,105 @@
+package io.pivotal.rsocketserver;
+
+import io.pivotal.rsocketserver.data.BodyReceipt;
+import io.rsocket.exceptions.RejectedException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NotificationBodyStoreTest {
+
+    @TempDir
+    File directory;
+
+    private NotificationBodyStore store;
+
+    @AfterEach
+    public void destroy() {
+        if (store != null) {
+            store.destroy();
+        }
+    }
+
+    @Test
+    public void testBodyIsReadBackInChunksOfAtMostChunkSize() {
+        store = store(DataSize.ofMegabytes(1), Duration.ofHours(1));
+        byte[] body = body(10_000);
+
+        BodyReceipt receipt = store.store(chunks(body, 3000)).block();
+
+        assertThat(receipt.getSize()).isEqualTo(body.length);
+        assertThat(store.size(receipt.getId())).isEqualTo(body.length);
+        List<DataBuffer> chunks = store.read(receipt.getId()).collectList().block();
+        assertThat(chunks).hasSizeGreaterThanOrEqualTo(3).allMatch(chunk -> chunk.readableByteCount() <= 4096);
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        for (DataBuffer chunk : chunks) {
+            byte[] bytes = new byte[chunk.readableByteCount()];
+            chunk.read(bytes);
+            read.write(bytes, 0, bytes.length);
+            DataBufferUtils.release(chunk);
+        }
+        assertThat(read.toByteArray()).isEqualTo(body);
+    }
+
+    @Test
+    public void testBodyOverMaxSizeIsRejectedAndDeleted() {
+        store = store(DataSize.ofKilobytes(8), Duration.ofHours(1));
+
+        StepVerifier.create(store.store(chunks(body(10_000), 1000)))
+                .expectError(RejectedException.class)
+                .verify(Duration.ofSeconds(5));
+        assertThat(directory.listFiles()).isEmpty();
+    }
+
+    @Test
+    public void testUnknownOrInvalidIdIsAnError() {
+        store = store(DataSize.ofMegabytes(1), Duration.ofHours(1));
+
+        StepVerifier.create(store.read(UUID.randomUUID().toString())).expectError(IllegalArgumentException.class).verify();
+        StepVerifier.create(store.read("../secret")).expectError(IllegalArgumentException.class).verify();
+    }
+
+    @Test
+    public void testExpiredBodiesAreDeleted() throws InterruptedException {
+        store = store(DataSize.ofMegabytes(1), Duration.ofMillis(50));
+        BodyReceipt receipt = store.store(chunks(body(100), 100)).block();
+        Thread.sleep(100);
+
+        store.expire();
+
+        assertThat(store.size(receipt.getId())).isEqualTo(-1);
+    }
+
+    private NotificationBodyStore store(DataSize maxSize, Duration ttl) {
+        return new NotificationBodyStore(directory.getPath(), maxSize, DataSize.ofBytes(4096), ttl, Duration.ofHours(1));
+    }
+
+    private static byte[] body(int size) {
+        byte[] body = new byte[size];
+        for (int i = 0; i < size; i++) {
+            body[i] = (byte) i;
+        }
+        return body;
+    }
+
+    private static Flux<DataBuffer> chunks(byte[] body, int chunkSize) {
+        DefaultDataBufferFactory factory = new DefaultDataBufferFactory();
+        return Flux.range(0, (body.length + chunkSize - 1) / chunkSize)
+                .map(i -> factory.wrap(ByteBuffer.wrap(body, i * chunkSize, Math.min(chunkSize, body.length - i * chunkSize))));
+    }
+}
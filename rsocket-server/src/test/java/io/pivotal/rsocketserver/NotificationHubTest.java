@@ -0,0 +1,109 @@
+package io.pivotal.rsocketserver;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.pivotal.rsocketcommon.data.Notification;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.messaging.rsocket.RSocketStrategies;
+import org.springframework.util.MimeTypeUtils;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NotificationHubTest {
+
+    private static final RSocketStrategies STRATEGIES = RSocketStrategies.builder()
+            .encoder(new Jackson2JsonEncoder())
+            .decoder(new Jackson2JsonDecoder())
+            .dataBufferFactory(new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT))
+            .build();
+
+    @Test
+    public void testPublishedNotificationReachesTopicSubscribers() {
+        NotificationHub hub = new NotificationHub(STRATEGIES, 16);
+        Notification notification = new Notification("Server", "Client", "hello", "client-1");
+
+        StepVerifier.create(hub.subscribe("Client", MimeTypeUtils.APPLICATION_JSON).map(NotificationHubTest::text))
+                .then(() -> {
+                    assertThat(hub.publish(new Notification("Server", "Other", "ignored", "client-1"))).isFalse();
+                    assertThat(hub.publish(notification)).isTrue();
+                })
+                .assertNext(json -> assertThat(json).contains("\"text\":\"hello\""))
+                .thenCancel()
+                .verify(Duration.ofSeconds(1));
+
+        assertThat(hub.topicCount()).isZero();
+    }
+
+    @Test
+    public void testSubscribersShareOneEncodedPayload() {
+        NotificationHub hub = new NotificationHub(STRATEGIES, 16);
+        Flux<DataBuffer> first = hub.subscribe("Client", MimeTypeUtils.APPLICATION_JSON);
+        Flux<DataBuffer> second = hub.subscribe("Client", MimeTypeUtils.APPLICATION_JSON);
+        DataBuffer[] received = new DataBuffer[2];
+
+        first.take(1).subscribe(buffer -> received[0] = buffer);
+        second.take(1).subscribe(buffer -> received[1] = buffer);
+        hub.publish(new Notification("Server", "Client", "hello", "client-1"));
+
+        ByteBuf firstBuffer = ((NettyDataBuffer) received[0]).getNativeBuffer();
+        ByteBuf secondBuffer = ((NettyDataBuffer) received[1]).getNativeBuffer();
+        assertThat(firstBuffer).isNotSameAs(secondBuffer);
+        if (firstBuffer.hasMemoryAddress()) {
+            assertThat(firstBuffer.memoryAddress()).isEqualTo(secondBuffer.memoryAddress());
+        } else {
+            assertThat(firstBuffer.array()).isSameAs(secondBuffer.array());
+        }
+        // both duplicates hold the one encoded buffer, which the hub itself has released
+        ByteBuf encoded = root(firstBuffer);
+        assertThat(root(secondBuffer)).isSameAs(encoded);
+        assertThat(encoded.refCnt()).isEqualTo(2);
+
+        DataBufferUtils.release(received[0]);
+        assertThat(encoded.refCnt()).isEqualTo(1);
+        DataBufferUtils.release(received[1]);
+        assertThat(encoded.refCnt()).isZero();
+    }
+
+    @Test
+    public void testSlowSubscriberDropsOldestWithoutBlockingOthers() {
+        NotificationHub hub = new NotificationHub(STRATEGIES, 2);
+
+        StepVerifier.create(hub.subscribe("Client", MimeTypeUtils.APPLICATION_JSON).map(NotificationHubTest::text), 0)
+                .then(() -> {
+                    for (int i = 0; i < 5; i++) {
+                        hub.publish(new Notification("Server", "Client", "n" + i, "client-1"));
+                    }
+                })
+                .thenRequest(2)
+                .assertNext(json -> assertThat(json).contains("\"text\":\"n3\""))
+                .assertNext(json -> assertThat(json).contains("\"text\":\"n4\""))
+                .thenCancel()
+                .verify(Duration.ofSeconds(1));
+    }
+
+    private static ByteBuf root(ByteBuf buffer) {
+        while (buffer.unwrap() != null) {
+            buffer = buffer.unwrap();
+        }
+        return buffer;
+    }
+
+    private static String text(DataBuffer buffer) {
+        try {
+            return buffer.toString(StandardCharsets.UTF_8);
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package io.pivotal.rsocketserver;
 
+import io.pivotal.rsocketcommon.data.Notification;
+import io.pivotal.rsocketserver.data.BatchResult;
 import io.pivotal.rsocketserver.data.Message;
 import io.rsocket.SocketAcceptor;
 import io.rsocket.metadata.WellKnownMimeType;
@@ -10,6 +12,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.rsocket.context.LocalRSocketServerPort;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.rsocket.RSocketRequester;
 import org.springframework.messaging.rsocket.RSocketStrategies;
@@ -23,6 +26,8 @@ import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
 import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -88,6 +93,30 @@ public class RSocketClientToServerITest {
                 .verifyComplete();
     }
 
+    @Test
+    public void testRequestResponseBatchKeepsOrderAndReportsFailedItems() {
+        List<Notification> requests = Arrays.asList(
+                new Notification("Client", "Server", "first", "client-1"),
+                null,
+                new Notification("Client", "Server", "third", "client-1"));
+
+        Mono<List<BatchResult>> result = requester
+                .route("request-response-batch")
+                .data(requests)
+                .retrieveMono(new ParameterizedTypeReference<List<BatchResult>>() { });
+
+        StepVerifier
+                .create(result)
+                .consumeNextWith(results -> {
+                    assertThat(results).hasSize(3);
+                    assertThat(results.get(0).getResponse().getText()).isEqualTo("In response to: first");
+                    assertThat(results.get(1).getResponse()).isNull();
+                    assertThat(results.get(1).getError()).isNotEmpty();
+                    assertThat(results.get(2).getResponse().getText()).isEqualTo("In response to: third");
+                })
+                .verifyComplete();
+    }
+
     @Test
     public void testRequestGetsStream() {
         // Send a request message
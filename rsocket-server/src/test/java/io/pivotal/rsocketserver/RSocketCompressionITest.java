@@ -0,0 +1,144 @@
+package io.pivotal.rsocketserver;
+
+import io.pivotal.rsocketcommon.codec.CompressingRSocket;
+import io.pivotal.rsocketcommon.codec.PayloadCompression;
+import io.pivotal.rsocketcommon.data.Notification;
+import io.rsocket.SocketAcceptor;
+import io.rsocket.metadata.WellKnownMimeType;
+import io.rsocket.plugins.RSocketInterceptor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.rsocket.context.LocalRSocketServerPort;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.messaging.rsocket.RSocketStrategies;
+import org.springframework.messaging.rsocket.annotation.support.RSocketMessageHandler;
+import org.springframework.security.rsocket.metadata.SimpleAuthenticationEncoder;
+import org.springframework.security.rsocket.metadata.UsernamePasswordMetadata;
+import org.springframework.util.MimeTypeUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Connections that ask for compression at setup exchange compressed data both ways, and those
+ * asking for an algorithm the server does not know are refused.
+ */
+@SpringBootTest(properties = {"spring.rsocket.server.port=0", "rsocket.compression.threshold=256B"})
+public class RSocketCompressionITest {
+
+    @Autowired
+    private RSocketStrategies strategies;
+
+    @LocalRSocketServerPort
+    private Integer port;
+
+    @Test
+    public void testRequestResponseWithSmallAndLargeText() {
+        RSocketRequester requester = connect(UUID.randomUUID().toString(), PayloadCompression.DEFLATE, new ClientHandler());
+        try {
+            for (String text : new String[] {"small", text(64 * 1024)}) {
+                Mono<Notification> result = requester.route("request-response")
+                        .data(new Notification("Client", "Server", text, "compression-test"))
+                        .retrieveMono(Notification.class);
+
+                StepVerifier.create(result)
+                        .consumeNextWith(response -> assertThat(response.getText()).isEqualTo("In response to: " + text))
+                        .verifyComplete();
+            }
+        } finally {
+            requester.rsocket().dispose();
+        }
+    }
+
+    @Test
+    public void testPushFromServerToCompressingClient(@Autowired ClientRegistry clients) throws InterruptedException {
+        String receiverId = "receiver-" + UUID.randomUUID();
+        ClientHandler receiver = new ClientHandler();
+        RSocketRequester sender = connect(UUID.randomUUID().toString(), PayloadCompression.DEFLATE, new ClientHandler());
+        RSocketRequester receiving = connect(receiverId, PayloadCompression.DEFLATE, receiver);
+        try {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (clients.get(receiverId) == null) {
+                assertThat(System.nanoTime()).isLessThan(deadline);
+                Thread.sleep(10);
+            }
+            String text = text(16 * 1024);
+
+            StepVerifier.create(sender.route("push")
+                    .data(new Notification("Client", receiverId, text, "sender"))
+                    .retrieveMono(Void.class))
+                    .verifyComplete();
+            assertThat(receiver.pushed).extracting(Notification::getText).containsExactly(text);
+        } finally {
+            sender.rsocket().dispose();
+            receiving.rsocket().dispose();
+        }
+    }
+
+    @Test
+    public void testUnknownAlgorithmIsRefusedAtSetup() {
+        RSocketRequester requester = connect(UUID.randomUUID().toString(), "lzma", new ClientHandler());
+        try {
+            Mono<Notification> result = requester.route("request-response")
+                    .data(new Notification("Client", "Server", "hello", "compression-test"))
+                    .retrieveMono(Notification.class);
+
+            StepVerifier.create(result)
+                    .expectError()
+                    .verify(Duration.ofSeconds(5));
+        } finally {
+            requester.rsocket().dispose();
+        }
+    }
+
+    private RSocketRequester connect(String clientId, String algorithm, ClientHandler handler) {
+        SocketAcceptor responder = RSocketMessageHandler.responder(strategies, handler);
+        return RSocketRequester.builder()
+                .rsocketStrategies(strategies.mutate().encoder(new SimpleAuthenticationEncoder()).build())
+                .setupRoute("shell-client")
+                .setupData(clientId)
+                .setupMetadata(new UsernamePasswordMetadata("user", "pass"),
+                        MimeTypeUtils.parseMimeType(WellKnownMimeType.MESSAGE_RSOCKET_AUTHENTICATION.getString()))
+                .setupMetadata(algorithm, PayloadCompression.MIME_TYPE)
+                .rsocketConnector(connector -> connector.acceptor(responder)
+                        .interceptors(registry -> registry
+                                .forRequester((RSocketInterceptor) rsocket -> new CompressingRSocket(rsocket, 256, false))
+                                .forResponder((RSocketInterceptor) rsocket -> new CompressingRSocket(rsocket, 256, true))))
+                .connectTcp("localhost", port)
+                .block();
+    }
+
+    private static String text(int length) {
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; text.length() < length; i++) {
+            text.append("notification ").append(i % 100).append(' ');
+        }
+        return text.substring(0, length);
+    }
+
+    static class ClientHandler {
+
+        final List<Notification> pushed = new CopyOnWriteArrayList<>();
+
+        @MessageMapping("client-status")
+        public Flux<String> statusUpdate(String status) {
+            return Flux.never();
+        }
+
+        @MessageMapping("client-notification")
+        public Mono<Void> pushed(Notification notification) {
+            pushed.add(notification);
+            return Mono.empty();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package io.pivotal.rsocketserver;
+
+import io.pivotal.rsocketcommon.data.Notification;
+import io.pivotal.rsocketserver.data.BodyReceipt;
+import io.rsocket.SocketAcceptor;
+import io.rsocket.metadata.WellKnownMimeType;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.rsocket.context.LocalRSocketServerPort;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.messaging.rsocket.RSocketStrategies;
+import org.springframework.messaging.rsocket.annotation.support.RSocketMessageHandler;
+import org.springframework.security.rsocket.metadata.SimpleAuthenticationEncoder;
+import org.springframework.security.rsocket.metadata.UsernamePasswordMetadata;
+import org.springframework.util.MimeTypeUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A large body sent in chunks, with fragmentation on both sides, does not hold up the small
+ * requests multiplexed on the same connection.
+ */
+@SpringBootTest(properties = {"spring.rsocket.server.port=0", "rsocket.fragmentation.mtu=16KB"})
+public class RSocketLargePayloadITest {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int CHUNKS = 1024;
+    // the byte at offset n of the body is (byte) n; one chunk plus any starting offset within 256
+    private static final byte[] PATTERN = new byte[CHUNK_SIZE + 256];
+
+    static {
+        for (int i = 0; i < PATTERN.length; i++) {
+            PATTERN[i] = (byte) i;
+        }
+    }
+
+    private static RSocketRequester requester;
+    private static DataBufferFactory bufferFactory;
+
+    @BeforeAll
+    public static void setupOnce(@LocalRSocketServerPort Integer port, @Autowired RSocketStrategies strategies) {
+        SocketAcceptor responder = RSocketMessageHandler.responder(strategies, new ClientHandler());
+        bufferFactory = strategies.dataBufferFactory();
+        requester = RSocketRequester.builder()
+                .rsocketStrategies(strategies.mutate().encoder(new SimpleAuthenticationEncoder()).build())
+                .setupRoute("shell-client")
+                .setupData(UUID.randomUUID().toString())
+                .setupMetadata(new UsernamePasswordMetadata("user", "pass"),
+                        MimeTypeUtils.parseMimeType(WellKnownMimeType.MESSAGE_RSOCKET_AUTHENTICATION.getString()))
+                .rsocketConnector(connector -> connector.acceptor(responder).fragment(16 * 1024))
+                .connectTcp("localhost", port)
+                .block();
+    }
+
+    @AfterAll
+    public static void tearDownOnce() {
+        requester.rsocket().dispose();
+    }
+
+    @Test
+    public void testUploadedBodyDownloadsTheSame() {
+        BodyReceipt receipt = upload(64).block(Duration.ofSeconds(30));
+        assertThat(receipt.getSize()).isEqualTo(64L * CHUNK_SIZE);
+
+        long[] read = new long[2];
+        requester.route("download").data(receipt.getId())
+                .retrieveFlux(DataBuffer.class)
+                .doOnNext(chunk -> {
+                    try {
+                        while (chunk.readableByteCount() > 0) {
+                            byte[] bytes = new byte[Math.min(chunk.readableByteCount(), CHUNK_SIZE)];
+                            chunk.read(bytes);
+                            int offset = (int) (read[0] % 256);
+                            if (!ByteBuffer.wrap(bytes).equals(ByteBuffer.wrap(PATTERN, offset, bytes.length))) {
+                                read[1]++;
+                            }
+                            read[0] += bytes.length;
+                        }
+                    } finally {
+                        DataBufferUtils.release(chunk);
+                    }
+                })
+                .blockLast(Duration.ofSeconds(30));
+
+        assertThat(read[0]).isEqualTo(receipt.getSize());
+        assertThat(read[1]).as("chunks that differ").isZero();
+    }
+
+    @Test
+    public void testSmallRequestsAreNotHeldUpByALargeUpload() throws Exception {
+        CompletableFuture<BodyReceipt> upload = upload(CHUNKS).toFuture();
+        List<Long> latencies = new ArrayList<>();
+
+        while (!upload.isDone()) {
+            long start = System.nanoTime();
+            requester.route("request-response")
+                    .data(new Notification("Client", "Server", "small", "large-payload-test"))
+                    .retrieveMono(Notification.class)
+                    .block(Duration.ofSeconds(10));
+            if (!upload.isDone()) {
+                latencies.add(System.nanoTime() - start);
+            }
+        }
+
+        assertThat(upload.get(30, TimeUnit.SECONDS).getSize()).isEqualTo((long) CHUNKS * CHUNK_SIZE);
+        // requests took turns with the chunks, rather than waiting for the whole body
+        assertThat(latencies).isNotEmpty();
+        Collections.sort(latencies);
+        long p99 = latencies.get((int) (latencies.size() * 0.99));
+        assertThat(TimeUnit.NANOSECONDS.toMillis(p99)).isLessThan(250);
+    }
+
+    private static Mono<BodyReceipt> upload(int chunks) {
+        // the same bytes at the same offsets as the download check expects
+        Flux<DataBuffer> body = Flux.range(0, chunks)
+                .map(index -> bufferFactory.allocateBuffer(CHUNK_SIZE).write(PATTERN, 0, CHUNK_SIZE));
+        return requester.route("upload.Server")
+                .data(body, DataBuffer.class)
+                .retrieveFlux(BodyReceipt.class)
+                .next();
+    }
+
+    static class ClientHandler {
+
+        @MessageMapping("client-status")
+        public Flux<String> statusUpdate(String status) {
+            return Flux.never();
+        }
+    }
+}
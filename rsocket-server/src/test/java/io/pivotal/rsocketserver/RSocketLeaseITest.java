@@ -0,0 +1,197 @@
+package io.pivotal.rsocketserver;
+
+import io.netty.util.ResourceLeakDetector;
+import io.pivotal.rsocketcommon.data.Notification;
+import io.rsocket.SocketAcceptor;
+import io.rsocket.exceptions.RejectedException;
+import io.rsocket.lease.Lease;
+import io.rsocket.lease.Leases;
+import io.rsocket.metadata.WellKnownMimeType;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.rsocket.context.LocalRSocketServerPort;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.messaging.rsocket.RSocketStrategies;
+import org.springframework.messaging.rsocket.annotation.support.RSocketMessageHandler;
+import org.springframework.security.rsocket.metadata.SimpleAuthenticationEncoder;
+import org.springframework.security.rsocket.metadata.UsernamePasswordMetadata;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.util.MimeTypeUtils;
+import reactor.core.publisher.DirectProcessor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Overload a lease-enabled server with far more requests than its budget of
+ * {@value #MAX_REQUESTS} per {@value #TIME_TO_LIVE_MILLIS} ms and check that it admits no more
+ * than the budget, that the client is told about the others, and that the admitted requests
+ * do not queue up: their p99 latency stays within a bound. Also check that every lease is
+ * renewed before it expires.
+ * <p>
+ * Client and server share the machine, so the budget is kept well under what a single core
+ * serves, and a throttled request waits for the next lease instead of retrying at once: the
+ * bound is about the server's queue, not about a client burning the CPU on rejected requests.
+ * For the same reason the test runs with simple rather than paranoid leak detection.
+ */
+@SpringBootTest(properties = {
+        "spring.rsocket.server.port=0",
+        "rsocket.lease.time-to-live=" + RSocketLeaseITest.TIME_TO_LIVE_MILLIS + "ms",
+        "rsocket.lease.max-requests=" + RSocketLeaseITest.MAX_REQUESTS,
+        "rsocket.ticker.tick-duration=10ms"})
+@ActiveProfiles("lease")
+public class RSocketLeaseITest {
+
+    static final int TIME_TO_LIVE_MILLIS = 200;
+    static final int MAX_REQUESTS = 30;
+
+    private static final Duration LOAD = Duration.ofSeconds(5);
+    private static final int WARM_UP_REQUESTS = 500;
+    private static final int CONCURRENCY = 32;
+    private static final long P99_BOUND_MILLIS = 250;
+
+    private static final AtomicReference<Lease> lastLease = new AtomicReference<>();
+    private static final Queue<Long> leaseTimes = new ConcurrentLinkedQueue<>();
+    private static final DirectProcessor<Lease> renewals = DirectProcessor.create();
+    private static final FluxSink<Lease> renewalSink = renewals.sink();
+    private static RSocketRequester requester;
+    private static ResourceLeakDetector.Level leakDetection;
+
+    @BeforeAll
+    public static void setupOnce(@Autowired RSocketRequester.Builder builder,
+                                 @LocalRSocketServerPort Integer port,
+                                 @Autowired RSocketStrategies strategies) {
+
+        // paranoid leak detection records a stack trace on every buffer access, which is not the
+        // latency under test; leaks are still sampled
+        leakDetection = ResourceLeakDetector.getLevel();
+        if (leakDetection.ordinal() > ResourceLeakDetector.Level.SIMPLE.ordinal()) {
+            ResourceLeakDetector.setLevel(ResourceLeakDetector.Level.SIMPLE);
+        }
+        SocketAcceptor responder = RSocketMessageHandler.responder(strategies, new ClientHandler());
+        requester = builder
+                .setupRoute("shell-client")
+                .setupData(UUID.randomUUID().toString())
+                .setupMetadata(new UsernamePasswordMetadata("user", "pass"),
+                        MimeTypeUtils.parseMimeType(WellKnownMimeType.MESSAGE_RSOCKET_AUTHENTICATION.getString()))
+                .rsocketStrategies(b -> b.encoder(new SimpleAuthenticationEncoder()))
+                .rsocketConnector(connector -> connector
+                        .acceptor(responder)
+                        .lease(() -> Leases.create()
+                                // the server may call back as much as it likes
+                                .sender(stats -> Flux.interval(Duration.ZERO, Duration.ofSeconds(5))
+                                        .map(tick -> Lease.create(10_000, Integer.MAX_VALUE)))
+                                .receiver(leases -> leases.subscribe(lease -> {
+                                    lastLease.set(lease);
+                                    leaseTimes.add(System.nanoTime());
+                                    renewalSink.next(lease);
+                                }))))
+                .connectTcp("localhost", port)
+                .block();
+    }
+
+    @Test
+    public void testAdmittedRequestsStayWithinBudgetAndLatencyBound() throws InterruptedException {
+        awaitLease();
+        // so that the latency measured is not that of the first, interpreted, requests
+        Flux.range(0, WARM_UP_REQUESTS)
+                .concatMap(i -> request("warm-up " + i).onErrorResume(RejectedException.class, e -> nextLease()))
+                .blockLast(LOAD.plusSeconds(10));
+
+        Histogram admitted = new Histogram(TimeUnit.MINUTES.toNanos(1), 3);
+        AtomicLong throttled = new AtomicLong();
+
+        long start = System.nanoTime();
+        Flux.range(0, Integer.MAX_VALUE)
+                .flatMap(i -> Mono.defer(() -> {
+                    long sent = System.nanoTime();
+                    return request("overload " + i)
+                            .doOnNext(response -> {
+                                synchronized (admitted) {
+                                    admitted.recordValue(System.nanoTime() - sent);
+                                }
+                            })
+                            // a throttled client waits for its next lease: the client's own lease check
+                            // refuses with a MissingLeaseException, the server's with a RejectedException
+                            .onErrorResume(RejectedException.class, e -> {
+                                throttled.incrementAndGet();
+                                return nextLease();
+                            });
+                }), CONCURRENCY)
+                .take(LOAD)
+                .blockLast(LOAD.plusSeconds(10));
+        long periods = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) / TIME_TO_LIVE_MILLIS;
+
+        assertThat(throttled.get()).isPositive();
+        assertThat(admitted.getTotalCount()).isPositive()
+                // the first lease is given at connection, then one per period
+                .isLessThanOrEqualTo((periods + 2) * MAX_REQUESTS);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(admitted.getValueAtPercentile(99))).isLessThan(P99_BOUND_MILLIS);
+    }
+
+    @Test
+    public void testLeaseIsRenewedBeforeItExpires() throws InterruptedException {
+        awaitLease();
+        // without load, so no lease is withheld
+        leaseTimes.clear();
+        Thread.sleep(10 * TIME_TO_LIVE_MILLIS);
+
+        assertThat(lastLease.get().getTimeToLiveMillis()).isEqualTo(TIME_TO_LIVE_MILLIS);
+        Long previous = null;
+        for (Long time : leaseTimes) {
+            if (previous != null) {
+                // a gap as long as the time to live would leave the client without a lease
+                assertThat(TimeUnit.NANOSECONDS.toMillis(time - previous)).isLessThan(TIME_TO_LIVE_MILLIS);
+            }
+            previous = time;
+        }
+    }
+
+    private static Mono<Notification> request(String body) {
+        return requester.route("request-response")
+                .data(new Notification("Client", "Server", body, "test"))
+                .retrieveMono(Notification.class);
+    }
+
+    private static Mono<Notification> nextLease() {
+        return renewals.next().then(Mono.empty());
+    }
+
+    private static void awaitLease() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (lastLease.get() == null) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(10);
+        }
+        assertThat(lastLease.get().getStartingAllowedRequests()).isPositive();
+    }
+
+    @AfterAll
+    public static void tearDownOnce() {
+        requester.rsocket().dispose();
+        ResourceLeakDetector.setLevel(leakDetection);
+    }
+
+    static class ClientHandler {
+
+        @MessageMapping("client-status")
+        public Flux<String> statusUpdate(String status) {
+            return Flux.interval(Duration.ofSeconds(5)).map(index -> String.valueOf(Runtime.getRuntime().freeMemory()));
+        }
+    }
+}
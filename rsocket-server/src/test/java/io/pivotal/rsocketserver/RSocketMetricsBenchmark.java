@@ -0,0 +1,50 @@
+package io.pivotal.rsocketserver;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link RSocketMetrics.Route#timed(Mono)} around a trivial exchange, with metrics on
+ * and off, from several threads sharing one route. The end-to-end overhead against a running
+ * server is measured by MetricsOverheadBenchmark in rsocket-benchmarks.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class RSocketMetricsBenchmark {
+
+    @Param({"true", "false"})
+    boolean enabled;
+
+    private RSocketMetrics.Route route;
+    private final Mono<String> exchange = Mono.just("response");
+
+    @Setup
+    public void setup() {
+        route = new RSocketMetrics(new SimpleMeterRegistry(), new ClientRegistry(), enabled).route("request-response");
+    }
+
+    @Benchmark
+    public void timedExchange(Blackhole blackhole) {
+        route.timed(exchange).subscribe(blackhole::consume);
+    }
+}
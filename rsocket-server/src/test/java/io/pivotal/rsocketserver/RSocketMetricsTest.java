@@ -0,0 +1,49 @@
+package io.pivotal.rsocketserver;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RSocketMetricsTest {
+
+    @Test
+    public void testRouteCountsRequestsErrorsAndCancellations() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        RSocketMetrics.Route route = new RSocketMetrics(registry, new ClientRegistry(), true).route("test");
+
+        StepVerifier.create(route.timed(Mono.just("ok"))).expectNext("ok").verifyComplete();
+        StepVerifier.create(route.timed(Mono.error(new IllegalStateException()))).verifyError();
+        StepVerifier.create(route.timed(Flux.never())).then(() -> assertThat(route.inFlight()).isEqualTo(1)).thenCancel().verify();
+
+        assertThat(registry.get("rsocket.route.requests").tag("route", "test").counter().count()).isEqualTo(3);
+        assertThat(registry.get("rsocket.route.errors").tag("route", "test").counter().count()).isEqualTo(1);
+        assertThat(registry.get("rsocket.route.cancellations").tag("route", "test").counter().count()).isEqualTo(1);
+        assertThat(registry.get("rsocket.route.latency").tag("route", "test").timer().count()).isEqualTo(3);
+        assertThat(route.inFlight()).isZero();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSnapshotListsRoutes() {
+        RSocketMetrics metrics = new RSocketMetrics(new SimpleMeterRegistry(), new ClientRegistry(), true);
+        metrics.route("stream").timed(Mono.empty()).block();
+
+        Map<String, Object> routes = (Map<String, Object>) metrics.snapshot().get("routes");
+        assertThat(routes).containsKey("stream");
+        assertThat((Map<String, Object>) routes.get("stream")).containsEntry("requests", 1L);
+    }
+
+    @Test
+    public void testDisabledRouteReturnsPublisherUntouched() {
+        RSocketMetrics.Route route = new RSocketMetrics(new SimpleMeterRegistry(), new ClientRegistry(), false).route("test");
+        Mono<String> exchange = Mono.just("ok");
+
+        assertThat(route.timed(exchange)).isSameAs(exchange);
+    }
+}
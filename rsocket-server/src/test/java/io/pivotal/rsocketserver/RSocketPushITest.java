@@ -0,0 +1,153 @@
+package io.pivotal.rsocketserver;
+
+import io.pivotal.rsocketcommon.data.Notification;
+import io.rsocket.SocketAcceptor;
+import io.rsocket.exceptions.RejectedException;
+import io.rsocket.metadata.WellKnownMimeType;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.rsocket.context.LocalRSocketServerPort;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.messaging.rsocket.RSocketStrategies;
+import org.springframework.messaging.rsocket.annotation.support.RSocketMessageHandler;
+import org.springframework.security.rsocket.metadata.SimpleAuthenticationEncoder;
+import org.springframework.security.rsocket.metadata.UsernamePasswordMetadata;
+import org.springframework.util.MimeTypeUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Push notifications from the server to one client by id: through the 'push' route of another
+ * client, acknowledged, pipelined through the {@link PushDispatcher}, in order, and for a
+ * notification addressed to a connected client that is not streaming.
+ */
+@SpringBootTest
+public class RSocketPushITest {
+
+    private static final int PUSHES = 1_000;
+
+    private static final ClientHandler sender = new ClientHandler();
+    private static final ClientHandler receiver = new ClientHandler();
+    private static final String receiverId = "receiver-" + UUID.randomUUID();
+    private static RSocketRequester senderRequester;
+    private static RSocketRequester receiverRequester;
+
+    @BeforeAll
+    public static void setupOnce(@Autowired RSocketRequester.Builder builder,
+                                 @LocalRSocketServerPort Integer port,
+                                 @Autowired RSocketStrategies strategies,
+                                 @Autowired ClientRegistry clients) throws InterruptedException {
+        senderRequester = connect(builder, port, strategies, "sender-" + UUID.randomUUID(), sender);
+        receiverRequester = connect(builder, port, strategies, receiverId, receiver);
+        // the server registers a client once it handled its setup
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (clients.get(receiverId) == null) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static RSocketRequester connect(RSocketRequester.Builder builder, int port, RSocketStrategies strategies,
+                                            String clientId, ClientHandler handler) {
+        SocketAcceptor responder = RSocketMessageHandler.responder(strategies, handler);
+        return builder
+                .setupRoute("shell-client")
+                .setupData(clientId)
+                .setupMetadata(new UsernamePasswordMetadata("user", "pass"),
+                        MimeTypeUtils.parseMimeType(WellKnownMimeType.MESSAGE_RSOCKET_AUTHENTICATION.getString()))
+                .rsocketStrategies(b -> b.encoder(new SimpleAuthenticationEncoder()))
+                .rsocketConnector(connector -> connector.acceptor(responder))
+                .connectTcp("localhost", port)
+                .block();
+    }
+
+    @Test
+    public void testPushRouteReachesClientAndIsAcknowledged() {
+        receiver.pushed.clear();
+        Mono<Void> result = senderRequester.route("push")
+                .data(new Notification("Client", receiverId, "pushed", "sender"))
+                .retrieveMono(Void.class);
+
+        StepVerifier.create(result).verifyComplete();
+        // acknowledged, so already handled by the receiver
+        assertThat(receiver.pushed).extracting(Notification::getText).containsExactly("pushed");
+        assertThat(sender.pushed).isEmpty();
+    }
+
+    @Test
+    public void testNotificationForConnectedClientWithoutStreamIsPushed(@Autowired StoreAndForwardQueue storeAndForward)
+            throws InterruptedException {
+        receiver.pushed.clear();
+        senderRequester.route("fire-and-forget")
+                .data(new Notification("Client", receiverId, "addressed", "sender"))
+                .send()
+                .block(Duration.ofSeconds(5));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (receiver.pushed.isEmpty()) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(10);
+        }
+        assertThat(receiver.pushed).extracting(Notification::getText).containsExactly("addressed");
+        assertThat(storeAndForward.pending(receiverId)).isZero();
+    }
+
+    @Test
+    public void testPushToUnknownClientIsRejected() {
+        Mono<Void> result = senderRequester.route("push")
+                .data(new Notification("Client", "nobody-" + UUID.randomUUID(), "pushed", "sender"))
+                .retrieveMono(Void.class);
+
+        StepVerifier.create(result)
+                .expectError(RejectedException.class)
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    public void testPipelinedPushesArriveInOrder(@Autowired PushDispatcher dispatcher) {
+        receiver.pushed.clear();
+        Flux.range(0, PUSHES)
+                .flatMap(i -> dispatcher.push(receiverId, new Notification("Server", receiverId, "n" + i, "server"), true), 256)
+                .blockLast(Duration.ofSeconds(30));
+
+        assertThat(receiver.pushed).hasSize(PUSHES);
+        for (int i = 0; i < PUSHES; i++) {
+            assertThat(receiver.pushed.get(i).getText()).isEqualTo("n" + i);
+        }
+    }
+
+    @AfterAll
+    public static void tearDownOnce() {
+        senderRequester.rsocket().dispose();
+        receiverRequester.rsocket().dispose();
+    }
+
+    static class ClientHandler {
+
+        final List<Notification> pushed = new CopyOnWriteArrayList<>();
+
+        @MessageMapping("client-status")
+        public Flux<String> statusUpdate(String status) {
+            return Flux.never();
+        }
+
+        @MessageMapping("client-notification")
+        public Mono<Void> pushed(Notification notification) {
+            pushed.add(notification);
+            return Mono.empty();
+        }
+    }
+}
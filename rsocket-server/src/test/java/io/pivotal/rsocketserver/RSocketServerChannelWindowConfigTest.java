@@ -0,0 +1,61 @@
+package io.pivotal.rsocketserver;
+
+import io.rsocket.Payload;
+import io.rsocket.util.DefaultPayload;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.UnicastProcessor;
+import reactor.test.StepVerifier;
+import reactor.test.publisher.TestPublisher;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RSocketServerChannelWindowConfigTest {
+
+    @Test
+    public void testAsksForNoMoreThanTheWindowAheadOfReleases() {
+        // like the inbound payloads of a channel, queued until asked for
+        UnicastProcessor<Payload> client = UnicastProcessor.create();
+        for (int i = 0; i < 5; i++) {
+            client.onNext(DefaultPayload.create("chunk " + i));
+        }
+        List<Payload> received = new ArrayList<>();
+
+        StepVerifier.create(new RSocketServerChannelWindowConfig.PayloadWindow(client, 2), 256)
+                .recordWith(() -> received)
+                .expectNextCount(2)
+                .expectNoEvent(Duration.ofMillis(50))
+                .then(() -> received.get(0).release())
+                .expectNextCount(1)
+                .expectNoEvent(Duration.ofMillis(50))
+                .then(() -> {
+                    // releasing twice gives the place back once
+                    received.get(0).release();
+                    received.get(1).release();
+                    received.get(2).release();
+                })
+                .expectNextCount(2)
+                .then(client::onComplete)
+                .verifyComplete();
+
+        assertThat(received).extracting(Payload::getDataUtf8)
+                .containsExactly("chunk 0", "chunk 1", "chunk 2", "chunk 3", "chunk 4");
+    }
+
+    @Test
+    public void testAsksForNoMoreThanRequested() {
+        TestPublisher<Payload> client = TestPublisher.create();
+
+        StepVerifier.create(new RSocketServerChannelWindowConfig.PayloadWindow(client, 16), 1)
+                .then(() -> client.assertMinRequested(1).assertMaxRequested(1))
+                .then(() -> client.next(DefaultPayload.create("chunk")))
+                .consumeNextWith(Payload::release)
+                .thenCancel()
+                .verify(Duration.ofSeconds(1));
+
+        client.assertCancelled();
+    }
+}
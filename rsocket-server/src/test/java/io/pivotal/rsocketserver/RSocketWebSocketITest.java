@@ -0,0 +1,98 @@
+package io.pivotal.rsocketserver;
+
+import io.pivotal.rsocketcommon.data.Notification;
+import io.rsocket.SocketAcceptor;
+import io.rsocket.metadata.WellKnownMimeType;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.rsocket.context.LocalRSocketServerPort;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.messaging.rsocket.RSocketStrategies;
+import org.springframework.messaging.rsocket.annotation.support.RSocketMessageHandler;
+import org.springframework.security.rsocket.metadata.SimpleAuthenticationEncoder;
+import org.springframework.security.rsocket.metadata.UsernamePasswordMetadata;
+import org.springframework.util.MimeTypeUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.net.URI;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * With the WebSocket transport on, the same routes answer over WebSocket and over TCP, and the
+ * same security applies to both.
+ */
+@SpringBootTest(properties = {"spring.rsocket.server.port=0", "rsocket.websocket.enabled=true", "rsocket.websocket.port=0"})
+public class RSocketWebSocketITest {
+
+    @Autowired
+    private RSocketStrategies strategies;
+
+    @Autowired
+    private RSocketWebSocketServer webSocketServer;
+
+    @LocalRSocketServerPort
+    private Integer tcpPort;
+
+    @Test
+    public void testRequestResponseOverWebSocketAndTcp() {
+        RSocketRequester overWebSocket = connect("user").connectWebSocket(webSocketUri()).block();
+        RSocketRequester overTcp = connect("user").connectTcp("localhost", tcpPort).block();
+        try {
+            for (RSocketRequester requester : new RSocketRequester[] {overWebSocket, overTcp}) {
+                Mono<Notification> result = requester.route("request-response")
+                        .data(new Notification("Client", "Server", "hello", "websocket-test"))
+                        .retrieveMono(Notification.class);
+
+                StepVerifier.create(result)
+                        .consumeNextWith(response -> assertThat(response.getText()).isEqualTo("In response to: hello"))
+                        .verifyComplete();
+            }
+        } finally {
+            overWebSocket.rsocket().dispose();
+            overTcp.rsocket().dispose();
+        }
+    }
+
+    @Test
+    public void testUnknownUserIsDeniedOverWebSocket() {
+        RSocketRequester requester = connect("fake").connectWebSocket(webSocketUri()).block();
+        try {
+            Mono<Void> result = requester.route("fire-and-forget")
+                    .data(new Notification("Client", "Server", "hello", "websocket-test"))
+                    .retrieveMono(Void.class);
+
+            StepVerifier.create(result).verifyErrorMessage("Invalid Credentials");
+        } finally {
+            requester.rsocket().dispose();
+        }
+    }
+
+    private URI webSocketUri() {
+        return URI.create("ws://localhost:" + webSocketServer.getPort() + webSocketServer.getPath());
+    }
+
+    private RSocketRequester.Builder connect(String username) {
+        SocketAcceptor responder = RSocketMessageHandler.responder(strategies, new ClientHandler());
+        return RSocketRequester.builder()
+                .rsocketStrategies(strategies.mutate().encoder(new SimpleAuthenticationEncoder()).build())
+                .setupRoute("shell-client")
+                .setupData(UUID.randomUUID().toString())
+                .setupMetadata(new UsernamePasswordMetadata(username, "pass"),
+                        MimeTypeUtils.parseMimeType(WellKnownMimeType.MESSAGE_RSOCKET_AUTHENTICATION.getString()))
+                .rsocketConnector(connector -> connector.acceptor(responder));
+    }
+
+    static class ClientHandler {
+
+        @MessageMapping("client-status")
+        public Flux<String> statusUpdate(String status) {
+            return Flux.never();
+        }
+    }
+}
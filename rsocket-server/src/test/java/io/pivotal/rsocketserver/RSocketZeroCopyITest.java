@@ -0,0 +1,114 @@
+package io.pivotal.rsocketserver;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.pivotal.rsocketcommon.codec.NotificationCodec;
+import io.pivotal.rsocketcommon.data.Notification;
+import io.rsocket.SocketAcceptor;
+import io.rsocket.metadata.WellKnownMimeType;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.rsocket.context.LocalRSocketServerPort;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.messaging.rsocket.RSocketStrategies;
+import org.springframework.messaging.rsocket.annotation.support.RSocketMessageHandler;
+import org.springframework.security.rsocket.metadata.SimpleAuthenticationEncoder;
+import org.springframework.security.rsocket.metadata.UsernamePasswordMetadata;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Exercise the zero-copy server with binary and JSON payloads and check that Netty's leak
+ * detector, running in paranoid mode with {@link RecordingLeakDetector}, reports nothing. The
+ * detector counts the leaks of every test of the JVM, so those of earlier tests are reported
+ * first and only the ones reported after are held against this one.
+ */
+@SpringBootTest(properties = "spring.rsocket.server.port=0")
+@ActiveProfiles("zero-copy")
+public class RSocketZeroCopyITest {
+
+    private static RSocketRequester binaryRequester;
+    private static RSocketRequester jsonRequester;
+    private static int earlierLeaks;
+
+    @BeforeAll
+    public static void setupOnce(@Autowired RSocketRequester.Builder builder,
+                                 @LocalRSocketServerPort Integer port,
+                                 @Autowired RSocketStrategies strategies) {
+
+        earlierLeaks = reportLeaks();
+        SocketAcceptor responder = RSocketMessageHandler.responder(strategies, new ClientHandler());
+        binaryRequester = connect(builder, NotificationCodec.MIME_TYPE, port, responder);
+        jsonRequester = connect(builder, MimeTypeUtils.APPLICATION_JSON, port, responder);
+    }
+
+    private static RSocketRequester connect(RSocketRequester.Builder builder, MimeType dataMimeType, int port,
+                                            SocketAcceptor responder) {
+        return builder
+                .dataMimeType(dataMimeType)
+                .setupRoute("shell-client")
+                .setupData(UUID.randomUUID().toString())
+                .setupMetadata(new UsernamePasswordMetadata("user", "pass"),
+                        MimeTypeUtils.parseMimeType(WellKnownMimeType.MESSAGE_RSOCKET_AUTHENTICATION.getString()))
+                .rsocketStrategies(b -> b.encoder(new SimpleAuthenticationEncoder()))
+                .rsocketConnector(connector -> connector.acceptor(responder))
+                .connectTcp("localhost", port)
+                .block();
+    }
+
+    @Test
+    public void testZeroCopyDecodingDoesNotLeak() {
+        for (RSocketRequester requester : new RSocketRequester[]{binaryRequester, jsonRequester}) {
+            Long responses = Flux.range(0, 2_000)
+                    .flatMap(i -> requester
+                            .route("request-response")
+                            .data(new Notification("Client", "Server", "zero-copy " + i, "test"))
+                            .retrieveMono(Notification.class), 64)
+                    .doOnNext(response -> assertThat(response.getText()).startsWith("In response to: zero-copy"))
+                    .count()
+                    .block(Duration.ofSeconds(30));
+            assertThat(responses).isEqualTo(2_000L);
+        }
+
+        assertThat(reportLeaks() - earlierLeaks).isZero();
+    }
+
+    /**
+     * Leaks are reported when tracked buffers are collected and further buffers are allocated.
+     *
+     * @return the number of leaks reported so far
+     */
+    private static int reportLeaks() {
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            ByteBuf probe = PooledByteBufAllocator.DEFAULT.buffer(64);
+            probe.release();
+        }
+        return RecordingLeakDetector.leaks();
+    }
+
+    @AfterAll
+    public static void tearDownOnce() {
+        binaryRequester.rsocket().dispose();
+        jsonRequester.rsocket().dispose();
+    }
+
+    static class ClientHandler {
+
+        @MessageMapping("client-status")
+        public Flux<String> statusUpdate(String status) {
+            return Flux.never();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package io.pivotal.rsocketserver;
+
+import io.netty.util.ResourceLeakDetector;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Netty leak detector that counts reported leaks so tests can assert on them.
+ * Installed through {@code -Dio.netty.customResourceLeakDetector} in the build.
+ */
+public class RecordingLeakDetector<T> extends ResourceLeakDetector<T> {
+
+    private static final AtomicInteger LEAKS = new AtomicInteger();
+
+    public RecordingLeakDetector(Class<?> resourceType, int samplingInterval) {
+        super(resourceType, samplingInterval);
+    }
+
+    /**
+     * Looked up by Netty's leak detector factory next to the two argument constructor; without
+     * it the factory logs that the custom detector could not be loaded.
+     */
+    @Deprecated
+    public RecordingLeakDetector(Class<?> resourceType, int samplingInterval, long maxActive) {
+        this(resourceType, samplingInterval);
+    }
+
+    public static int leaks() {
+        return LEAKS.get();
+    }
+
+    @Override
+    protected void reportTracedLeak(String resourceType, String records) {
+        LEAKS.incrementAndGet();
+        super.reportTracedLeak(resourceType, records);
+    }
+
+    @Override
+    protected void reportUntracedLeak(String resourceType) {
+        LEAKS.incrementAndGet();
+        super.reportUntracedLeak(resourceType);
+    }
+}
@@ -0,0 +1,95 @@
+package io.pivotal.rsocketserver;
+
+import io.pivotal.rsocketcommon.data.Notification;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Mono;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write and forward rates of {@link StoreAndForwardQueue}, in notifications per second.
+ * <ul>
+ * <li>store: notifications stored for one offline client, each waited for</li>
+ * <li>forward: {@value #MAILBOX} notifications stored, then forwarded in batches to a client that
+ * acknowledges at once; the time per notification less that of store is the time to forward it</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StoreAndForwardBenchmark {
+
+    static final int MAILBOX = 10_000;
+
+    @Param({"64", "1024"})
+    int textLength;
+
+    @Param({"16", "256"})
+    int batchSize;
+
+    private File directory;
+    private StoreAndForwardQueue queue;
+    private Notification notification;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("store-and-forward").toFile();
+        queue = new StoreAndForwardQueue(directory.getPath(), DataSize.ofMegabytes(16), DataSize.ofGigabytes(1),
+                DataSize.ofGigabytes(4), Duration.ofHours(1), batchSize, MAILBOX, Duration.ofSeconds(1));
+        StringBuilder text = new StringBuilder(textLength);
+        while (text.length() < textLength) {
+            text.append('x');
+        }
+        notification = new Notification("Client", "offline", text.toString(), "benchmark");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        queue.destroy();
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @TearDown(Level.Iteration)
+    public void drain() {
+        // keeps the mailbox of the store benchmark within its size
+        queue.forward("offline", batch -> Mono.empty()).block();
+    }
+
+    @Benchmark
+    public Boolean store() {
+        return queue.store(notification).block();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MAILBOX)
+    public Long forward() {
+        Notification forwarded = new Notification("Client", "forwarded", notification.getText(), "benchmark");
+        for (int i = 0; i < MAILBOX; i++) {
+            queue.store(forwarded).subscribe();
+        }
+        // comes after the stores
+        return queue.forward("forwarded", batch -> Mono.empty()).block();
+    }
+}
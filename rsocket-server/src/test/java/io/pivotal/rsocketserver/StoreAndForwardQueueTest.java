@@ -0,0 +1,117 @@
+package io.pivotal.rsocketserver;
+
+import io.pivotal.rsocketcommon.data.Notification;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Mono;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StoreAndForwardQueueTest {
+
+    @TempDir
+    File directory;
+
+    @Test
+    public void testForwardsInOrderInBatches() {
+        StoreAndForwardQueue queue = queue(Duration.ofHours(1));
+        for (int i = 0; i < 40; i++) {
+            queue.store(notification("offline", i)).block();
+        }
+        List<List<Notification>> batches = new ArrayList<>();
+
+        Long forwarded = queue.forward("offline", batch -> Mono.fromRunnable(() -> batches.add(batch))).block();
+
+        assertThat(forwarded).isEqualTo(40);
+        assertThat(batches).extracting(List::size).containsExactly(16, 16, 8);
+        List<String> texts = new ArrayList<>();
+        batches.forEach(batch -> batch.forEach(notification -> texts.add(notification.getText())));
+        for (int i = 0; i < 40; i++) {
+            assertThat(texts.get(i)).isEqualTo("notification " + i);
+        }
+        assertThat(queue.pending("offline")).isZero();
+        assertThat(queue.forward("offline", batch -> Mono.empty()).block()).isZero();
+        queue.destroy();
+    }
+
+    @Test
+    public void testNotificationsStoredWithoutWaitingAreForwardedInOrder() {
+        StoreAndForwardQueue queue = queue(Duration.ofHours(1));
+        for (int i = 0; i < 40; i++) {
+            queue.store(notification("offline", i)).subscribe();
+        }
+        List<Notification> received = new ArrayList<>();
+
+        // a forward comes after the notifications stored before it
+        Long forwarded = queue.forward("offline", batch -> Mono.fromRunnable(() -> received.addAll(batch))).block();
+
+        assertThat(forwarded).isEqualTo(40);
+        for (int i = 0; i < 40; i++) {
+            assertThat(received.get(i).getText()).isEqualTo("notification " + i);
+        }
+        queue.destroy();
+    }
+
+    @Test
+    public void testUnacknowledgedBatchIsForwardedOnNextConnect() {
+        StoreAndForwardQueue queue = queue(Duration.ofHours(1));
+        for (int i = 0; i < 20; i++) {
+            queue.store(notification("offline", i)).block();
+        }
+        List<Notification> received = new ArrayList<>();
+
+        // the connection is lost while the second batch is sent
+        queue.forward("offline", batch -> received.isEmpty()
+                ? Mono.fromRunnable(() -> received.addAll(batch))
+                : Mono.error(new IllegalStateException("connection lost")))
+                .onErrorResume(error -> Mono.empty())
+                .block();
+        assertThat(queue.pending("offline")).isEqualTo(4);
+
+        queue.forward("offline", batch -> Mono.fromRunnable(() -> received.addAll(batch))).block();
+        assertThat(received).extracting(Notification::getText).hasSize(20).doesNotHaveDuplicates();
+        queue.destroy();
+    }
+
+    @Test
+    public void testMailboxesSurviveRestart() {
+        StoreAndForwardQueue queue = queue(Duration.ofHours(1));
+        queue.store(notification("offline", 1)).block();
+        queue.destroy();
+
+        StoreAndForwardQueue restarted = queue(Duration.ofHours(1));
+        assertThat(restarted.pending("offline")).isEqualTo(1);
+        restarted.destroy();
+    }
+
+    @Test
+    public void testExpiredNotificationsAreSkippedAndCompacted() throws InterruptedException {
+        StoreAndForwardQueue queue = queue(Duration.ofMillis(50));
+        queue.store(notification("offline", 1)).block();
+        Thread.sleep(100);
+
+        assertThat(queue.forward("offline", batch -> Mono.error(new AssertionError("expired"))).block()).isZero();
+        queue.store(notification("offline", 2)).block();
+        Thread.sleep(100);
+        queue.compact();
+
+        assertThat(queue.pending("offline")).isZero();
+        assertThat(directory.listFiles()).isEmpty();
+        queue.destroy();
+    }
+
+    private StoreAndForwardQueue queue(Duration ttl) {
+        return new StoreAndForwardQueue(directory.getPath(), DataSize.ofKilobytes(4), DataSize.ofMegabytes(1),
+                DataSize.ofMegabytes(16), ttl, 16, 1024, Duration.ofHours(1));
+    }
+
+    private static Notification notification(String destination, int sequence) {
+        return new Notification("Client", destination, "notification " + sequence, "client-1");
+    }
+}
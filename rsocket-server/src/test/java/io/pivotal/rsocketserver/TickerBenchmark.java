@@ -0,0 +1,73 @@
+package io.pivotal.rsocketserver;
+
+import io.pivotal.rsocketcommon.Ticker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scheduler overhead of periodic emissions against the number of subscribers: every subscriber
+ * waits for {@value #TICKS} ticks of a {@value #PERIOD_MILLIS} ms period, either from its own
+ * {@code Flux.interval} on the parallel scheduler or from the shared {@link Ticker}. The ideal
+ * score is {@value #TICKS} x {@value #PERIOD_MILLIS} ms; whatever exceeds it is time spent
+ * scheduling. Run with {@code -prof gc} to compare the allocations as well.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TickerBenchmark {
+
+    static final int TICKS = 20;
+    static final int PERIOD_MILLIS = 10;
+
+    @Param({"interval", "ticker"})
+    String source;
+
+    @Param({"1000", "10000", "50000"})
+    int subscribers;
+
+    private Ticker ticker;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        ticker = new Ticker(Duration.ofMillis(1));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ticker.destroy();
+    }
+
+    @Benchmark
+    public void ticks() throws InterruptedException {
+        Duration period = Duration.ofMillis(PERIOD_MILLIS);
+        CountDownLatch done = new CountDownLatch(subscribers);
+        Disposable.Composite subscriptions = Disposables.composite();
+        for (int i = 0; i < subscribers; i++) {
+            Flux<Long> ticks = "ticker".equals(source) ? ticker.every(period) : Flux.interval(period);
+            subscriptions.add(ticks.take(TICKS).subscribe(tick -> { }, error -> { }, done::countDown));
+        }
+        done.await();
+        subscriptions.dispose();
+    }
+}
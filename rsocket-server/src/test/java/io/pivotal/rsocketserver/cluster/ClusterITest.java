@@ -0,0 +1,188 @@
+package io.pivotal.rsocketserver.cluster;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.pivotal.rsocketcommon.data.Notification;
+import io.pivotal.rsocketserver.RsocketServerApplication;
+import io.rsocket.SocketAcceptor;
+import io.rsocket.metadata.WellKnownMimeType;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.messaging.rsocket.RSocketStrategies;
+import org.springframework.messaging.rsocket.annotation.support.RSocketMessageHandler;
+import org.springframework.security.rsocket.metadata.SimpleAuthenticationEncoder;
+import org.springframework.security.rsocket.metadata.UsernamePasswordMetadata;
+import org.springframework.util.MimeTypeUtils;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Run cluster nodes in-process on localhost and check that a notification sent to one node
+ * reaches a client connected to another, in order, and that the directory follows clients
+ * leaving and nodes going down.
+ */
+public class ClusterITest {
+
+    private static final int NOTIFICATIONS = 200;
+
+    private static final int[] clusterPorts = new int[3];
+    private static String peers;
+    private static ConfigurableApplicationContext nodeA;
+    private static ConfigurableApplicationContext nodeB;
+
+    @BeforeAll
+    public static void setupOnce() throws IOException {
+        List<String> addresses = new ArrayList<>();
+        for (int i = 0; i < clusterPorts.length; i++) {
+            try (ServerSocket socket = new ServerSocket(0)) {
+                clusterPorts[i] = socket.getLocalPort();
+            }
+            addresses.add("localhost:" + clusterPorts[i]);
+        }
+        peers = String.join(",", addresses);
+        nodeA = startNode("node-a", clusterPorts[0]);
+        nodeB = startNode("node-b", clusterPorts[1]);
+        await(() -> cluster(nodeA).getPeers().contains("node-b") && cluster(nodeB).getPeers().contains("node-a"));
+    }
+
+    @Test
+    public void testNotificationReachesClientOnOtherNode() throws InterruptedException {
+        String clientId = "client-" + UUID.randomUUID();
+        RSocketRequester onB = connect(nodeB, clientId);
+        RSocketRequester onA = connect(nodeA, "client-" + UUID.randomUUID());
+        BlockingQueue<Notification> received = new LinkedBlockingQueue<>();
+        // the stream listens on the topic named by its request's source
+        Disposable stream = onB.route("stream")
+                .data(new Notification(clientId, "Server", "subscribe", clientId))
+                .retrieveFlux(Notification.class)
+                .subscribe(received::add);
+        try {
+            await(() -> "node-b".equals(cluster(nodeA).owner(clientId)));
+            // the stream is only listening once a notification comes through
+            Notification first;
+            do {
+                onA.route("fire-and-forget").data(new Notification("Client", clientId, "hello", "a")).send().block();
+                first = received.poll(100, TimeUnit.MILLISECONDS);
+            } while (first == null);
+            assertThat(first.getText()).isEqualTo("hello");
+            received.clear();
+
+            Flux.range(0, NOTIFICATIONS)
+                    .concatMap(i -> onA.route("fire-and-forget").data(new Notification("Client", clientId, "n" + i, "a")).send())
+                    .blockLast(Duration.ofSeconds(10));
+            for (int i = 0; i < NOTIFICATIONS; i++) {
+                Notification notification = received.poll(10, TimeUnit.SECONDS);
+                assertThat(notification).isNotNull();
+                assertThat(notification.getText()).isEqualTo("n" + i);
+            }
+            assertThat(nodeA.getBean(MeterRegistry.class).counter("rsocket.cluster.forwarded").count())
+                    .isGreaterThanOrEqualTo(NOTIFICATIONS);
+        } finally {
+            stream.dispose();
+            onA.rsocket().dispose();
+            onB.rsocket().dispose();
+        }
+        await(() -> cluster(nodeA).owner(clientId) == null);
+    }
+
+    @Test
+    public void testClientsOfLostNodeLeaveDirectory() {
+        ConfigurableApplicationContext nodeC = startNode("node-c", clusterPorts[2]);
+        String clientId = "client-" + UUID.randomUUID();
+        RSocketRequester onC = connect(nodeC, clientId);
+        try {
+            await(() -> "node-c".equals(cluster(nodeA).owner(clientId)) && "node-c".equals(cluster(nodeB).owner(clientId)));
+        } finally {
+            nodeC.close();
+            onC.rsocket().dispose();
+        }
+        await(() -> !cluster(nodeA).getPeers().contains("node-c") && !cluster(nodeB).getPeers().contains("node-c"));
+        assertThat(cluster(nodeA).owner(clientId)).isNull();
+        assertThat(cluster(nodeB).owner(clientId)).isNull();
+    }
+
+    @AfterAll
+    public static void tearDownOnce() {
+        nodeA.close();
+        nodeB.close();
+    }
+
+    private static ConfigurableApplicationContext startNode(String nodeId, int clusterPort) {
+        try {
+            return new SpringApplicationBuilder(RsocketServerApplication.class)
+                    .web(WebApplicationType.NONE)
+                    .profiles("cluster")
+                    // arguments rather than default properties, which application.properties overrides
+                    .run("--spring.rsocket.server.port=0",
+                            // one MBean server for all nodes of the JVM
+                            "--spring.jmx.enabled=false",
+                            "--notification.store-and-forward.directory=" + Files.createTempDirectory(nodeId),
+                            "--rsocket.cluster.node-id=" + nodeId,
+                            "--rsocket.cluster.port=" + clusterPort,
+                            "--rsocket.cluster.peers=" + peers,
+                            "--rsocket.cluster.reconnect.max-backoff=200ms");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static ClusterNode cluster(ConfigurableApplicationContext node) {
+        return node.getBean(ClusterNode.class);
+    }
+
+    private static RSocketRequester connect(ConfigurableApplicationContext node, String clientId) {
+        RSocketStrategies strategies = node.getBean(RSocketStrategies.class).mutate()
+                .encoder(new SimpleAuthenticationEncoder())
+                .build();
+        SocketAcceptor responder = RSocketMessageHandler.responder(strategies, new ClientHandler());
+        return RSocketRequester.builder()
+                .rsocketStrategies(strategies)
+                .setupRoute("shell-client")
+                .setupData(clientId)
+                .setupMetadata(new UsernamePasswordMetadata("user", "pass"),
+                        MimeTypeUtils.parseMimeType(WellKnownMimeType.MESSAGE_RSOCKET_AUTHENTICATION.getString()))
+                .rsocketConnector(connector -> connector.acceptor(responder))
+                .connectTcp("localhost", node.getEnvironment().getProperty("local.rsocket.server.port", Integer.class))
+                .block();
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    static class ClientHandler {
+
+        @MessageMapping("client-status")
+        public Flux<String> statusUpdate(String status) {
+            return Flux.never();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package io.pivotal.rsocketserver.cluster;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.pivotal.rsocketcommon.data.Notification;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ClusterProtocolTest {
+
+    private final ClusterDirectory directory = new ClusterDirectory();
+
+    @Test
+    public void testDirectoryJoinsAndLeaves() {
+        apply("node-a", ClusterProtocol.JOIN, "client-1", "client-2", "clïent-☃");
+        apply("node-b", ClusterProtocol.JOIN, "client-3");
+
+        assertThat(directory.size()).isEqualTo(4);
+        assertThat(directory.owner("client-1")).isEqualTo("node-a");
+        assertThat(directory.owner("clïent-☃")).isEqualTo("node-a");
+        assertThat(directory.owner("client-3")).isEqualTo("node-b");
+
+        apply("node-a", ClusterProtocol.LEAVE, "client-2");
+        assertThat(directory.owner("client-2")).isNull();
+        assertThat(directory.owner(null)).isNull();
+    }
+
+    @Test
+    public void testLeaveOfPreviousNodeKeepsClientThatMoved() {
+        apply("node-a", ClusterProtocol.JOIN, "client-1");
+        apply("node-b", ClusterProtocol.JOIN, "client-1");
+        apply("node-a", ClusterProtocol.LEAVE, "client-1");
+
+        assertThat(directory.owner("client-1")).isEqualTo("node-b");
+    }
+
+    @Test
+    public void testRemoveNodeRemovesOnlyItsClients() {
+        apply("node-a", ClusterProtocol.JOIN, "client-1", "client-2");
+        apply("node-b", ClusterProtocol.JOIN, "client-3");
+
+        assertThat(directory.removeNode("node-a")).isEqualTo(2);
+        assertThat(directory.size()).isEqualTo(1);
+        assertThat(directory.owner("client-3")).isEqualTo("node-b");
+    }
+
+    @Test
+    public void testNotificationBatchRoundTrip() {
+        List<Notification> batch = Arrays.asList(
+                new Notification("Client", "client-1", "first", "c"),
+                new Notification("Client", "client-2", "sécond", null),
+                new Notification(null, "client-1", "", "c"));
+
+        ByteBuf encoded = ClusterProtocol.notifications(PooledByteBufAllocator.DEFAULT, batch);
+        try {
+            List<Notification> decoded = ClusterProtocol.readNotifications(encoded);
+            assertThat(decoded).hasSize(3);
+            assertThat(decoded.get(0).getText()).isEqualTo("first");
+            assertThat(decoded.get(1).getText()).isEqualTo("sécond");
+            assertThat(decoded.get(1).getClientid()).isNull();
+            assertThat(decoded.get(2).getSource()).isNull();
+            assertThat(decoded.get(2).getDestination()).isEqualTo("client-1");
+        } finally {
+            encoded.release();
+        }
+    }
+
+    @Test
+    public void testTruncatedDirectoryFrameIsRejected() {
+        ByteBuf frame = ClusterProtocol.directory(PooledByteBufAllocator.DEFAULT, "node-a", ClusterProtocol.JOIN,
+                Collections.singletonList("client-1"));
+        frame.writerIndex(frame.writerIndex() - 2);
+        try {
+            assertThatThrownBy(() -> ClusterProtocol.readDirectory(frame, directory))
+                    .isInstanceOf(IllegalArgumentException.class);
+        } finally {
+            frame.release();
+        }
+    }
+
+    private void apply(String nodeId, byte op, String... clientIds) {
+        ByteBuf frame = ClusterProtocol.directory(PooledByteBufAllocator.DEFAULT, nodeId, op, Arrays.asList(clientIds));
+        try {
+            assertThat(ClusterProtocol.readDirectory(frame, directory)).isEqualTo(nodeId);
+        } finally {
+            frame.release();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package io.pivotal.rsocketserver.cluster;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.rsocket.Payload;
+import io.rsocket.RSocket;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PeerLinkTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ClusterDirectory directory = new ClusterDirectory();
+    // the peer's side: applies the directory updates in the order they are sent
+    private final RSocket peer = new RSocket() {
+        @Override
+        public Mono<Void> fireAndForget(Payload payload) {
+            try {
+                ClusterProtocol.readDirectory(payload.data(), directory);
+            } finally {
+                payload.release();
+            }
+            return Mono.empty();
+        }
+    };
+    private final PeerLink link = new PeerLink("node-b", peer, 16, 4, 1, batch -> { },
+            Counter.builder("forwarded").register(registry), Counter.builder("failed").register(registry),
+            DistributionSummary.builder("batches").register(registry));
+
+    @AfterEach
+    public void close() {
+        link.close();
+    }
+
+    @Test
+    public void testLeaveDuringSnapshotIsNotOvertakenByIt() {
+        // client-2 leaves after the snapshot saw it, but before its chunk is sent
+        link.sendDirectory("node-a", ClusterProtocol.LEAVE, Collections.singletonList("client-2"));
+        assertThat(directory.size()).isZero();
+
+        link.sendSnapshot("node-a", Arrays.asList("client-1", "client-2"));
+        link.snapshotSent();
+
+        assertThat(directory.owner("client-1")).isEqualTo("node-a");
+        assertThat(directory.owner("client-2")).isNull();
+    }
+
+    @Test
+    public void testUpdatesAfterSnapshotAreSentAtOnce() {
+        link.sendSnapshot("node-a", Collections.singletonList("client-1"));
+        link.snapshotSent();
+
+        link.sendDirectory("node-a", ClusterProtocol.JOIN, Collections.singletonList("client-2"));
+        assertThat(directory.owner("client-2")).isEqualTo("node-a");
+        link.sendDirectory("node-a", ClusterProtocol.LEAVE, Collections.singletonList("client-1"));
+        assertThat(directory.owner("client-1")).isNull();
+    }
+}
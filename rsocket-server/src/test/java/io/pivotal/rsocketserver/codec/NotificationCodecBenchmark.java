@@ -0,0 +1,126 @@
+package io.pivotal.rsocketserver.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.pivotal.rsocketcommon.codec.NotificationCodec;
+import io.pivotal.rsocketcommon.codec.NotificationDecoder;
+import io.pivotal.rsocketcommon.codec.NotificationEncoder;
+import io.pivotal.rsocketcommon.data.Notification;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Decoder;
+import org.springframework.core.codec.Encoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode and decode cost of the binary notification codec against the Jackson JSON codecs used
+ * by default. The encoded size of both formats is reported as the {@code encodedBytes} counter.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class NotificationCodecBenchmark {
+
+    private static final ResolvableType TYPE = ResolvableType.forClass(Notification.class);
+
+    @Param({"binary", "json"})
+    String format;
+
+    @Param({"32", "1024"})
+    int textLength;
+
+    private final NettyDataBufferFactory factory = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+    private Encoder<? super Notification> encoder;
+    private Decoder<?> decoder;
+    private MimeType mimeType;
+    private Notification notification;
+    private ByteBuf encoded;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        if ("binary".equals(format)) {
+            encoder = new NotificationEncoder();
+            decoder = new NotificationDecoder();
+            mimeType = NotificationCodec.MIME_TYPE;
+        } else {
+            encoder = new Jackson2JsonEncoder();
+            decoder = new Jackson2JsonDecoder();
+            mimeType = MimeTypeUtils.APPLICATION_JSON;
+        }
+        StringBuilder text = new StringBuilder(textLength);
+        while (text.length() < textLength) {
+            text.append("notification ");
+        }
+        notification = new Notification("Client", "Server", text.substring(0, textLength), UUID.randomUUID().toString());
+        encoded = ((NettyDataBuffer) encode()).getNativeBuffer();
+    }
+
+    /**
+     * The encoded size of the notification.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Sizes {
+
+        private ByteBuf encoded;
+
+        @Setup(Level.Iteration)
+        public void reset(NotificationCodecBenchmark benchmark) {
+            encoded = benchmark.encoded;
+        }
+
+        public long encodedBytes() {
+            return encoded.readableBytes();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        encoded.release();
+    }
+
+    @Benchmark
+    public int encodeNotification(Sizes sizes) {
+        DataBuffer buffer = encode();
+        int size = buffer.readableByteCount();
+        DataBufferUtils.release(buffer);
+        return size;
+    }
+
+    @Benchmark
+    public Notification decodeNotification(Sizes sizes) {
+        DataBuffer buffer = factory.wrap(encoded.retainedDuplicate());
+        return (Notification) decoder.decode(buffer, TYPE, mimeType, Collections.emptyMap());
+    }
+
+    private DataBuffer encode() {
+        return encoder.encodeValue(notification, factory, TYPE, mimeType, Collections.emptyMap());
+    }
+}
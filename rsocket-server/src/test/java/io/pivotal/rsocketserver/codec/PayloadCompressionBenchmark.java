@@ -0,0 +1,108 @@
+package io.pivotal.rsocketserver.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.pivotal.rsocketcommon.codec.PayloadCompression;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU cost of compressing and inflating payload data of several sizes, against the bytes it
+ * saves: the compressed size of every payload is reported as the {@code compressedBytes} counter.
+ * The text is made of words drawn at random from a small vocabulary, about as compressible as
+ * notification text.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PayloadCompressionBenchmark {
+
+    private static final String[] WORDS = {"client", "server", "notification", "stream", "channel", "request",
+            "response", "the", "a", "of", "to", "connected", "destination", "source", "sent", "received"};
+
+    @Param({"256", "1024", "16384", "262144"})
+    int size;
+
+    private ByteBuf data;
+    private ByteBuf compressed;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder(size);
+        while (text.length() < size) {
+            text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        data = PooledByteBufAllocator.DEFAULT.heapBuffer(size).writeBytes(text.substring(0, size).getBytes(StandardCharsets.UTF_8));
+        compressed = PayloadCompression.compress(PooledByteBufAllocator.DEFAULT, data, 0);
+    }
+
+    /**
+     * The compressed size of the payload data.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Sizes {
+
+        private ByteBuf compressed;
+
+        @Setup(Level.Iteration)
+        public void reset(PayloadCompressionBenchmark benchmark) {
+            compressed = benchmark.compressed;
+        }
+
+        public long compressedBytes() {
+            return compressed.readableBytes();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        data.release();
+        compressed.release();
+    }
+
+    @Benchmark
+    public int compress(Sizes sizes) {
+        ByteBuf out = PayloadCompression.compress(PooledByteBufAllocator.DEFAULT, data, 0);
+        int length = out.readableBytes();
+        out.release();
+        return length;
+    }
+
+    @Benchmark
+    public int decompress(Sizes sizes) {
+        ByteBuf out = PayloadCompression.decompress(PooledByteBufAllocator.DEFAULT, compressed);
+        int length = out.readableBytes();
+        out.release();
+        return length;
+    }
+
+    @Benchmark
+    public int copy(Sizes sizes) {
+        // the cost of sending the data as it is, for comparison
+        ByteBuf out = PayloadCompression.compress(PooledByteBufAllocator.DEFAULT, data, Integer.MAX_VALUE);
+        int length = out.readableBytes();
+        out.release();
+        return length;
+    }
+}
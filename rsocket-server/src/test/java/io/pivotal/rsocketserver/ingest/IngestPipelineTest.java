@@ -0,0 +1,109 @@
+package io.pivotal.rsocketserver.ingest;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.pivotal.rsocketcommon.data.Notification;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IngestPipelineTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final List<Notification> delivered = new CopyOnWriteArrayList<>();
+    private final CountDownLatch draining = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private IngestPipeline pipeline;
+
+    @AfterEach
+    public void stop() throws InterruptedException {
+        release.countDown();
+        pipeline.destroy();
+    }
+
+    private IngestPipeline pipeline(OverflowPolicy policy) {
+        pipeline = new IngestPipeline(batch -> {
+            draining.countDown();
+            try {
+                // holds the drain thread on its first batch so that the queue fills up behind it
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            delivered.addAll(batch);
+        }, registry, 4, policy, 16);
+        return pipeline;
+    }
+
+    // one notification held by the drain thread and a full queue behind it
+    private void fill() throws InterruptedException {
+        assertThat(pipeline.offer(notification(0))).isTrue();
+        assertThat(draining.await(5, TimeUnit.SECONDS)).isTrue();
+        for (int i = 1; i <= 4; i++) {
+            assertThat(pipeline.offer(notification(i))).isTrue();
+        }
+        assertThat(pipeline.depth()).isEqualTo(4);
+    }
+
+    private List<String> deliveredTexts() throws InterruptedException {
+        release.countDown();
+        pipeline.destroy();
+        return delivered.stream().map(Notification::getText).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testDropNewestKeepsQueuedNotifications() throws InterruptedException {
+        pipeline(OverflowPolicy.DROP_NEWEST);
+        fill();
+
+        assertThat(pipeline.offer(notification(5))).isTrue();
+
+        assertThat(deliveredTexts()).containsExactly("0", "1", "2", "3", "4");
+        assertThat(registry.get("rsocket.ingest.dropped").tag("policy", "drop_newest").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testDropOldestEvictsToMakeRoom() throws InterruptedException {
+        pipeline(OverflowPolicy.DROP_OLDEST);
+        fill();
+
+        assertThat(pipeline.offer(notification(5))).isTrue();
+        assertThat(pipeline.offer(notification(6))).isTrue();
+
+        assertThat(deliveredTexts()).containsExactly("0", "3", "4", "5", "6");
+        assertThat(registry.get("rsocket.ingest.dropped").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    public void testRejectRefusesWhenFull() throws InterruptedException {
+        pipeline(OverflowPolicy.REJECT);
+        fill();
+
+        assertThat(pipeline.offer(notification(5))).isFalse();
+
+        assertThat(deliveredTexts()).containsExactly("0", "1", "2", "3", "4");
+        assertThat(registry.get("rsocket.ingest.dropped").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testDrainsInBatchesAndRecordsThem() throws InterruptedException {
+        pipeline(OverflowPolicy.REJECT);
+        fill();
+
+        assertThat(deliveredTexts()).hasSize(5);
+        assertThat(pipeline.depth()).isZero();
+        assertThat(registry.get("rsocket.ingest.processed").counter().count()).isEqualTo(5);
+        // the first notification alone, then the four queued behind it together
+        assertThat(registry.get("rsocket.ingest.batch").summary().count()).isEqualTo(2);
+    }
+
+    private static Notification notification(int i) {
+        return new Notification("Client", "Server", String.valueOf(i), "test");
+    }
+}
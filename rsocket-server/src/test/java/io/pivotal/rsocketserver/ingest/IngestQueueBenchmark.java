@@ -0,0 +1,65 @@
+package io.pivotal.rsocketserver.ingest;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Handoff rate between three producers, standing for event loops, and one consumer, the drain
+ * thread, through the lock-free {@link RingQueue} and through an {@link ArrayBlockingQueue} of the
+ * same capacity, whose non-blocking {@code offer} and {@code poll} still take its one lock. The
+ * scores count attempts, successful or not, per thread role.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Group)
+public class IngestQueueBenchmark {
+
+    private static final Object ELEMENT = new Object();
+
+    @Param({"ring", "blocking"})
+    String queue;
+
+    @Param({"1024", "65536"})
+    int capacity;
+
+    private RingQueue<Object> ring;
+    private ArrayBlockingQueue<Object> blocking;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        ring = new RingQueue<>(capacity);
+        blocking = new ArrayBlockingQueue<>(ring.capacity());
+    }
+
+    @Benchmark
+    @Group("handoff")
+    @GroupThreads(3)
+    public boolean offer() {
+        return "ring".equals(queue) ? ring.offer(ELEMENT) : blocking.offer(ELEMENT);
+    }
+
+    @Benchmark
+    @Group("handoff")
+    @GroupThreads(1)
+    public Object poll() {
+        return "ring".equals(queue) ? ring.poll() : blocking.poll();
+    }
+}
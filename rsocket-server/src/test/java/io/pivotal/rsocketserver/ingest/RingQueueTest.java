@@ -0,0 +1,91 @@
+package io.pivotal.rsocketserver.ingest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RingQueueTest {
+
+    @Test
+    public void testCapacityIsRoundedUpToPowerOfTwo() {
+        assertThat(new RingQueue<>(1).capacity()).isEqualTo(2);
+        assertThat(new RingQueue<>(5).capacity()).isEqualTo(8);
+        assertThat(new RingQueue<>(8).capacity()).isEqualTo(8);
+    }
+
+    @Test
+    public void testOfferFailsWhenFullAndPollReturnsNullWhenEmpty() {
+        RingQueue<Integer> queue = new RingQueue<>(4);
+        assertThat(queue.poll()).isNull();
+        for (int i = 0; i < 4; i++) {
+            assertThat(queue.offer(i)).isTrue();
+        }
+        assertThat(queue.offer(4)).isFalse();
+        assertThat(queue.size()).isEqualTo(4);
+
+        // first in, first out, and the freed slot can be reused
+        assertThat(queue.poll()).isEqualTo(0);
+        assertThat(queue.offer(4)).isTrue();
+        for (int i = 1; i <= 4; i++) {
+            assertThat(queue.poll()).isEqualTo(i);
+        }
+        assertThat(queue.poll()).isNull();
+        assertThat(queue.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void testConcurrentProducersLoseAndDuplicateNothing() throws Exception {
+        int producers = 4;
+        int perProducer = 100_000;
+        RingQueue<Integer> queue = new RingQueue<>(1024);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            for (int p = 0; p < producers; p++) {
+                int first = p * perProducer;
+                executor.execute(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = first; i < first + perProducer; i++) {
+                        while (!queue.offer(i)) {
+                            Thread.yield();
+                        }
+                    }
+                });
+            }
+            start.countDown();
+
+            BitSet seen = new BitSet(producers * perProducer);
+            int[] lastOfProducer = new int[producers];
+            Arrays.fill(lastOfProducer, -1);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            for (int received = 0; received < producers * perProducer; ) {
+                Integer element = queue.poll();
+                if (element == null) {
+                    assertThat(System.nanoTime()).isLessThan(deadline);
+                    continue;
+                }
+                assertThat(seen.get(element)).as("duplicate %s", element).isFalse();
+                seen.set(element);
+                // each producer's elements come out in the order it offered them
+                assertThat(element).isGreaterThan(lastOfProducer[element / perProducer]);
+                lastOfProducer[element / perProducer] = element;
+                received++;
+            }
+            assertThat(seen.cardinality()).isEqualTo(producers * perProducer);
+            assertThat(queue.poll()).isNull();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
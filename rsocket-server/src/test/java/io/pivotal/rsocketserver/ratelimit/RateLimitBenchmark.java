@@ -0,0 +1,128 @@
+package io.pivotal.rsocketserver.ratelimit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.pivotal.rsocketcommon.Ticker;
+import io.pivotal.rsocketserver.ClientRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a rate limit check when many connections of one user are served by several event
+ * loops at once: every benchmark thread stands for an event loop and checks requests of its own
+ * clients, all against the one bucket of the shared user.
+ * <ul>
+ * <li>stripes: 1 for a single compare-and-set cell all threads contend on, 8 for one stripe
+ * per thread in the common case</li>
+ * <li>rate: high enough that nothing is refused, or low enough that nearly everything is, which
+ * measures the cost of a refusal</li>
+ * <li>synchronized: the same rate and burst as a classic token bucket under a lock, for reference</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class RateLimitBenchmark {
+
+    private static final int CLIENTS_PER_THREAD = 64;
+
+    @Param({"1", "8"})
+    int stripes;
+
+    @Param({"1000000000", "1000"})
+    double rate;
+
+    private Ticker ticker;
+    private RateLimits rateLimits;
+    private SynchronizedBucket synchronizedBucket;
+
+    @State(Scope.Thread)
+    public static class Clients {
+
+        String[] ids;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setup(ThreadParams thread) {
+            ids = new String[CLIENTS_PER_THREAD];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = "client-" + thread.getThreadIndex() + "-" + i;
+            }
+        }
+
+        String next() {
+            String id = ids[next];
+            next = (next + 1) % ids.length;
+            return id;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        ticker = new Ticker(Duration.ofMillis(100));
+        // only the user is limited, so every check goes to the shared bucket
+        rateLimits = new RateLimits(new ClientRegistry(), ticker, new SimpleMeterRegistry(), 0, 0, 0,
+                rate, (int) Math.min(rate, 1_000_000), 0, stripes, Duration.ofMinutes(10));
+        synchronizedBucket = new SynchronizedBucket(rate, Math.min(rate, 1_000_000));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        rateLimits.destroy();
+        ticker.destroy();
+    }
+
+    @Benchmark
+    public Object rateLimits(Clients clients) {
+        return rateLimits.tryAcquire(clients.next(), "user");
+    }
+
+    @Benchmark
+    public boolean synchronizedBucket() {
+        return synchronizedBucket.tryAcquire();
+    }
+
+    static final class SynchronizedBucket {
+
+        private final double permitsPerNano;
+        private final double burst;
+        private double tokens;
+        private long refilled = System.nanoTime();
+
+        SynchronizedBucket(double permitsPerSecond, double burst) {
+            this.permitsPerNano = permitsPerSecond / 1e9;
+            this.burst = burst;
+            this.tokens = burst;
+        }
+
+        synchronized boolean tryAcquire() {
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - refilled) * permitsPerNano);
+            refilled = now;
+            if (tokens < 1) {
+                return false;
+            }
+            tokens--;
+            return true;
+        }
+    }
+}
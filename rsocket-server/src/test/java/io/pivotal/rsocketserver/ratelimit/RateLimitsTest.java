@@ -0,0 +1,119 @@
+package io.pivotal.rsocketserver.ratelimit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.pivotal.rsocketcommon.Ticker;
+import io.pivotal.rsocketserver.ClientRegistry;
+import io.rsocket.exceptions.RejectedException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class RateLimitsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ClientRegistry clients = new ClientRegistry();
+    private final Ticker ticker = new Ticker(Duration.ofMillis(100));
+    private RateLimits rateLimits;
+
+    @AfterEach
+    public void stop() {
+        rateLimits.destroy();
+        ticker.destroy();
+    }
+
+    private RateLimits rateLimits(double clientRate, int clientMaxStreams, double userRate, int userMaxStreams) {
+        rateLimits = new RateLimits(clients, ticker, registry, clientRate, 0, clientMaxStreams, userRate, 0,
+                userMaxStreams, 2, Duration.ofMinutes(1));
+        return rateLimits;
+    }
+
+    @Test
+    public void testNoLimitsByDefault() {
+        rateLimits(0, 0, 0, 0);
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(rateLimits.tryAcquire("client-1", "user")).isNull();
+        }
+    }
+
+    @Test
+    public void testClientsOfOneUserShareItsLimit() {
+        rateLimits(0, 0, 4, 0);
+        assertThat(rateLimits.tryAcquire("client-1", "user")).isNull();
+        assertThat(rateLimits.tryAcquire("client-2", "user")).isNull();
+        assertThat(rateLimits.tryAcquire("client-3", "user")).isNull();
+        assertThat(rateLimits.tryAcquire("client-4", "user")).isNull();
+
+        RejectedException rejected = rateLimits.tryAcquire("client-5", "user");
+        assertThat(rejected).hasMessageContaining("user 'user'");
+        assertThat(rateLimits.tryAcquire("client-6", "other")).isNull();
+        assertThat(registry.get("rsocket.rate-limit.rejected").tag("key", "user").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testClientLimitIsCheckedFirst() {
+        rateLimits(2, 0, 100, 0);
+        assertThat(rateLimits.tryAcquire("client-1", "user")).isNull();
+        assertThat(rateLimits.tryAcquire("client-1", "user")).isNull();
+        assertThat(rateLimits.tryAcquire("client-1", "user")).hasMessageContaining("client 'client-1'");
+        assertThat(rateLimits.tryAcquire("client-2", "user")).isNull();
+    }
+
+    @Test
+    public void testEveryRejectionHasItsOwnException() {
+        rateLimits(1, 0, 0, 0);
+        assertThat(rateLimits.tryAcquire("client-1", "user")).isNull();
+        RejectedException first = rateLimits.tryAcquire("client-1", "user");
+        RejectedException second = rateLimits.tryAcquire("client-1", "user");
+        assertThat(first).isNotNull().isNotSameAs(second);
+        assertThat(second).hasMessage(first.getMessage());
+    }
+
+    @Test
+    public void testOpenStreamsAreLimitedPerUser() {
+        rateLimits(0, 0, 0, 2);
+        UserDetails user = User.withUsername("user").password("pass").roles("USER").build();
+        RSocketRequester first = mock(RSocketRequester.class);
+        RSocketRequester second = mock(RSocketRequester.class);
+        clients.register("client-1", "user", first);
+        clients.register("client-2", "user", second);
+
+        StepVerifier.create(rateLimits.limitStreams(first, user, Flux.never()))
+                .then(() -> StepVerifier.create(rateLimits.limitStreams(second, user, Flux.never()))
+                        .then(() -> StepVerifier.create(rateLimits.limitStreams(second, user, Flux.never()))
+                                .verifyError(RejectedException.class))
+                        .thenCancel()
+                        .verify())
+                // the cancelled stream made room for another one
+                .then(() -> StepVerifier.create(rateLimits.limitStreams(second, user, Flux.just("open")))
+                        .expectNext("open")
+                        .verifyComplete())
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    public void testClosedStreamsLeaveNoCounts() {
+        rateLimits(0, 2, 0, 2);
+        UserDetails user = User.withUsername("user").password("pass").roles("USER").build();
+        for (int i = 0; i < 100; i++) {
+            RSocketRequester requester = mock(RSocketRequester.class);
+            clients.register("client-" + i, "user", requester);
+            StepVerifier.create(rateLimits.limitStreams(requester, user, Flux.just("open")))
+                    .expectNext("open")
+                    .verifyComplete();
+            StepVerifier.create(rateLimits.limitStreams(requester, user, Flux.never()))
+                    .thenCancel()
+                    .verify();
+        }
+        assertThat(rateLimits.streamKeys()).isZero();
+    }
+}
@@ -0,0 +1,82 @@
+package io.pivotal.rsocketserver.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TokenBucketTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testBurstThenSustainedRate() {
+        TokenBucket bucket = new TokenBucket(10, 5, 1);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(bucket.tryAcquire(0)).isTrue();
+        }
+        assertThat(bucket.tryAcquire(0)).isFalse();
+        // one permit comes back every 100ms
+        assertThat(bucket.tryAcquire(99 * MILLIS)).isFalse();
+        assertThat(bucket.tryAcquire(100 * MILLIS)).isTrue();
+        assertThat(bucket.tryAcquire(100 * MILLIS)).isFalse();
+        // and no more than the burst after a long pause
+        int taken = 0;
+        while (bucket.tryAcquire(10_000 * MILLIS)) {
+            taken++;
+        }
+        assertThat(taken).isEqualTo(5);
+    }
+
+    @Test
+    public void testOneThreadGetsWholeBurstOfAllStripes() {
+        TokenBucket bucket = new TokenBucket(8, 8, 4);
+        assertThat(bucket.stripes()).isEqualTo(4);
+
+        int taken = 0;
+        while (bucket.tryAcquire(0)) {
+            taken++;
+        }
+        assertThat(taken).isEqualTo(8);
+    }
+
+    @Test
+    public void testStripesAreNoMoreThanBurst() {
+        assertThat(new TokenBucket(100, 3, 16).stripes()).isEqualTo(2);
+        assertThat(new TokenBucket(100, 100, 6).stripes()).isEqualTo(8);
+    }
+
+    @Test
+    public void testConcurrentThreadsNeverExceedBurst() throws Exception {
+        TokenBucket bucket = new TokenBucket(1, 1000, 8);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                results.add(executor.submit(() -> {
+                    int taken = 0;
+                    for (int i = 0; i < 1000; i++) {
+                        if (bucket.tryAcquire(0)) {
+                            taken++;
+                        }
+                    }
+                    return taken;
+                }));
+            }
+            int total = 0;
+            for (Future<Integer> result : results) {
+                total += result.get(10, TimeUnit.SECONDS);
+            }
+            assertThat(total).isEqualTo(1000);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
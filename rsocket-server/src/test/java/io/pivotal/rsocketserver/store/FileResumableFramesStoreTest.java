@@ -0,0 +1,155 @@
+package io.pivotal.rsocketserver.store;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Flux;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class FileResumableFramesStoreTest {
+
+    private static final int SEGMENT_SIZE = 4096;
+
+    @TempDir
+    File directory;
+
+    @Test
+    public void testResumeReplaysWhatWasNotAcknowledged() {
+        FileResumableFramesStore store = open();
+        // the server sends 0..499, the client acknowledges up to 199, then resumes
+        store.saveFrames(frames(0, 500)).block();
+        store.releaseFrames(positionAfter(200));
+        assertThat(store.framePosition()).isEqualTo(positionAfter(200));
+
+        List<Integer> delivered = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            delivered.add(i);
+        }
+        delivered.addAll(read(store.resumeStream()));
+        // the stream carries on after the resume
+        store.saveFrames(frames(500, 600)).block();
+        store.releaseFrames(positionAfter(500));
+        delivered.addAll(read(store.resumeStream()));
+
+        assertThat(delivered).hasSize(600);
+        for (int i = 0; i < 600; i++) {
+            assertThat(delivered.get(i)).isEqualTo(i);
+        }
+        store.dispose();
+    }
+
+    @Test
+    public void testStoreStartsEmpty() {
+        FileResumableFramesStore killed = open();
+        killed.saveFrames(frames(0, 500)).block();
+        for (int i = 0; i < 30; i++) {
+            killed.resumableFrameReceived(frame(i));
+        }
+        // never disposed, the files are left as they are
+
+        FileResumableFramesStore store = open();
+        assertThat(store.framePosition()).isZero();
+        assertThat(store.frameImpliedPosition()).isZero();
+        assertThat(read(store.resumeStream())).isEmpty();
+        store.dispose();
+    }
+
+    @Test
+    public void testAcknowledgedSegmentsAreDeleted() {
+        FileResumableFramesStore store = open();
+        store.saveFrames(frames(0, 2000)).block();
+        int segments = segmentFiles().length;
+        assertThat(segments).isGreaterThan(2);
+
+        store.releaseFrames(positionAfter(2000));
+        store.saveFrames(frames(2000, 2001)).block();
+
+        assertThat(segmentFiles()).hasSizeLessThan(segments);
+        assertThat(read(store.resumeStream())).containsExactly(2000);
+        store.dispose();
+    }
+
+    @Test
+    public void testSizeRetentionDropsOldestFrames() {
+        FileResumableFramesStore store = new FileResumableFramesStore(session(), SEGMENT_SIZE, 2 * SEGMENT_SIZE, Duration.ofMinutes(10));
+        store.saveFrames(frames(0, 2000)).block();
+
+        assertThat(segmentFiles()).hasSizeLessThanOrEqualTo(2);
+        List<Integer> retained = read(store.resumeStream());
+        assertThat(retained).isNotEmpty().endsWith(1999);
+        assertThat(store.framePosition()).isEqualTo(positionAfter(retained.get(0)));
+        store.dispose();
+    }
+
+    @Test
+    public void testReleaseBeyondSavedFramesFails() {
+        FileResumableFramesStore store = open();
+        store.saveFrames(frames(0, 10)).block();
+
+        assertThatThrownBy(() -> store.releaseFrames(positionAfter(11))).isInstanceOf(IllegalStateException.class);
+        store.dispose();
+    }
+
+    @Test
+    public void testClosedSessionIsDeleted() {
+        FileResumableFramesStore store = open();
+        store.saveFrames(frames(0, 10)).block();
+        assertThat(session()).exists();
+
+        store.dispose();
+        assertThat(session()).doesNotExist();
+    }
+
+    @Test
+    public void testSessionsOfPreviousProcessAreDeleted() {
+        // killed: never disposed
+        open().saveFrames(frames(0, 10)).block();
+
+        FileResumableFramesStore.deleteSessions(directory);
+        assertThat(session()).doesNotExist();
+        assertThat(directory).exists();
+    }
+
+    private FileResumableFramesStore open() {
+        return new FileResumableFramesStore(session(), SEGMENT_SIZE, Long.MAX_VALUE, Duration.ofMinutes(10));
+    }
+
+    private File session() {
+        return new File(directory, "session");
+    }
+
+    private File[] segmentFiles() {
+        return session().listFiles((dir, name) -> name.endsWith(".segment"));
+    }
+
+    private static Flux<ByteBuf> frames(int from, int to) {
+        return Flux.range(from, to - from).map(FileResumableFramesStoreTest::frame);
+    }
+
+    // every frame is as long as its text, "frame-" and 6 digits
+    private static ByteBuf frame(int sequence) {
+        return Unpooled.copiedBuffer(String.format("frame-%06d", sequence), StandardCharsets.UTF_8);
+    }
+
+    private static long positionAfter(int frames) {
+        return frames * 12L;
+    }
+
+    private static List<Integer> read(Flux<ByteBuf> frames) {
+        List<Integer> sequences = new ArrayList<>();
+        frames.doOnNext(frame -> {
+            sequences.add(Integer.parseInt(frame.toString(StandardCharsets.UTF_8).substring(6)));
+            frame.release();
+        }).blockLast();
+        return sequences;
+    }
+}